@@ -0,0 +1,433 @@
+package com.mediaworx.opencms.ideconnector.client;
+
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorEventConsumer;
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorResponsePrinter;
+import com.mediaworx.opencms.ideconnector.data.ImportJobStatus;
+import com.mediaworx.opencms.ideconnector.data.LoginStatus;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous variant of the {@link IDEConnectorClient}: each call is executed on a background thread and returns
+ * immediately with a {@link Future}, so IDE threads aren't blocked by long running calls like module imports.
+ * <ul>
+ *     <li>An optional {@link IDEConnectorCallback} is notified when the call is complete.</li>
+ *     <li>Calls can be cancelled by {@link Future#cancel(boolean)}, the call's HTTP request is aborted.</li>
+ *     <li>Calls time out after the configured timeout (see {@link #setTimeoutMillis(long)}), then they are cancelled
+ *     and the callback gets a {@link TimeoutException}.</li>
+ *     <li>Streamed output (import log lines or progress events) and callbacks are delivered on the callback executor
+ *     (e.g. the IDE's UI thread), in the order they were received.</li>
+ * </ul>
+ * The async client shares the wrapped client's login token, so a login done by either client is used by both.
+ */
+public class IDEConnectorAsyncClient {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IDEConnectorAsyncClient.class);
+
+	private final IDEConnectorClient client;
+	private final ExecutorService callExecutor;
+	private final Executor callbackExecutor;
+	private final ScheduledExecutorService timeoutScheduler;
+
+	private volatile long timeoutMillis = 0;
+
+	/**
+	 * Creates an async client executing calls on its own daemon threads, callbacks and output are delivered on the
+	 * thread executing the call.
+	 * @param client    the client executing the calls
+	 */
+	public IDEConnectorAsyncClient(IDEConnectorClient client) {
+		this(client, Executors.newCachedThreadPool(new AsyncThreadFactory("IDEConnector-AsyncCall-")), new DirectExecutor());
+	}
+
+	/**
+	 * Creates an async client.
+	 * @param client            the client executing the calls
+	 * @param callExecutor      the executor running the calls (each call blocks one thread while it is executed)
+	 * @param callbackExecutor  the executor delivering callbacks and streamed output
+	 */
+	public IDEConnectorAsyncClient(IDEConnectorClient client, ExecutorService callExecutor, Executor callbackExecutor) {
+		this.client = client;
+		this.callExecutor = callExecutor;
+		this.callbackExecutor = callbackExecutor;
+		timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new AsyncThreadFactory("IDEConnector-AsyncTimeout-"));
+	}
+
+	/**
+	 * @return the timeout for calls in milliseconds, 0 if calls don't time out
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * Sets the timeout for calls started afterwards.
+	 * @param timeoutMillis the timeout in milliseconds, 0 if calls shouldn't time out (the default)
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @see IDEConnectorClient#login(String, String)
+	 */
+	public Future<LoginStatus> login(final String user, final String password, IDEConnectorCallback<LoginStatus> callback) {
+		return submit(new Callable<LoginStatus>() {
+			@Override
+			public LoginStatus call() {
+				return client.login(user, password);
+			}
+		}, callback, timeoutMillis);
+	}
+
+	/**
+	 * @see IDEConnectorClient#logout()
+	 */
+	public Future<String> logout(IDEConnectorCallback<String> callback) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() {
+				return client.logout();
+			}
+		}, callback, timeoutMillis);
+	}
+
+	/**
+	 * @see IDEConnectorClient#importModules(List, int, IDEConnectorResponsePrinter)
+	 */
+	public Future<Void> importModules(final List<ModuleImportInfo> importInfos, final int parallelism, IDEConnectorResponsePrinter printer, IDEConnectorCallback<Void> callback) {
+		final SerialExecutor output = new SerialExecutor(callbackExecutor);
+		final IDEConnectorResponsePrinter outputPrinter = new ExecutorResponsePrinter(printer, output);
+		return submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				client.importModules(importInfos, parallelism, outputPrinter);
+				return null;
+			}
+		}, callback, timeoutMillis, output);
+	}
+
+	/**
+	 * @see IDEConnectorClient#importModulesWithEvents(List, int, IDEConnectorEventConsumer)
+	 */
+	public Future<Void> importModulesWithEvents(final List<ModuleImportInfo> importInfos, final int parallelism, IDEConnectorEventConsumer consumer, IDEConnectorCallback<Void> callback) {
+		final SerialExecutor output = new SerialExecutor(callbackExecutor);
+		final IDEConnectorEventConsumer outputConsumer = new ExecutorEventConsumer(consumer, output);
+		return submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				client.importModulesWithEvents(importInfos, parallelism, outputConsumer);
+				return null;
+			}
+		}, callback, timeoutMillis, output);
+	}
+
+	/**
+	 * @see IDEConnectorClient#importModuleZip(File, ModuleImportInfo, IDEConnectorResponsePrinter)
+	 */
+	public Future<Void> importModuleZip(final File zipFile, final ModuleImportInfo importInfo, IDEConnectorResponsePrinter printer, IDEConnectorCallback<Void> callback) {
+		final SerialExecutor output = new SerialExecutor(callbackExecutor);
+		final IDEConnectorResponsePrinter outputPrinter = new ExecutorResponsePrinter(printer, output);
+		return submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				client.importModuleZip(zipFile, importInfo, outputPrinter);
+				return null;
+			}
+		}, callback, timeoutMillis, output);
+	}
+
+	/**
+	 * @see IDEConnectorClient#submitImport(List, int)
+	 */
+	public Future<ImportJobStatus> submitImport(final List<ModuleImportInfo> importInfos, final int parallelism, IDEConnectorCallback<ImportJobStatus> callback) {
+		return submit(new Callable<ImportJobStatus>() {
+			@Override
+			public ImportJobStatus call() {
+				return client.submitImport(importInfos, parallelism);
+			}
+		}, callback, timeoutMillis);
+	}
+
+	/**
+	 * @see IDEConnectorClient#waitForImport(String, long, IDEConnectorResponsePrinter)
+	 */
+	public Future<ImportJobStatus> waitForImport(final String jobId, final long pollIntervalMillis, IDEConnectorResponsePrinter printer, IDEConnectorCallback<ImportJobStatus> callback) {
+		final SerialExecutor output = new SerialExecutor(callbackExecutor);
+		final IDEConnectorResponsePrinter outputPrinter = new ExecutorResponsePrinter(printer, output);
+		return submit(new Callable<ImportJobStatus>() {
+			@Override
+			public ImportJobStatus call() throws InterruptedException {
+				return client.waitForImport(jobId, pollIntervalMillis, outputPrinter);
+			}
+		}, callback, timeoutMillis, output);
+	}
+
+	/**
+	 * Executes any call asynchronously, e.g. a call of the wrapped {@link IDEConnectorClient} not covered by the
+	 * methods of the async client.
+	 * @param call          the call
+	 * @param callback      callback notified when the call is complete (may be <code>null</code>)
+	 * @param timeoutMillis timeout in milliseconds, 0 if the call shouldn't time out
+	 * @param <T>           the call's result type
+	 * @return  the future of the call's result
+	 */
+	public <T> Future<T> submit(Callable<T> call, IDEConnectorCallback<T> callback, long timeoutMillis) {
+		return submit(call, callback, timeoutMillis, new SerialExecutor(callbackExecutor));
+	}
+
+	private <T> Future<T> submit(Callable<T> call, IDEConnectorCallback<T> callback, long timeoutMillis, SerialExecutor output) {
+		final AsyncCall<T> asyncCall = new AsyncCall<>(call, callback, output);
+		callExecutor.execute(asyncCall);
+		if (timeoutMillis > 0) {
+			asyncCall.timeout = timeoutScheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					asyncCall.timeOut();
+				}
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		return asyncCall;
+	}
+
+	/**
+	 * Stops the async client's threads, running calls are cancelled. The wrapped client can still be used.
+	 */
+	public void shutdown() {
+		timeoutScheduler.shutdownNow();
+		callExecutor.shutdownNow();
+	}
+
+	/**
+	 * A call executed asynchronously, cancelling the call aborts its HTTP request.
+	 */
+	private class AsyncCall<T> extends FutureTask<T> {
+
+		private final IDEConnectorCall connectorCall = new IDEConnectorCall();
+		private final IDEConnectorCallback<T> callback;
+		private final SerialExecutor output;
+		private volatile boolean timedOut = false;
+		volatile Future<?> timeout;
+
+		AsyncCall(Callable<T> call, IDEConnectorCallback<T> callback, SerialExecutor output) {
+			super(call);
+			this.callback = callback;
+			this.output = output;
+		}
+
+		@Override
+		public void run() {
+			connectorCall.attach();
+			try {
+				super.run();
+			}
+			finally {
+				connectorCall.detach();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				connectorCall.abort();
+			}
+			return cancelled;
+		}
+
+		void timeOut() {
+			timedOut = true;
+			if (cancel(true)) {
+				LOG.warn("An asynchronous IDE connector call timed out");
+			}
+		}
+
+		@Override
+		protected void done() {
+			Future<?> timeout = this.timeout;
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			if (callback == null) {
+				return;
+			}
+			output.execute(new Runnable() {
+				@Override
+				public void run() {
+					notifyCallback();
+				}
+			});
+		}
+
+		private void notifyCallback() {
+			T result;
+			try {
+				result = get();
+			}
+			catch (CancellationException e) {
+				callback.onFailure(timedOut ? new TimeoutException("The call timed out") : e);
+				return;
+			}
+			catch (ExecutionException e) {
+				callback.onFailure(e.getCause());
+				return;
+			}
+			catch (InterruptedException e) {
+				// can't happen, the call is done
+				Thread.currentThread().interrupt();
+				callback.onFailure(e);
+				return;
+			}
+			callback.onSuccess(result);
+		}
+	}
+
+	/**
+	 * Delivers the lines of streamed output on an executor.
+	 */
+	private static class ExecutorResponsePrinter implements IDEConnectorResponsePrinter {
+
+		private final IDEConnectorResponsePrinter printer;
+		private final Executor executor;
+
+		ExecutorResponsePrinter(IDEConnectorResponsePrinter printer, Executor executor) {
+			this.printer = printer;
+			this.executor = executor;
+		}
+
+		@Override
+		public void println(final String str) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					printer.println(str);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Delivers progress events on an executor.
+	 */
+	private static class ExecutorEventConsumer implements IDEConnectorEventConsumer {
+
+		private final IDEConnectorEventConsumer consumer;
+		private final Executor executor;
+
+		ExecutorEventConsumer(IDEConnectorEventConsumer consumer, Executor executor) {
+			this.consumer = consumer;
+			this.executor = executor;
+		}
+
+		@Override
+		public void onEvent(final ProgressEvent event) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					consumer.onEvent(event);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs tasks one after the other on another executor, in the order they were submitted, even if the other executor
+	 * uses several threads. Used for the output and the callback of one call.
+	 */
+	private static class SerialExecutor implements Executor {
+
+		private final Executor executor;
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+		private boolean active = false;
+
+		SerialExecutor(Executor executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public synchronized void execute(Runnable task) {
+			tasks.add(task);
+			if (!active) {
+				active = true;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						runTasks();
+					}
+				});
+			}
+		}
+
+		private void runTasks() {
+			while (true) {
+				Runnable task;
+				synchronized (this) {
+					task = tasks.poll();
+					if (task == null) {
+						active = false;
+						return;
+					}
+				}
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					LOG.error("Error delivering the output of an asynchronous IDE connector call", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs tasks in the calling thread.
+	 */
+	private static class DirectExecutor implements Executor {
+
+		DirectExecutor() {
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Creates named daemon threads, so the async client doesn't keep the IDE from exiting.
+	 */
+	private static class AsyncThreadFactory implements ThreadFactory {
+
+		private final String namePrefix;
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		AsyncThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
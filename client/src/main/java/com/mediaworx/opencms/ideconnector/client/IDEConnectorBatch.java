@@ -0,0 +1,283 @@
+package com.mediaworx.opencms.ideconnector.client;
+
+import com.mediaworx.opencms.ideconnector.client.params.TokenParams;
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorBatchConsumer;
+import com.mediaworx.opencms.ideconnector.data.BatchRequest;
+import com.mediaworx.opencms.ideconnector.data.BatchResponse;
+import com.mediaworx.opencms.ideconnector.data.ImportJobStatus;
+import com.mediaworx.opencms.ideconnector.data.LoginStatus;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import com.mediaworx.opencms.ideconnector.data.PublishJobStatus;
+import com.mediaworx.opencms.ideconnector.dataimpl.ImportJobStatusImpl;
+import com.mediaworx.opencms.ideconnector.dataimpl.LoginStatusImpl;
+import com.mediaworx.opencms.ideconnector.dataimpl.PublishJobStatusImpl;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects service calls and sends them to the IDE connector service with one request when the batch is flushed, so
+ * bursts of small calls (e.g. login, submitting an import and polling its status) only pay for one round trip.
+ * Created by {@link IDEConnectorClient#batch()}.
+ * <br /><br />
+ * The calls are executed by the server one after the other in the order they were added, using the client's token.
+ * If a login call of the batch succeeds, its token is used for the following calls and stored in the client. Each
+ * call returns the index of its {@link BatchResponse}, the typed result can be read from the response by
+ * {@link #getLoginStatus(BatchResponse)}, {@link #getImportJobStatus(BatchResponse)} or
+ * {@link #getPublishJobStatus(BatchResponse)}, resource infos and manifest stubs are sent as JSON array in the body. A failing call doesn't abort
+ * the batch, its response contains the HTTP status and the error message.
+ * <br /><br />
+ * Batches are not thread safe, a batch can be reused after it has been flushed.
+ */
+public class IDEConnectorBatch {
+
+	private final IDEConnectorClient client;
+	private final IDEConnectorClientConnector connector;
+	private final List<BatchRequest> requests = new ArrayList<>();
+
+	IDEConnectorBatch(IDEConnectorClient client, IDEConnectorClientConnector connector) {
+		this.client = client;
+		this.connector = connector;
+	}
+
+	/**
+	 * @see IDEConnectorClient#login(String, String)
+	 * @return  the index of the call in the batch
+	 */
+	public int login(String user, String password) {
+		BatchRequest request = createRequest(IDEConnectorConst.SERVICE_LOGIN);
+		request.addParam(IDEConnectorConst.PARAM_USER, user);
+		request.addParam(IDEConnectorConst.PARAM_PASSWORD, password);
+		return add(request);
+	}
+
+	/**
+	 * @see IDEConnectorClient#logout()
+	 * @return  the index of the call in the batch
+	 */
+	public int logout() {
+		return add(createRequest(IDEConnectorConst.SERVICE_LOGOUT));
+	}
+
+	/**
+	 * Submits an asynchronous import, its status and log can be polled by {@link #getImportStatus(String, long)} (the
+	 * synchronous import can't be batched).
+	 * @see IDEConnectorClient#submitImport(List, int)
+	 * @return  the index of the call in the batch
+	 */
+	public int submitImport(List<ModuleImportInfo> importInfos, int parallelism) {
+		return add(createImportRequest(IDEConnectorConst.SERVICE_SUBMIT_IMPORT, importInfos, parallelism));
+	}
+
+	/**
+	 * @see IDEConnectorClient#getImportStatus(String, long)
+	 * @return  the index of the call in the batch
+	 */
+	public int getImportStatus(String jobId, long logOffset) {
+		BatchRequest request = createRequest(IDEConnectorConst.SERVICE_IMPORT_STATUS);
+		request.addParam(IDEConnectorConst.PARAM_JOB_ID, jobId);
+		request.addParam(IDEConnectorConst.PARAM_LOG_OFFSET, String.valueOf(logOffset));
+		return add(request);
+	}
+
+	/**
+	 * Reads the resource infos (meta xml) for the resources at the given paths. The body of the call's response is a
+	 * JSON array of entries containing the id (the path) and the xml of each existing resource, for incremental calls
+	 * tombstones are returned for deleted resources and the response contains the sync cursor for the next call (see
+	 * {@link BatchResponse#getSyncCursor()}).
+	 * @param resourcePaths     the VFS paths of the resources or, in subtree mode, of the subtrees
+	 * @param subtree           <code>true</code> if the resources below the given paths should be returned as well
+	 * @param since             the sync cursor returned by the last incremental call, a negative value to get all
+	 *                          resources
+	 * @param useDateVariables  <code>true</code> if dates should be replaced by placeholders
+	 * @param useIdVariables    <code>true</code> if ids should be replaced by placeholders
+	 * @return  the index of the call in the batch
+	 */
+	public int getResourceInfos(List<String> resourcePaths, boolean subtree, long since, boolean useDateVariables, boolean useIdVariables) {
+		BatchRequest request = createMetaXmlRequest(IDEConnectorConst.SERVICE_RESOURCE_INFOS, resourcePaths, useDateVariables, useIdVariables);
+		if (subtree) {
+			request.addParam(IDEConnectorConst.PARAM_SUBTREE, "true");
+		}
+		if (since >= 0) {
+			request.addParam(IDEConnectorConst.PARAM_SINCE, String.valueOf(since));
+		}
+		return add(request);
+	}
+
+	/**
+	 * Reads the manifest stubs for the given modules. The body of the call's response is a JSON array of entries
+	 * containing the id (the module name) and the xml of each module.
+	 * @param moduleNames       the names of the modules
+	 * @param useDateVariables  <code>true</code> if dates should be replaced by placeholders
+	 * @param useIdVariables    <code>true</code> if ids should be replaced by placeholders
+	 * @return  the index of the call in the batch
+	 */
+	public int getModuleManifests(List<String> moduleNames, boolean useDateVariables, boolean useIdVariables) {
+		return add(createMetaXmlRequest(IDEConnectorConst.SERVICE_MODULE_MANIFESTS, moduleNames, useDateVariables, useIdVariables));
+	}
+
+	/**
+	 * Submits an asynchronous publish of the given resources, its status and publish report can be polled by
+	 * {@link #getPublishStatus(String, long)}.
+	 * @param resourcePaths         the root paths of the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 * @return  the index of the call in the batch
+	 */
+	public int publish(List<String> resourcePaths, boolean publishSubResources) {
+		BatchRequest request = createRequest(IDEConnectorConst.SERVICE_PUBLISH);
+		if (publishSubResources) {
+			request.addParam(IDEConnectorConst.PARAM_PUBLISH_SUB_RESOURCES, "true");
+		}
+		request.addParam(IDEConnectorConst.PARAM_JSON, connector.toJson(resourcePaths));
+		return add(request);
+	}
+
+	/**
+	 * Reads the status of a publish job, including the publish report starting at the given offset.
+	 * @param jobId     the id of the publish job
+	 * @param logOffset the offset of the first report character to be returned
+	 * @return  the index of the call in the batch
+	 */
+	public int getPublishStatus(String jobId, long logOffset) {
+		BatchRequest request = createRequest(IDEConnectorConst.SERVICE_PUBLISH_STATUS);
+		request.addParam(IDEConnectorConst.PARAM_JOB_ID, jobId);
+		request.addParam(IDEConnectorConst.PARAM_LOG_OFFSET, String.valueOf(logOffset));
+		return add(request);
+	}
+
+	/**
+	 * Adds a call of any service.
+	 * @param service   the service's name
+	 * @param params    the request parameters for the service
+	 * @param etag      the ETag of a cached response of the service (may be <code>null</code>), if the response hasn't
+	 *                  changed the call's response has the status 304 and no body
+	 * @return  the index of the call in the batch
+	 */
+	public int add(String service, Map<String, String> params, String etag) {
+		BatchRequest request = createRequest(service);
+		request.setParams(params);
+		request.setEtag(etag);
+		return add(request);
+	}
+
+	/**
+	 * @return the number of calls collected since the last flush
+	 */
+	public int size() {
+		return requests.size();
+	}
+
+	/**
+	 * Sends all collected calls with one request and passes each call's response to the given consumer as soon as it
+	 * is received. The batch is empty afterwards.
+	 * @param consumer  consumer receiving the responses in the order the calls were added
+	 */
+	public void flush(final IDEConnectorBatchConsumer consumer) {
+		if (requests.isEmpty()) {
+			return;
+		}
+		final List<BatchRequest> flushedRequests = new ArrayList<>(requests);
+		requests.clear();
+		TokenParams params = new TokenParams();
+		params.setToken(client.getToken());
+		params.setJsonBean(flushedRequests);
+		connector.streamServiceBatch(
+				IDEConnectorConst.SERVICE_BATCH,
+				IDEConnectorConst.METHOD_POST,
+				params,
+				new IDEConnectorBatchConsumer() {
+					@Override
+					public void onResponse(BatchResponse response) {
+						if (IDEConnectorConst.SERVICE_LOGIN.equals(response.getService())) {
+							// store the token for later use
+							LoginStatus status = getLoginStatus(response);
+							if (status != null && status.isLoggedIn()) {
+								client.setToken(status.getToken());
+							}
+						}
+						consumer.onResponse(response);
+					}
+				}
+		);
+	}
+
+	/**
+	 * Sends all collected calls with one request. The batch is empty afterwards.
+	 * @return  the responses in the order the calls were added
+	 */
+	public List<BatchResponse> flush() {
+		final List<BatchResponse> responses = new ArrayList<>(requests.size());
+		flush(new IDEConnectorBatchConsumer() {
+			@Override
+			public void onResponse(BatchResponse response) {
+				responses.add(response);
+			}
+		});
+		return responses;
+	}
+
+	/**
+	 * @param response  the response of a login call
+	 * @return  the login status or <code>null</code> if the call failed
+	 */
+	public LoginStatus getLoginStatus(BatchResponse response) {
+		return (LoginStatus)getResult(response, LoginStatusImpl.class);
+	}
+
+	/**
+	 * @param response  the response of a submitImport or importStatus call
+	 * @return  the import job status or <code>null</code> if the call failed
+	 */
+	public ImportJobStatus getImportJobStatus(BatchResponse response) {
+		return (ImportJobStatus)getResult(response, ImportJobStatusImpl.class);
+	}
+
+	/**
+	 * @param response  the response of a publish or publishStatus call
+	 * @return  the publish job status or <code>null</code> if the call failed
+	 */
+	public PublishJobStatus getPublishJobStatus(BatchResponse response) {
+		return (PublishJobStatus)getResult(response, PublishJobStatusImpl.class);
+	}
+
+	private Object getResult(BatchResponse response, Class<?> resultClass) {
+		if (response.getStatus() != 200) {
+			return null;
+		}
+		return connector.parseJson(response.getBody(), resultClass);
+	}
+
+	private BatchRequest createRequest(String service) {
+		BatchRequest request = new BatchRequest();
+		request.setService(service);
+		return request;
+	}
+
+	private BatchRequest createImportRequest(String service, List<ModuleImportInfo> importInfos, int parallelism) {
+		BatchRequest request = createRequest(service);
+		if (parallelism > 1) {
+			request.addParam(IDEConnectorConst.PARAM_PARALLELISM, String.valueOf(parallelism));
+		}
+		request.addParam(IDEConnectorConst.PARAM_JSON, connector.toJson(importInfos));
+		return request;
+	}
+
+	private BatchRequest createMetaXmlRequest(String service, List<String> ids, boolean useDateVariables, boolean useIdVariables) {
+		BatchRequest request = createRequest(service);
+		if (useDateVariables) {
+			request.addParam(IDEConnectorConst.PARAM_USE_DATE_VARIABLES, "true");
+		}
+		if (useIdVariables) {
+			request.addParam(IDEConnectorConst.PARAM_USE_ID_VARIABLES, "true");
+		}
+		request.addParam(IDEConnectorConst.PARAM_JSON, connector.toJson(ids));
+		return request;
+	}
+
+	private int add(BatchRequest request) {
+		requests.add(request);
+		return requests.size() - 1;
+	}
+}
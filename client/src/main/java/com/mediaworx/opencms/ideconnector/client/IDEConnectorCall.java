@@ -0,0 +1,63 @@
+package com.mediaworx.opencms.ideconnector.client;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Handle of a service call executed by the {@link IDEConnectorAsyncClient}, used to abort the call's HTTP request when
+ * the call is cancelled or times out. The blocking http client doesn't react to thread interrupts while waiting for
+ * data, so the request itself has to be aborted.
+ * <br /><br />
+ * The handle is bound to the thread executing the call, the {@link IDEConnectorClientConnector} registers each request
+ * it executes with the handle of the current thread (if any).
+ */
+class IDEConnectorCall {
+
+	private static final ThreadLocal<IDEConnectorCall> CURRENT_CALL = new ThreadLocal<>();
+
+	private HttpUriRequest request;
+	private boolean aborted;
+
+	/**
+	 * @return the handle of the call executed by the current thread or <code>null</code> if the current thread doesn't
+	 *         execute an asynchronous call
+	 */
+	static IDEConnectorCall current() {
+		return CURRENT_CALL.get();
+	}
+
+	/**
+	 * Binds the handle to the current thread.
+	 */
+	void attach() {
+		CURRENT_CALL.set(this);
+	}
+
+	/**
+	 * Unbinds the handle from the current thread.
+	 */
+	void detach() {
+		CURRENT_CALL.remove();
+	}
+
+	/**
+	 * Registers the request currently executed for the call. If the call has been aborted already, the request is
+	 * aborted immediately.
+	 * @param request   the request
+	 */
+	synchronized void setRequest(HttpUriRequest request) {
+		this.request = request;
+		if (aborted) {
+			request.abort();
+		}
+	}
+
+	/**
+	 * Aborts the call's current request and all requests registered later.
+	 */
+	synchronized void abort() {
+		aborted = true;
+		if (request != null) {
+			request.abort();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.mediaworx.opencms.ideconnector.client;
+
+/**
+ * Callback notified when an asynchronous call of the {@link IDEConnectorAsyncClient} is complete. Callbacks are
+ * invoked on the async client's callback executor.
+ * @param <T> the call's result type
+ */
+public interface IDEConnectorCallback<T> {
+
+	/**
+	 * Called when the call has succeeded.
+	 * @param result    the call's result (<code>null</code> for calls without result)
+	 */
+	void onSuccess(T result);
+
+	/**
+	 * Called when the call has failed, has been cancelled (the throwable is a
+	 * {@link java.util.concurrent.CancellationException}) or has timed out (the throwable is a
+	 * {@link java.util.concurrent.TimeoutException}).
+	 * @param t the cause of the failure
+	 */
+	void onFailure(Throwable t);
+
+}
@@ -2,12 +2,18 @@ package com.mediaworx.opencms.ideconnector.client;
 
 import com.mediaworx.opencms.ideconnector.client.params.GenericParams;
 import com.mediaworx.opencms.ideconnector.client.params.TokenParams;
+import com.mediaworx.opencms.ideconnector.client.params.ZipUploadParams;
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorEventConsumer;
 import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorResponsePrinter;
+import com.mediaworx.opencms.ideconnector.data.ImportJobStatus;
 import com.mediaworx.opencms.ideconnector.data.LoginStatus;
 import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import com.mediaworx.opencms.ideconnector.dataimpl.ImportJobStatusImpl;
 import com.mediaworx.opencms.ideconnector.dataimpl.LoginStatusImpl;
 import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,7 +25,7 @@ public class IDEConnectorClient {
 	private IDEConnectorClientConnector connector;
 	private IDEConnectorClientConfiguration configuration;
 
-	private String token;
+	private volatile String token;
 
 	public IDEConnectorClient(IDEConnectorClientConfiguration config) {
 		this.configuration = config;
@@ -62,8 +68,24 @@ public class IDEConnectorClient {
 	 * @param printer       printer used to stream the Connector's response
 	 */
 	public void importModules(List<ModuleImportInfo> importInfos, IDEConnectorResponsePrinter printer) {
+		importModules(importInfos, 1, printer);
+	}
+
+	/**
+	 * Imports the modules at the given local paths and streams the OpenCms import log to the IDEConnectorResponsePrinter.
+	 * Modules are imported in dependency order, modules that don't depend on each other are imported concurrently.
+	 * @param importInfos   infos needed for importing the module (for each module: path to the module zips in the
+	 *                      local FS and import site root)
+	 * @param parallelism   maximum number of modules to be imported concurrently (may be reduced by the server), each
+	 *                      line of the import log is prefixed with the module name if greater than 1
+	 * @param printer       printer used to stream the Connector's response
+	 */
+	public void importModules(List<ModuleImportInfo> importInfos, int parallelism, IDEConnectorResponsePrinter printer) {
 		TokenParams params = new TokenParams();
 		params.setToken(token);
+		if (parallelism > 1) {
+			params.addQueryParam(IDEConnectorConst.PARAM_PARALLELISM, String.valueOf(parallelism));
+		}
 		params.setJsonBean(importInfos);
 		connector.streamServiceResponse(
 				IDEConnectorConst.SERVICE_IMPORT_MODULE,
@@ -73,6 +95,30 @@ public class IDEConnectorClient {
 		);
 	}
 
+	/**
+	 * Imports the modules at the given local paths and passes structured progress events (module started/finished,
+	 * resource n of m, warnings, errors, timings) to the given consumer instead of streaming the plain import log.
+	 * @param importInfos   infos needed for importing the module (for each module: path to the module zips in the
+	 *                      local FS and import site root)
+	 * @param parallelism   maximum number of modules to be imported concurrently (may be reduced by the server)
+	 * @param consumer      consumer receiving the progress events
+	 */
+	public void importModulesWithEvents(List<ModuleImportInfo> importInfos, int parallelism, IDEConnectorEventConsumer consumer) {
+		TokenParams params = new TokenParams();
+		params.setToken(token);
+		if (parallelism > 1) {
+			params.addQueryParam(IDEConnectorConst.PARAM_PARALLELISM, String.valueOf(parallelism));
+		}
+		params.addQueryParam(IDEConnectorConst.PARAM_EVENTS, "true");
+		params.setJsonBean(importInfos);
+		connector.streamServiceEvents(
+				IDEConnectorConst.SERVICE_IMPORT_MODULE,
+				IDEConnectorConst.METHOD_POST,
+				params,
+				consumer
+		);
+	}
+
 	/**
 	 * Imports the module at the given local path and streams the OpenCms import log to the IDEConnectorResponsePrinter
 	 * @param modulePath   path to the module zips (local FS)
@@ -87,6 +133,194 @@ public class IDEConnectorClient {
 		importModules(importInfos, printer);
 	}
 
+	/**
+	 * Uploads the given module zip from the local file system and imports it, the OpenCms import log is streamed to the
+	 * IDEConnectorResponsePrinter. Unlike {@link #importModule(String, String, IDEConnectorResponsePrinter)} the zip
+	 * doesn't have to be accessible from the OpenCms server. The zip is streamed, the server reads the module manifest
+	 * while the rest of the zip is still being uploaded.
+	 * @param zipFile           the module zip (local FS)
+	 * @param importSiteRoot    site root the module is imported to
+	 * @param printer           printer used to stream the Connector's response
+	 */
+	public void importModuleZip(File zipFile, String importSiteRoot, IDEConnectorResponsePrinter printer) {
+		importModuleZip(zipFile, importSiteRoot, false, printer);
+	}
+
+	/**
+	 * Uploads the given module zip from the local file system and imports it, the OpenCms import log is streamed to the
+	 * IDEConnectorResponsePrinter.
+	 * @param zipFile           the module zip (local FS)
+	 * @param importSiteRoot    site root the module is imported to
+	 * @param differential      <code>true</code> if only the differences to the installed module should be imported
+	 *                          (see {@link ModuleImportInfo#isDifferential()})
+	 * @param printer           printer used to stream the Connector's response
+	 */
+	public void importModuleZip(File zipFile, String importSiteRoot, boolean differential, IDEConnectorResponsePrinter printer) {
+		ModuleImportInfo importInfo = new ModuleImportInfo();
+		importInfo.setImportSiteRoot(importSiteRoot);
+		importInfo.setDifferential(differential);
+		importModuleZip(zipFile, importInfo, printer);
+	}
+
+	/**
+	 * Uploads the given module zip from the local file system and imports it, the OpenCms import log is streamed to the
+	 * IDEConnectorResponsePrinter.
+	 * @param zipFile       the module zip (local FS)
+	 * @param importInfo    import site root and flags for the import (the module zip path is ignored)
+	 * @param printer       printer used to stream the Connector's response
+	 */
+	public void importModuleZip(File zipFile, ModuleImportInfo importInfo, IDEConnectorResponsePrinter printer) {
+		connector.streamServiceResponse(
+				IDEConnectorConst.SERVICE_IMPORT_MODULE,
+				IDEConnectorConst.METHOD_POST,
+				getZipUploadParams(zipFile, importInfo),
+				printer
+		);
+	}
+
+	/**
+	 * Uploads the given module zip from the local file system and imports it, structured progress events are passed to
+	 * the given consumer instead of streaming the plain import log.
+	 * @param zipFile       the module zip (local FS)
+	 * @param importInfo    import site root and flags for the import (the module zip path is ignored)
+	 * @param consumer      consumer receiving the progress events
+	 */
+	public void importModuleZipWithEvents(File zipFile, ModuleImportInfo importInfo, IDEConnectorEventConsumer consumer) {
+		ZipUploadParams params = getZipUploadParams(zipFile, importInfo);
+		params.addQueryParam(IDEConnectorConst.PARAM_EVENTS, "true");
+		connector.streamServiceEvents(
+				IDEConnectorConst.SERVICE_IMPORT_MODULE,
+				IDEConnectorConst.METHOD_POST,
+				params,
+				consumer
+		);
+	}
+
+	/**
+	 * Submits an asynchronous import job for the modules at the given paths. Returns immediately, the job's progress
+	 * can be polled by {@link #getImportStatus(String, long)} or followed by
+	 * {@link #waitForImport(String, long, IDEConnectorResponsePrinter)}.
+	 * @param importInfos   infos needed for importing the module (for each module: path to the module zips in the
+	 *                      local FS and import site root)
+	 * @param parallelism   maximum number of modules to be imported concurrently (may be reduced by the server)
+	 * @return  the status of the submitted job, containing the job id
+	 */
+	public ImportJobStatus submitImport(List<ModuleImportInfo> importInfos, int parallelism) {
+		TokenParams params = new TokenParams();
+		params.setToken(token);
+		if (parallelism > 1) {
+			params.addQueryParam(IDEConnectorConst.PARAM_PARALLELISM, String.valueOf(parallelism));
+		}
+		params.setJsonBean(importInfos);
+		return (ImportJobStatus)connector.getServiceResponseObject(
+				IDEConnectorConst.SERVICE_SUBMIT_IMPORT,
+				IDEConnectorConst.METHOD_POST,
+				params,
+				ImportJobStatusImpl.class
+		);
+	}
+
+	/**
+	 * Uploads the given module zip and submits an asynchronous import job for it. Returns as soon as the upload is
+	 * complete, the job's progress can be polled by {@link #getImportStatus(String, long)} or followed by
+	 * {@link #waitForImport(String, long, IDEConnectorResponsePrinter)}.
+	 * @param zipFile       the module zip (local FS)
+	 * @param importInfo    import site root and flags for the import (the module zip path is ignored)
+	 * @return  the status of the submitted job, containing the job id
+	 */
+	public ImportJobStatus submitImportZip(File zipFile, ModuleImportInfo importInfo) {
+		return (ImportJobStatus)connector.getServiceResponseObject(
+				IDEConnectorConst.SERVICE_SUBMIT_IMPORT,
+				IDEConnectorConst.METHOD_POST,
+				getZipUploadParams(zipFile, importInfo),
+				ImportJobStatusImpl.class
+		);
+	}
+
+	/**
+	 * Returns the status of an import job.
+	 * @param jobId     the job's id
+	 * @param logOffset offset of the first import log character to be contained in the status (pass the
+	 *                  {@link ImportJobStatus#getNextLogOffset()} of the previous status to tail the log)
+	 * @return  the job's status
+	 */
+	public ImportJobStatus getImportStatus(String jobId, long logOffset) {
+		TokenParams params = new TokenParams();
+		params.setToken(token);
+		params.addQueryParam(IDEConnectorConst.PARAM_JOB_ID, jobId);
+		params.addQueryParam(IDEConnectorConst.PARAM_LOG_OFFSET, String.valueOf(logOffset));
+		return (ImportJobStatus)connector.getServiceResponseObject(
+				IDEConnectorConst.SERVICE_IMPORT_STATUS,
+				IDEConnectorConst.METHOD_GET,
+				params,
+				ImportJobStatusImpl.class
+		);
+	}
+
+	/**
+	 * Polls the status of an import job until the job is done and streams the job's import log to the
+	 * IDEConnectorResponsePrinter. Can be used to resume following a job after the connection was lost.
+	 * @param jobId                 the job's id
+	 * @param pollIntervalMillis    time to wait between two polls
+	 * @param printer               printer used to stream the import log
+	 * @return  the final status of the job
+	 * @throws InterruptedException if the thread is interrupted while waiting for the next poll
+	 */
+	public ImportJobStatus waitForImport(String jobId, long pollIntervalMillis, IDEConnectorResponsePrinter printer) throws InterruptedException {
+		long logOffset = 0;
+		StringBuilder partialLine = new StringBuilder();
+		while (true) {
+			ImportJobStatus status = getImportStatus(jobId, logOffset);
+			if (status.getLog() != null) {
+				partialLine.append(status.getLog());
+				int lineEnd;
+				while ((lineEnd = partialLine.indexOf("\n")) >= 0) {
+					printer.println(StringUtils.removeEnd(partialLine.substring(0, lineEnd), "\r"));
+					partialLine.delete(0, lineEnd + 1);
+				}
+			}
+			logOffset = status.getNextLogOffset();
+			if (ImportJobStatus.STATE_FINISHED.equals(status.getState()) || ImportJobStatus.STATE_FAILED.equals(status.getState())) {
+				if (partialLine.length() > 0) {
+					printer.println(partialLine.toString());
+				}
+				return status;
+			}
+			Thread.sleep(pollIntervalMillis);
+		}
+	}
+
+	/**
+	 * Creates a batch collecting service calls that are sent together with one request when the batch is flushed, so
+	 * bursts of small calls only pay for one round trip.
+	 * @return  the new batch
+	 */
+	public IDEConnectorBatch batch() {
+		return new IDEConnectorBatch(this, connector);
+	}
+
+	String getToken() {
+		return token;
+	}
+
+	void setToken(String token) {
+		this.token = token;
+	}
+
+	private ZipUploadParams getZipUploadParams(File zipFile, ModuleImportInfo importInfo) {
+		ZipUploadParams params = new ZipUploadParams();
+		params.setToken(token);
+		params.addQueryParam(IDEConnectorConst.PARAM_SITE_ROOT, importInfo.getImportSiteRoot());
+		if (importInfo.isDifferential()) {
+			params.addQueryParam(IDEConnectorConst.PARAM_DIFFERENTIAL, "true");
+		}
+		if (importInfo.isForce()) {
+			params.addQueryParam(IDEConnectorConst.PARAM_FORCE, "true");
+		}
+		params.setZipFile(zipFile);
+		return params;
+	}
+
 	public IDEConnectorClientConfiguration getConfiguration() {
 		return configuration;
 	}
@@ -1,5 +1,7 @@
 package com.mediaworx.opencms.ideconnector.client;
 
+import com.mediaworx.opencms.ideconnector.client.cache.ResponseCache;
+
 /**
  * Created by kai on 15.07.15.
  */
@@ -36,6 +38,15 @@ public class IDEConnectorClientConfiguration {
 
 	private String connectorServiceBaseUrl;
 
+	/**
+	 * cache for responses carrying an ETag, cached responses are revalidated with conditional requests instead of
+	 * being transferred again (<code>null</code> disables caching)
+	 */
+	private ResponseCache responseCache;
+
+	/** maximum size in bytes of a response body to be cached, larger responses are streamed without caching */
+	private int maxCachedResponseSize = 16 * 1024 * 1024;
+
 
 	public int getMaxConnectionsTotal() {
 		return maxConnectionsTotal;
@@ -77,6 +88,22 @@ public class IDEConnectorClientConfiguration {
 		this.connectTimeout = connectTimeout;
 	}
 
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public int getMaxCachedResponseSize() {
+		return maxCachedResponseSize;
+	}
+
+	public void setMaxCachedResponseSize(int maxCachedResponseSize) {
+		this.maxCachedResponseSize = maxCachedResponseSize;
+	}
+
 	public String getConnectorServiceBaseUrl() {
 		return connectorServiceBaseUrl;
 	}
@@ -1,42 +1,73 @@
 package com.mediaworx.opencms.ideconnector.client;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.module.mrbean.MrBeanModule;
+import com.mediaworx.opencms.ideconnector.client.cache.CachedResponse;
+import com.mediaworx.opencms.ideconnector.client.cache.ResponseCache;
 import com.mediaworx.opencms.ideconnector.client.exceptions.ConnectorException;
 import com.mediaworx.opencms.ideconnector.client.exceptions.NotFoundException;
 import com.mediaworx.opencms.ideconnector.client.params.ServiceParams;
 import com.mediaworx.opencms.ideconnector.client.params.UploadFileParams;
+import com.mediaworx.opencms.ideconnector.client.params.ZipUploadParams;
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorBatchConsumer;
+import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorEventConsumer;
 import com.mediaworx.opencms.ideconnector.consumer.IDEConnectorResponsePrinter;
+import com.mediaworx.opencms.ideconnector.dataimpl.BatchResponseImpl;
+import com.mediaworx.opencms.ideconnector.dataimpl.ProgressEventImpl;
 import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TODOC
@@ -51,9 +82,16 @@ public class IDEConnectorClientConnector {
 
 	private static final Logger LOG = LoggerFactory.getLogger(IDEConnectorClientConnector.class);
 
+	/** params not used for response cache keys (credentials and tokens, the legacy connector uses the long names) */
+	private static final Set<String> CACHE_KEY_EXCLUDED_PARAMS = new HashSet<>(Arrays.asList(
+			IDEConnectorConst.PARAM_USER, IDEConnectorConst.PARAM_PASSWORD, IDEConnectorConst.PARAM_TOKEN,
+			"user", "password", "token"));
+
 	private final IDEConnectorClientConfiguration config;
 	private final CloseableHttpClient httpClient;
 	private final ObjectMapper objectMapper;
+	private final ObjectWriter jsonWriter;
+	private final ConcurrentHashMap<JavaType, ObjectReader> objectReaders = new ConcurrentHashMap<>();
 
 	public IDEConnectorClientConnector(IDEConnectorClientConfiguration config) {
 		this.config = config;
@@ -65,25 +103,29 @@ public class IDEConnectorClientConnector {
 		objectMapper.registerModule(new MrBeanModule());
 		objectMapper.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
 		objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		// the http client closes the request's output stream itself
+		jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 	}
 
+	/**
+	 * Executes a service call and parses the JSON response directly from the response stream.
+	 * @return  the response object or <code>null</code> if the response is empty or can't be parsed
+	 */
 	public Object getServiceResponseObject(String apiPath, String httpMethod, ServiceParams params, Class<?> responseObjectClass) throws ConnectorException {
-		String json = getResponseString(getApiUrl(apiPath), httpMethod, params);
-
-		Object responseObject = null;
-
-		if (StringUtils.isNotBlank(json)) {
-			try {
-				responseObject = objectMapper.readValue(json, responseObjectClass);
-			}
-			catch (IOException e) {
-				LOG.error("Exception converting a  JSON response to an Object of type " + responseObjectClass.getName(), e);
-			}
+		JavaType type = objectMapper.getTypeFactory().constructType(responseObjectClass);
+		try {
+			return readResponse(getResponse(getApiUrl(apiPath), httpMethod, params), type);
+		}
+		catch (JsonProcessingException e) {
+			LOG.error("Exception converting a  JSON response to an Object of type " + responseObjectClass.getName(), e);
+			return null;
 		}
-
-		return responseObject;
 	}
 
+	/**
+	 * Executes a service call and returns the response body exactly as it was received (line breaks included).
+	 */
+
 	public String getServiceResponseString(String apiPath, String httpMethod, ServiceParams params) throws ConnectorException {
 		return getResponseString(getApiUrl(apiPath), httpMethod, params);
 	}
@@ -92,21 +134,20 @@ public class IDEConnectorClientConnector {
 		return getResponse(getApiUrl(apiPath), httpMethod, params);
 	}
 
+	/**
+	 * Executes a service call and parses the JSON response directly from the response stream.
+	 * @return  the response list, empty if the response is empty or can't be parsed
+	 */
 	public List<?> getServiceResponseList(String apiPath, String httpMethod, ServiceParams params, Class<?> listEntryClass) throws ConnectorException {
-		String json = getResponseString(getApiUrl(apiPath), httpMethod, params);
-
-		List<?> responseList = new ArrayList<>();
-
-		if (StringUtils.isNotBlank(json)) {
-			try {
-				JavaType objList = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, listEntryClass);
-				responseList = objectMapper.readValue(json, objList);
-			}
-			catch (IOException e) {
-				LOG.error("Exception converting a  JSON response to a List containing Objects of type " + listEntryClass.getName(), e);
-			}
+		JavaType objList = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, listEntryClass);
+		List<?> responseList = null;
+		try {
+			responseList = (List<?>)readResponse(getResponse(getApiUrl(apiPath), httpMethod, params), objList);
+		}
+		catch (JsonProcessingException e) {
+			LOG.error("Exception converting a  JSON response to a List containing Objects of type " + listEntryClass.getName(), e);
 		}
-		return responseList;
+		return responseList != null ? responseList : new ArrayList<>();
 	}
 
 	public boolean getServiceResponseBoolean(String apiPath, String httpMethod, ServiceParams params) {
@@ -114,13 +155,68 @@ public class IDEConnectorClientConnector {
 	}
 
 	public void executeServiceCall(String apiPath, String httpMethod, ServiceParams params) {
-		getResponseString(getApiUrl(apiPath), httpMethod, params);
+		CloseableHttpResponse response = getResponse(getApiUrl(apiPath), httpMethod, params);
+		try {
+			// the response body isn't needed, it is only consumed so the connection can be reused
+			EntityUtils.consume(response.getEntity());
+		}
+		catch (IOException e) {
+			LOG.warn("Error consuming a http response in the Client", e);
+		}
+		finally {
+			closeResponse(response);
+		}
 	}
 
 	public void streamServiceResponse(String apiPath, String httpMethod, ServiceParams params, IDEConnectorResponsePrinter printer) throws ConnectorException {
 		streamResponse(getResponse(getApiUrl(apiPath), httpMethod, params), printer);
 	}
 
+	/**
+	 * Executes a service call returning structured progress events (NDJSON, one event per line) and passes each event
+	 * to the given consumer as soon as it is received.
+	 */
+	public void streamServiceEvents(String apiPath, String httpMethod, ServiceParams params, IDEConnectorEventConsumer consumer) throws ConnectorException {
+		streamResponse(getResponse(getApiUrl(apiPath), httpMethod, params), new EventLineParser(consumer));
+	}
+
+	/**
+	 * Executes a batch of service calls (NDJSON response, one sub-response per line) and passes each sub-response to
+	 * the given consumer as soon as it is received.
+	 */
+	public void streamServiceBatch(String apiPath, String httpMethod, ServiceParams params, IDEConnectorBatchConsumer consumer) throws ConnectorException {
+		streamResponse(getResponse(getApiUrl(apiPath), httpMethod, params), new BatchLineParser(consumer));
+	}
+
+	/**
+	 * Parses a JSON String, e.g. the body of a batch's sub-response.
+	 * @return  the parsed object or <code>null</code> if the JSON is empty or can't be parsed
+	 */
+	public Object parseJson(String json, Class<?> objectClass) {
+		if (StringUtils.isBlank(json)) {
+			return null;
+		}
+		try {
+			return getObjectReader(objectMapper.getTypeFactory().constructType(objectClass)).readValue(json);
+		}
+		catch (IOException e) {
+			LOG.error("Exception converting JSON to an Object of type " + objectClass.getName(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Converts a bean to JSON, e.g. a request parameter of a batch's sub-request.
+	 */
+	public String toJson(Object bean) throws ConnectorException {
+		try {
+			return objectMapper.writeValueAsString(bean);
+		}
+		catch (JsonProcessingException e) {
+			throw new ConnectorException("requestData can't be converted to JSON", 0, "", e);
+		}
+	}
+
 	private String getApiUrl(String apiPath) {
 		return config.getConnectorServiceBaseUrl() + apiPath;
 	}
@@ -134,10 +230,31 @@ public class IDEConnectorClientConnector {
 		CloseableHttpResponse response = null;
 		try {
 			HttpUriRequest request = getRequest(url, httpMethod, params);
+			IDEConnectorCall call = IDEConnectorCall.current();
+			if (call != null) {
+				call.setRequest(request);
+			}
+
+			// cached responses are revalidated, so unchanged bodies aren't transferred again
+			ResponseCache responseCache = config.getResponseCache();
+			String cacheKey = responseCache != null ? getCacheKey(url, httpMethod, params) : null;
+			CachedResponse cachedResponse = cacheKey != null ? responseCache.get(cacheKey) : null;
+			if (cachedResponse != null) {
+				request.setHeader(IDEConnectorConst.HEADER_IF_NONE_MATCH, cachedResponse.getETag());
+			}
+
 			response = httpClient.execute(request);
 
 			int statusCode = response.getStatusLine().getStatusCode();
 
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && cachedResponse != null) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Response not modified, using the cached response for Url " + url);
+				}
+				closeResponse(response);
+				return new CachedHttpResponse(cachedResponse);
+			}
+
 			if (statusCode == HttpStatus.SC_NOT_FOUND) {
 				String message = " service returned NOT FOUND for Url " + url + " with params " + params.toString();
 				LOG.error(message);
@@ -156,6 +273,16 @@ public class IDEConnectorClientConnector {
 				throw new ConnectorException(message, statusCode, responseBody);
 			}
 
+			if (cacheKey != null) {
+				Header etag = response.getFirstHeader(IDEConnectorConst.HEADER_ETAG);
+				if (etag != null && response.getEntity() != null) {
+					response.setEntity(new CachingEntity(response.getEntity(), responseCache, cacheKey, etag.getValue(), config.getMaxCachedResponseSize()));
+				}
+				else if (cachedResponse != null) {
+					responseCache.remove(cacheKey);
+				}
+			}
+
 			return response;
 		}
 		catch (IOException e) {
@@ -165,16 +292,71 @@ public class IDEConnectorClientConnector {
 		}
 	}
 
+	/**
+	 * Returns the key used to cache the response of the given request: a SHA-256 hash of the method, the Url, the
+	 * params and the JSON bean. The JSON bean (e.g. thousands of resource paths) is serialized directly into the
+	 * digest, so it's never held in memory as String. Credentials and tokens are not part of the key, since the server
+	 * validates the cached body's ETag against the body it would send to the current user.
+	 * @return  the key or <code>null</code> if the response can't be cached (uploads)
+	 */
+	private String getCacheKey(String url, String httpMethod, ServiceParams params) {
+		if (params instanceof UploadFileParams || params instanceof ZipUploadParams) {
+			return null;
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			LOG.warn("SHA-256 is not available, responses are not cached", e);
+			return null;
+		}
+		updateDigest(digest, httpMethod + ' ' + url);
+		if (params != null) {
+			if (params.getQueryParams() != null) {
+				for (NameValuePair queryParam : params.getQueryParams()) {
+					if (!CACHE_KEY_EXCLUDED_PARAMS.contains(queryParam.getName())) {
+						updateDigest(digest, "\n" + queryParam.getName() + '=' + queryParam.getValue());
+					}
+				}
+			}
+			if (params.getJsonBean() != null) {
+				updateDigest(digest, "\n");
+				try {
+					objectMapper.writeValue(new DigestingOutputStream(digest), params.getJsonBean());
+				}
+				catch (IOException e) {
+					return null;
+				}
+			}
+		}
+		byte[] hash = digest.digest();
+		StringBuilder key = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	private static void updateDigest(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the response body as String, line breaks are preserved.
+	 */
 	private String getResponseBody(CloseableHttpResponse response) {
 		if (response != null) {
 			InputStream responseStream = null;
 			StringBuilder outputBuffer = new StringBuilder();
 			try {
 				responseStream = response.getEntity().getContent();
-				BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(responseStream, StandardCharsets.UTF_8));
-				String output;
-				while ((output = bufferedReader.readLine()) != null) {
-					outputBuffer.append(output);
+				Reader reader = new InputStreamReader(responseStream, StandardCharsets.UTF_8);
+				char[] buffer = new char[8192];
+				int numChars;
+				while ((numChars = reader.read(buffer)) != -1) {
+					outputBuffer.append(buffer, 0, numChars);
 				}
 			}
 			catch (IOException e) {
@@ -183,24 +365,85 @@ public class IDEConnectorClientConnector {
 				throw new ConnectorException(message, 0, "", e);
 			}
 			finally {
-				if (responseStream != null) {
-					try {
-						responseStream.close();
-					}
-					catch (IOException e) {
-						LOG.warn("Error closing a http response input stream in the Client", e);
-					}
+				closeResponseStream(responseStream);
+				closeResponse(response);
+			}
+			return outputBuffer.toString();
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the JSON response body directly from the response stream, without building a String of the whole body.
+	 * @return  the parsed value or <code>null</code> if the body is empty
+	 * @throws JsonProcessingException if the body isn't valid JSON of the expected type
+	 */
+	private Object readResponse(CloseableHttpResponse response, JavaType type) throws JsonProcessingException {
+		if (response == null || response.getEntity() == null) {
+			closeResponse(response);
+			return null;
+		}
+		InputStream responseStream = null;
+		try {
+			responseStream = response.getEntity().getContent();
+			ObjectReader reader = getObjectReader(type);
+			try (JsonParser parser = reader.getFactory().createParser(responseStream)) {
+				if (parser.nextToken() == null) {
+					// empty body
+					return null;
 				}
+				return reader.readValue(parser);
+			}
+		}
+		catch (JsonProcessingException e) {
+			throw e;
+		}
+		catch (IOException e) {
+			String message = "ERROR reading the  response body";
+			LOG.error(message, e);
+			throw new ConnectorException(message, 0, "", e);
+		}
+		finally {
+			closeResponseStream(responseStream);
+			closeResponse(response);
+		}
+	}
+
+	/**
+	 * Returns the cached ObjectReader for the given type, ObjectReaders are immutable and thread safe.
+	 */
+	private ObjectReader getObjectReader(JavaType type) {
+		ObjectReader reader = objectReaders.get(type);
+		if (reader == null) {
+			reader = objectMapper.readerFor(type);
+			ObjectReader existingReader = objectReaders.putIfAbsent(type, reader);
+			if (existingReader != null) {
+				reader = existingReader;
 			}
+		}
+		return reader;
+	}
+
+	private void closeResponseStream(InputStream responseStream) {
+		if (responseStream != null) {
+			try {
+				responseStream.close();
+			}
+			catch (IOException e) {
+				LOG.warn("Error closing a http response input stream in the Client", e);
+			}
+		}
+	}
+
+	private void closeResponse(CloseableHttpResponse response) {
+		if (response != null) {
 			try {
 				response.close();
 			}
 			catch (IOException e) {
 				LOG.warn("Error closing a http response in the Client", e);
 			}
-			return outputBuffer.toString();
 		}
-		return null;
 	}
 
 	private void streamResponse(CloseableHttpResponse response, IDEConnectorResponsePrinter printer) {
@@ -249,8 +492,24 @@ public class IDEConnectorClientConnector {
 		requestBuilder.setConfig(configBuilder.build());
 
 		if (params != null) {
+			// handle zip uploads streamed from a local file as raw request body
+			if (params instanceof ZipUploadParams) {
+				File zipFile = ((ZipUploadParams) params).getZipFile();
+				FileEntity zipEntity = new FileEntity(zipFile, ContentType.create(IDEConnectorConst.CONTENT_TYPE_ZIP));
+				zipEntity.setChunked(true);
+				requestBuilder.setEntity(zipEntity);
+				requestBuilder.addHeader("Content-Disposition", "attachment; filename=\"" + zipFile.getName() + "\"");
+
+				// the RequestBuilder adds the queryParams to the Url since the request has an entity
+				if (params.getQueryParams() != null) {
+					List<NameValuePair> queryParams = params.getQueryParams();
+					if (queryParams.size() > 0) {
+						requestBuilder.addParameters(queryParams.toArray(new NameValuePair[queryParams.size()]));
+					}
+				}
+			}
 			// handle "normal" requests without uploads
-			if (!(params instanceof UploadFileParams)) {
+			else if (!(params instanceof UploadFileParams)) {
 				if (params.getQueryParams() != null) {
 					List<NameValuePair> queryParams = params.getQueryParams();
 					if (queryParams.size() > 0) {
@@ -259,29 +518,52 @@ public class IDEConnectorClientConnector {
 				}
 
 				if (params.getJsonBean() != null) {
-					String json;
-					try {
-						json = objectMapper.writeValueAsString(params.getJsonBean());
-						LOG.info(json);
+					if (IDEConnectorConst.METHOD_POST.equals(httpMethod) || IDEConnectorConst.METHOD_PUT.equals(httpMethod)) {
+						// the bean is serialized directly to the request body, the queryParams are added to the Url
+						requestBuilder.setEntity(new JsonBeanEntity(jsonWriter, params.getJsonBean()));
 					}
-					catch (JsonProcessingException e) {
-						throw new ConnectorException("requestData can't be converted to JSON", 0, "", e);
+					else {
+						String json;
+						try {
+							json = objectMapper.writeValueAsString(params.getJsonBean());
+						}
+						catch (JsonProcessingException e) {
+							throw new ConnectorException("requestData can't be converted to JSON", 0, "", e);
+						}
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("JSON parameter with " + json.length() + " characters");
+						}
+						requestBuilder.addParameter(new BasicNameValuePair(IDEConnectorConst.PARAM_JSON, json));
 					}
-					requestBuilder.addParameter(new BasicNameValuePair(IDEConnectorConst.PARAM_JSON, json));
 				}
 			}
 			// handle uploads
 			else {
-				FileItem uploadFileItem = ((UploadFileParams) params).getUploadFileItem();
-				if (uploadFileItem != null) {
+				UploadFileParams uploadParams = (UploadFileParams) params;
+				FileItem uploadFileItem = uploadParams.getUploadFileItem();
+				if (uploadFileItem != null || !uploadParams.getUploadFiles().isEmpty()) {
+					// file contents are streamed while the request is sent, they are never held in memory
 					MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
-					String name = uploadFileItem.getFieldName();
-					byte[] b = uploadFileItem.get();
-					ContentType contentType = ContentType.create(uploadFileItem.getContentType());
-					String filename = uploadFileItem.getName();
-					entityBuilder.addBinaryBody(name, b, contentType, filename);
-					HttpEntity uploadEntity = entityBuilder.build();
-					requestBuilder.setEntity(uploadEntity);
+					if (uploadFileItem != null) {
+						InputStream in;
+						try {
+							in = new FileItemInputStream(uploadFileItem);
+						}
+						catch (IOException e) {
+							throw new ConnectorException("FileItem " + uploadFileItem.getName() + " can't be read", 0, "", e);
+						}
+						entityBuilder.addBinaryBody(uploadFileItem.getFieldName(), in, getContentType(uploadFileItem.getContentType()), uploadFileItem.getName());
+					}
+					for (UploadFileParams.UploadFile uploadFile : uploadParams.getUploadFiles()) {
+						ContentType contentType = getContentType(uploadFile.getContentType());
+						if (uploadFile.getFile() != null) {
+							entityBuilder.addBinaryBody(uploadFile.getFieldName(), uploadFile.getFile(), contentType, uploadFile.getFileName());
+						}
+						else {
+							entityBuilder.addBinaryBody(uploadFile.getFieldName(), uploadFile.getInputStream(), contentType, uploadFile.getFileName());
+						}
+					}
+					requestBuilder.setEntity(new ChunkedEntity(entityBuilder.build()));
 
 					// for uploads GET and POST are combined, so the queryParams have to be added to the Url
 					if (params.getQueryParams() != null) {
@@ -293,7 +575,6 @@ public class IDEConnectorClientConnector {
 						}
 						Url += queryString.toString();
 					}
-					uploadFileItem.delete();
 				}
 			}
 
@@ -301,4 +582,320 @@ public class IDEConnectorClientConnector {
 		requestBuilder.setUri(Url);
 		return requestBuilder.build();
 	}
+	private static ContentType getContentType(String contentType) {
+		return StringUtils.isNotBlank(contentType) ? ContentType.create(contentType) : ContentType.DEFAULT_BINARY;
+	}
+
+	/**
+	 * Converts the lines of an NDJSON response to progress events. Lines that can't be parsed are logged and skipped.
+	 */
+	private class EventLineParser implements IDEConnectorResponsePrinter {
+
+		private final IDEConnectorEventConsumer consumer;
+		private final ObjectReader eventReader;
+
+		EventLineParser(IDEConnectorEventConsumer consumer) {
+			this.consumer = consumer;
+			eventReader = getObjectReader(objectMapper.getTypeFactory().constructType(ProgressEventImpl.class));
+		}
+
+		@Override
+		public void println(String line) {
+			if (StringUtils.isBlank(line)) {
+				return;
+			}
+			ProgressEventImpl event;
+			try {
+				event = eventReader.readValue(line);
+			}
+			catch (IOException e) {
+				LOG.warn("Skipping progress event that can't be parsed: " + line, e);
+				return;
+			}
+			consumer.onEvent(event);
+		}
+	}
+
+	/**
+	 * Converts the lines of a batch response to sub-responses. Lines that can't be parsed are logged and skipped.
+	 */
+	private class BatchLineParser implements IDEConnectorResponsePrinter {
+
+		private final IDEConnectorBatchConsumer consumer;
+		private final ObjectReader responseReader;
+
+		BatchLineParser(IDEConnectorBatchConsumer consumer) {
+			this.consumer = consumer;
+			responseReader = getObjectReader(objectMapper.getTypeFactory().constructType(BatchResponseImpl.class));
+		}
+
+		@Override
+		public void println(String line) {
+			if (StringUtils.isBlank(line)) {
+				return;
+			}
+			BatchResponseImpl response;
+			try {
+				response = responseReader.readValue(line);
+			}
+			catch (IOException e) {
+				LOG.warn("Skipping batch response that can't be parsed: " + line, e);
+				return;
+			}
+			consumer.onResponse(response);
+		}
+	}
+
+	/**
+	 * Response served from the response cache after the server has answered with 304 (Not Modified).
+	 */
+	private static class CachedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		CachedHttpResponse(CachedResponse cachedResponse) {
+			super(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+			ByteArrayEntity entity = new ByteArrayEntity(cachedResponse.getBody());
+			entity.setContentType(cachedResponse.getContentType());
+			setEntity(entity);
+			setHeader(IDEConnectorConst.HEADER_ETAG, cachedResponse.getETag());
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Response entity copying the body to the response cache while it is read. The body is cached when it has been
+	 * read completely, bodies larger than the maximum size are not cached.
+	 */
+	private static class CachingEntity extends HttpEntityWrapper {
+
+		private final ResponseCache responseCache;
+		private final String cacheKey;
+		private final String etag;
+		private final int maxSize;
+		private InputStream content;
+
+		CachingEntity(HttpEntity wrappedEntity, ResponseCache responseCache, String cacheKey, String etag, int maxSize) {
+			super(wrappedEntity);
+			this.responseCache = responseCache;
+			this.cacheKey = cacheKey;
+			this.etag = etag;
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public synchronized InputStream getContent() throws IOException {
+			if (content == null) {
+				Header contentType = getContentType();
+				content = new CachingInputStream(super.getContent(), contentType != null ? contentType.getValue() : null);
+			}
+			return content;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (InputStream in = getContent()) {
+				byte[] buffer = new byte[8192];
+				int numBytes;
+				while ((numBytes = in.read(buffer)) != -1) {
+					out.write(buffer, 0, numBytes);
+				}
+			}
+		}
+
+		private class CachingInputStream extends FilterInputStream {
+
+			private final String contentType;
+			private ByteArrayOutputStream body = new ByteArrayOutputStream();
+			private boolean complete = false;
+
+			CachingInputStream(InputStream in, String contentType) {
+				super(in);
+				this.contentType = contentType;
+			}
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b == -1) {
+					endOfStream();
+				}
+				else if (body != null) {
+					body.write(b);
+					checkSize();
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int numBytes = super.read(b, off, len);
+				if (numBytes == -1) {
+					endOfStream();
+				}
+				else if (body != null) {
+					body.write(b, off, numBytes);
+					checkSize();
+				}
+				return numBytes;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				// skipped bytes are missing in the body
+				body = null;
+				return super.skip(n);
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			/**
+			 * Reads the rest of the body before closing the stream (the http client would consume it anyway to reuse
+			 * the connection), so bodies that are parsed without reading up to the end of the stream are cached too.
+			 */
+			@Override
+			public void close() throws IOException {
+				try {
+					if (body != null && !complete) {
+						byte[] buffer = new byte[8192];
+						while (read(buffer, 0, buffer.length) != -1) {
+							// the bytes are copied to the body by read
+						}
+					}
+				}
+				catch (IOException e) {
+					body = null;
+				}
+				finally {
+					super.close();
+				}
+			}
+
+			private void checkSize() {
+				if (body.size() > maxSize) {
+					body = null;
+				}
+			}
+
+			private void endOfStream() {
+				if (body != null && !complete) {
+					complete = true;
+					responseCache.put(cacheKey, new CachedResponse(etag, contentType, body.toByteArray()));
+					body = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends the wrapped entity chunked, so multipart uploads are streamed without computing their length in advance.
+	 */
+	private static class ChunkedEntity extends HttpEntityWrapper {
+
+		ChunkedEntity(HttpEntity wrappedEntity) {
+			super(wrappedEntity);
+		}
+
+		@Override
+		public boolean isChunked() {
+			return true;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+	}
+
+	/**
+	 * Stream of an uploaded FileItem, the FileItem is deleted when the stream is closed after it has been sent.
+	 */
+	private static class FileItemInputStream extends FilterInputStream {
+
+		private final FileItem fileItem;
+
+		FileItemInputStream(FileItem fileItem) throws IOException {
+			super(fileItem.getInputStream());
+			this.fileItem = fileItem;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				fileItem.delete();
+			}
+		}
+	}
+
+	/**
+	 * Output stream passing everything written to it to a message digest, used to hash JSON beans without serializing
+	 * them to a String.
+	 */
+	private static class DigestingOutputStream extends OutputStream {
+
+		private final MessageDigest digest;
+
+		DigestingOutputStream(MessageDigest digest) {
+			this.digest = digest;
+		}
+
+		@Override
+		public void write(int b) {
+			digest.update((byte)b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			digest.update(bytes, offset, length);
+		}
+	}
+
+	/**
+	 * Request entity serializing a bean as JSON directly to the connection's output stream while the request is sent,
+	 * without building the JSON String in memory. The entity is chunked, since the length is unknown in advance.
+	 */
+	private static class JsonBeanEntity extends AbstractHttpEntity {
+
+		private final ObjectWriter jsonWriter;
+		private final Object bean;
+
+		JsonBeanEntity(ObjectWriter jsonWriter, Object bean) {
+			this.jsonWriter = jsonWriter;
+			this.bean = bean;
+			setContentType(ContentType.APPLICATION_JSON.toString());
+			setChunked(true);
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new ByteArrayInputStream(jsonWriter.writeValueAsBytes(bean));
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			jsonWriter.writeValue(out, bean);
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+	}
 }
@@ -0,0 +1,38 @@
+package com.mediaworx.opencms.ideconnector.client.cache;
+
+/**
+ * A response body stored in a {@link ResponseCache} together with its ETag.
+ */
+public class CachedResponse {
+
+	private final String etag;
+	private final String contentType;
+	private final byte[] body;
+
+	/**
+	 * Creates a cached response.
+	 * @param etag          the ETag sent with the response
+	 * @param contentType   the response's content type (may be <code>null</code>)
+	 * @param body          the response body
+	 */
+	public CachedResponse(String etag, String contentType, byte[] body) {
+		this.etag = etag;
+		this.contentType = contentType;
+		this.body = body;
+	}
+
+	public String getETag() {
+		return etag;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return the response body, must not be modified
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+}
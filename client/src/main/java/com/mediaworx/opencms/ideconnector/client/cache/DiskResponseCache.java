@@ -0,0 +1,112 @@
+package com.mediaworx.opencms.ideconnector.client.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Response cache storing each response in a file in a cache directory, so cached responses survive IDE restarts.
+ * Usually used as second level cache of a {@link LruResponseCache}. The file names are the cache keys (which are
+ * hashes of the requests), files are replaced atomically, so concurrent access is safe. Errors reading or writing
+ * the files are logged, the response is treated as not cached.
+ */
+public class DiskResponseCache implements ResponseCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DiskResponseCache.class);
+
+	private static final String FILE_SUFFIX = ".response";
+	private static final int FORMAT_VERSION = 1;
+
+	private final Path directory;
+
+	/**
+	 * Creates a disk cache, the directory is created if it doesn't exist.
+	 * @param directory the cache directory
+	 * @throws IOException if the directory can't be created
+	 */
+	public DiskResponseCache(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	@Override
+	public CachedResponse get(String key) {
+		Path file = getFile(key);
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			if (in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			String etag = in.readUTF();
+			String contentType = in.readBoolean() ? in.readUTF() : null;
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+			return new CachedResponse(etag, contentType, body);
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+		catch (IOException e) {
+			LOG.warn("Cached response " + file + " can't be read", e);
+			return null;
+		}
+	}
+
+	@Override
+	public void put(String key, CachedResponse response) {
+		Path file = getFile(key);
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(directory, key, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(response.getETag());
+				out.writeBoolean(response.getContentType() != null);
+				if (response.getContentType() != null) {
+					out.writeUTF(response.getContentType());
+				}
+				out.writeInt(response.getBody().length);
+				out.write(response.getBody());
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			tempFile = null;
+		}
+		catch (IOException e) {
+			LOG.warn("Response can't be cached in " + file, e);
+		}
+		finally {
+			deleteQuietly(tempFile);
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		deleteQuietly(getFile(key));
+	}
+
+	private Path getFile(String key) {
+		return directory.resolve(key + FILE_SUFFIX);
+	}
+
+	private static void deleteQuietly(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			LOG.warn("Cache file " + file + " can't be deleted", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{directory=" + directory + "}";
+	}
+}
@@ -0,0 +1,113 @@
+package com.mediaworx.opencms.ideconnector.client.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory response cache bounded by the total size of the cached bodies. If the cache is full, the least recently
+ * used responses are evicted.
+ * <br /><br />
+ * Optionally a second level cache (usually a {@link DiskResponseCache}) can be added: all responses are stored in
+ * both caches, responses missing in memory are looked up in the second level cache and kept in memory again. So
+ * responses evicted from memory (or cached in an earlier IDE session) can still be revalidated.
+ */
+public class LruResponseCache implements ResponseCache {
+
+	private final long maxBytes;
+	private final ResponseCache secondLevelCache;
+	private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long numBytes;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates an in-memory cache without second level cache.
+	 * @param maxBytes  maximum total size of the cached bodies in bytes
+	 */
+	public LruResponseCache(long maxBytes) {
+		this(maxBytes, null);
+	}
+
+	/**
+	 * Creates an in-memory cache.
+	 * @param maxBytes          maximum total size of the cached bodies in bytes
+	 * @param secondLevelCache  cache used for responses missing in memory (may be <code>null</code>)
+	 */
+	public LruResponseCache(long maxBytes, ResponseCache secondLevelCache) {
+		this.maxBytes = maxBytes;
+		this.secondLevelCache = secondLevelCache;
+	}
+
+	@Override
+	public CachedResponse get(String key) {
+		synchronized (this) {
+			CachedResponse response = entries.get(key);
+			if (response != null) {
+				hits++;
+				return response;
+			}
+			misses++;
+		}
+		if (secondLevelCache == null) {
+			return null;
+		}
+		CachedResponse response = secondLevelCache.get(key);
+		if (response != null) {
+			putInMemory(key, response);
+		}
+		return response;
+	}
+
+	@Override
+	public void put(String key, CachedResponse response) {
+		putInMemory(key, response);
+		if (secondLevelCache != null) {
+			secondLevelCache.put(key, response);
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		synchronized (this) {
+			CachedResponse response = entries.remove(key);
+			if (response != null) {
+				numBytes -= response.getBody().length;
+			}
+		}
+		if (secondLevelCache != null) {
+			secondLevelCache.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all responses from memory, the second level cache is not cleared.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		numBytes = 0;
+	}
+
+	private synchronized void putInMemory(String key, CachedResponse response) {
+		if (response.getBody().length > maxBytes) {
+			return;
+		}
+		CachedResponse previous = entries.put(key, response);
+		if (previous != null) {
+			numBytes -= previous.getBody().length;
+		}
+		numBytes += response.getBody().length;
+		Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator();
+		while (numBytes > maxBytes && it.hasNext()) {
+			numBytes -= it.next().getValue().getBody().length;
+			it.remove();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{size=" + entries.size() + ", bytes=" + numBytes + ", maxBytes=" + maxBytes
+				+ ", hits=" + hits + ", misses=" + misses + ", secondLevelCache=" + secondLevelCache + "}";
+	}
+}
@@ -0,0 +1,31 @@
+package com.mediaworx.opencms.ideconnector.client.cache;
+
+/**
+ * Cache for responses carrying an ETag, used by the {@link com.mediaworx.opencms.ideconnector.client.IDEConnectorClientConnector}
+ * to revalidate responses with conditional requests (<code>If-None-Match</code>) instead of transferring unchanged
+ * bodies again. Implementations must be thread safe.
+ * @see LruResponseCache
+ * @see DiskResponseCache
+ */
+public interface ResponseCache {
+
+	/**
+	 * Returns the response cached for the given key.
+	 * @param key   the cache key (a hash of the request)
+	 * @return  the cached response or <code>null</code> if there is none
+	 */
+	CachedResponse get(String key);
+
+	/**
+	 * Stores the given response.
+	 * @param key       the cache key (a hash of the request)
+	 * @param response  the response
+	 */
+	void put(String key, CachedResponse response);
+
+	/**
+	 * Removes the response cached for the given key.
+	 * @param key   the cache key (a hash of the request)
+	 */
+	void remove(String key);
+}
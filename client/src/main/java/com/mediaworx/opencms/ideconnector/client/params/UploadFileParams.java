@@ -2,9 +2,17 @@ package com.mediaworx.opencms.ideconnector.client.params;
 
 import org.apache.commons.fileupload.FileItem;
 
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
- * TODOC
+ * Params for multipart uploads. Files are streamed from their source while the request is sent (chunked), so heap
+ * usage doesn't depend on the file size. Several files can be uploaded with one request.
  * <p/>
  * (c) 2015, mediaworx berlin AG
  * All rights reserved
@@ -17,12 +25,102 @@ import org.apache.commons.fileupload.FileItem;
 public class UploadFileParams extends GenericParams {
 
 	FileItem uploadFileItem;
+	private final List<UploadFile> uploadFiles = new ArrayList<>();
 
 	public FileItem getUploadFileItem() {
 		return uploadFileItem;
 	}
 
+	/**
+	 * Sets a FileItem to be uploaded, the item's content is streamed and the item is deleted after it has been sent.
+	 * @param uploadFileItem    the FileItem
+	 */
 	public void setUploadFileItem(FileItem uploadFileItem) {
 		this.uploadFileItem = uploadFileItem;
 	}
+
+	/**
+	 * Adds a local file to be uploaded.
+	 * @param fieldName     name of the multipart form field
+	 * @param file          the file
+	 * @param contentType   the file's content type
+	 */
+	public void addUploadFile(String fieldName, File file, String contentType) {
+		uploadFiles.add(new UploadFile(fieldName, file.getName(), contentType, file, null));
+	}
+
+	/**
+	 * Adds a local file to be uploaded, the path must belong to the default file system.
+	 * @param fieldName     name of the multipart form field
+	 * @param path          path of the file
+	 * @param contentType   the file's content type
+	 */
+	public void addUploadFile(String fieldName, Path path, String contentType) {
+		addUploadFile(fieldName, path.toFile(), contentType);
+	}
+
+	/**
+	 * Adds content read from a stream to be uploaded. The stream is closed after it has been sent, so requests with
+	 * stream uploads can't be retried.
+	 * @param fieldName     name of the multipart form field
+	 * @param inputStream   the stream the content is read from
+	 * @param fileName      the file name sent to the server
+	 * @param contentType   the content type
+	 */
+	public void addUploadFile(String fieldName, InputStream inputStream, String fileName, String contentType) {
+		uploadFiles.add(new UploadFile(fieldName, fileName, contentType, null, inputStream));
+	}
+
+	/**
+	 * @return the files added to be uploaded (not including the FileItem)
+	 */
+	public List<UploadFile> getUploadFiles() {
+		return Collections.unmodifiableList(uploadFiles);
+	}
+
+	/**
+	 * A file to be uploaded, its content is either read from a local file or from a stream.
+	 */
+	public static class UploadFile {
+
+		private final String fieldName;
+		private final String fileName;
+		private final String contentType;
+		private final File file;
+		private final InputStream inputStream;
+
+		UploadFile(String fieldName, String fileName, String contentType, File file, InputStream inputStream) {
+			this.fieldName = fieldName;
+			this.fileName = fileName;
+			this.contentType = contentType;
+			this.file = file;
+			this.inputStream = inputStream;
+		}
+
+		public String getFieldName() {
+			return fieldName;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * @return the local file or <code>null</code> if the content is read from a stream
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the stream or <code>null</code> if the content is read from a local file
+		 */
+		public InputStream getInputStream() {
+			return inputStream;
+		}
+	}
 }
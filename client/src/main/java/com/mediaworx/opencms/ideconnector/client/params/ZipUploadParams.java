@@ -0,0 +1,20 @@
+package com.mediaworx.opencms.ideconnector.client.params;
+
+import java.io.File;
+
+/**
+ * Params for requests uploading a module zip as raw request body. The zip is streamed from the local file, so it is
+ * never held in memory.
+ */
+public class ZipUploadParams extends TokenParams {
+
+	private File zipFile;
+
+	public File getZipFile() {
+		return zipFile;
+	}
+
+	public void setZipFile(File zipFile) {
+		this.zipFile = zipFile;
+	}
+}
@@ -0,0 +1,12 @@
+package com.mediaworx.opencms.ideconnector.consumer;
+
+import com.mediaworx.opencms.ideconnector.data.BatchResponse;
+
+/**
+ * Consumer for the responses to the sub-requests of a batch, each response is passed as soon as it is received.
+ */
+public interface IDEConnectorBatchConsumer {
+
+	void onResponse(BatchResponse response);
+
+}
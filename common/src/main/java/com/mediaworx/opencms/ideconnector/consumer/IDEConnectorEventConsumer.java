@@ -0,0 +1,13 @@
+package com.mediaworx.opencms.ideconnector.consumer;
+
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+
+/**
+ * Consumer for the structured progress events of imports or publishes, the typed alternative to the
+ * {@link IDEConnectorResponsePrinter} receiving the raw report lines.
+ */
+public interface IDEConnectorEventConsumer {
+
+	void onEvent(ProgressEvent event);
+
+}
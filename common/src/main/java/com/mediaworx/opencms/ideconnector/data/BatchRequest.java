@@ -0,0 +1,76 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One sub-request of a batch (see {@link com.mediaworx.opencms.ideconnector.def.IDEConnectorConst#SERVICE_BATCH}):
+ * <ul>
+ *     <li>The service to be called (service), e.g. "importStatus"</li>
+ *     <li>The request parameters for the service (params), the batch's token is used if no token is provided</li>
+ *     <li>Optionally the ETag of a cached response (etag), the sub-response's status is 304 and its body is empty if
+ *     the response hasn't changed</li>
+ * </ul>
+ */
+public class BatchRequest {
+
+	/** The service to be called */
+	private String service;
+
+	/** The request parameters for the service */
+	private Map<String, String> params = new LinkedHashMap<>();
+
+	/** The ETag of a cached response */
+	private String etag;
+
+	/**
+	 * @return The service to be called
+	 */
+	public String getService() {
+		return service;
+	}
+
+	/**
+	 * @param service The service to be called
+	 */
+	public void setService(String service) {
+		this.service = service;
+	}
+
+	/**
+	 * @return The request parameters for the service
+	 */
+	public Map<String, String> getParams() {
+		return params;
+	}
+
+	/**
+	 * @param params The request parameters for the service
+	 */
+	public void setParams(Map<String, String> params) {
+		this.params = params != null ? params : new LinkedHashMap<String, String>();
+	}
+
+	/**
+	 * Adds a request parameter for the service.
+	 * @param name  the parameter name
+	 * @param value the parameter value
+	 */
+	public void addParam(String name, String value) {
+		params.put(name, value);
+	}
+
+	/**
+	 * @return The ETag of a cached response (may be <code>null</code>)
+	 */
+	public String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * @param etag The ETag of a cached response
+	 */
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+}
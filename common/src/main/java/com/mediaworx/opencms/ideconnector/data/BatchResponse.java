@@ -0,0 +1,66 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+/**
+ * The response to one sub-request of a batch, sent as one line of newline-delimited JSON (NDJSON) as soon as the
+ * sub-request has been executed. Sub-responses are sent in the order of the sub-requests.
+ */
+public interface BatchResponse {
+
+	void setIndex(int index);
+
+	/**
+	 * @return the index of the sub-request in the batch
+	 */
+	int getIndex();
+
+	void setService(String service);
+
+	/**
+	 * @return the service that was called
+	 */
+	String getService();
+
+	void setStatus(int status);
+
+	/**
+	 * @return the HTTP status of the sub-response (200 on success, 304 if the ETag sent with the sub-request matches)
+	 */
+	int getStatus();
+
+	void setContentType(String contentType);
+
+	/**
+	 * @return the content type of the body (may be <code>null</code>)
+	 */
+	String getContentType();
+
+	void setEtag(String etag);
+
+	/**
+	 * @return the ETag of the body (<code>null</code> if the service doesn't send ETags)
+	 */
+	String getEtag();
+
+	void setSyncCursor(String syncCursor);
+
+	/**
+	 * @return the sync cursor to be used for the next incremental resourceInfos request (<code>null</code> if the
+	 *          sub-request wasn't an incremental resourceInfos request)
+	 */
+	String getSyncCursor();
+
+	void setBody(String body);
+
+	/**
+	 * @return the body of the sub-response, exactly as the service would have sent it as response to a single request
+	 */
+	String getBody();
+
+	void setMessage(String message);
+
+	/**
+	 * @return the error message if the status isn't 200 or 304
+	 */
+	String getMessage();
+
+}
@@ -0,0 +1,68 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+import java.util.List;
+
+/**
+ * Status of an asynchronous import job, returned when the job is submitted and on each status poll. Contains the part
+ * of the job's import log starting at the log offset requested by the client, so clients can tail the log by passing
+ * {@link #getNextLogOffset()} with the next poll.
+ */
+public interface ImportJobStatus {
+
+	/** The job is waiting for a free import thread */
+	String STATE_QUEUED = "QUEUED";
+
+	/** The job is running */
+	String STATE_RUNNING = "RUNNING";
+
+	/** The job has finished, see the module results for the result of each module */
+	String STATE_FINISHED = "FINISHED";
+
+	/** The job was aborted by an unexpected error */
+	String STATE_FAILED = "FAILED";
+
+	void setJobId(String jobId);
+
+	String getJobId();
+
+	void setState(String state);
+
+	String getState();
+
+	void setDateSubmitted(long dateSubmitted);
+
+	long getDateSubmitted();
+
+	void setDateStarted(long dateStarted);
+
+	long getDateStarted();
+
+	void setDateFinished(long dateFinished);
+
+	long getDateFinished();
+
+	void setDurationMillis(long durationMillis);
+
+	long getDurationMillis();
+
+	void setModuleResults(List<ModuleImportResult> moduleResults);
+
+	List<ModuleImportResult> getModuleResults();
+
+	void setLog(String log);
+
+	String getLog();
+
+	void setLogOffset(long logOffset);
+
+	long getLogOffset();
+
+	void setNextLogOffset(long nextLogOffset);
+
+	long getNextLogOffset();
+
+	void setMessage(String message);
+
+	String getMessage();
+
+}
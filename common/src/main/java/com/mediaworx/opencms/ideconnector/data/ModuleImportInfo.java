@@ -6,6 +6,9 @@ package com.mediaworx.opencms.ideconnector.data;
  *     <li>The path to the module's zip file (moduleZipPath)</li>
  *     <li>The site root to which the module should be imported to (importSiteRoot)</li>
  * </ul>
+ * Optionally a differential import can be requested (differential), then only the differences between the module zip
+ * and the installed module are applied instead of deleting and re-importing the whole module. Module zips identical
+ * to the zip imported last are skipped unless the import is forced (force).
  */
 public class ModuleImportInfo {
 
@@ -15,6 +18,12 @@ public class ModuleImportInfo {
 	/** The site root to which the module should be imported to */
 	private String importSiteRoot;
 
+	/** Flag indicating if only the differences to the installed module should be imported */
+	private boolean differential;
+
+	/** Flag indicating if the module should be imported even if the zip is identical to the zip imported last */
+	private boolean force;
+
 	/**
 	 * @return The path to the module's zip file
 	 */
@@ -42,4 +51,33 @@ public class ModuleImportInfo {
 	public void setImportSiteRoot(String importSiteRoot) {
 		this.importSiteRoot = importSiteRoot;
 	}
+
+	/**
+	 * @return <code>true</code> if only the differences to the installed module should be imported
+	 */
+	public boolean isDifferential() {
+		return differential;
+	}
+
+	/**
+	 * @param differential <code>true</code> if only the differences to the installed module should be imported
+	 */
+	public void setDifferential(boolean differential) {
+		this.differential = differential;
+	}
+
+	/**
+	 * @return <code>true</code> if the module should be imported even if the zip is identical to the zip imported last
+	 */
+	public boolean isForce() {
+		return force;
+	}
+
+	/**
+	 * @param force <code>true</code> if the module should be imported even if the zip is identical to the zip imported
+	 *              last
+	 */
+	public void setForce(boolean force) {
+		this.force = force;
+	}
 }
@@ -0,0 +1,43 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+/**
+ * The result of the import of a single module within an import job.
+ */
+public interface ModuleImportResult {
+
+	/** The module was imported successfully */
+	String RESULT_IMPORTED = "IMPORTED";
+
+	/** The module zip was identical to the zip imported last, so the import was skipped */
+	String RESULT_UNCHANGED = "UNCHANGED";
+
+	/** The module wasn't imported because the import of a module it depends on failed */
+	String RESULT_SKIPPED = "SKIPPED";
+
+	/** The import of the module failed */
+	String RESULT_FAILED = "FAILED";
+
+	/** The module wasn't imported (yet) */
+	String RESULT_PENDING = "PENDING";
+
+	void setModuleName(String moduleName);
+
+	String getModuleName();
+
+	void setModuleZipName(String moduleZipName);
+
+	String getModuleZipName();
+
+	void setResult(String result);
+
+	String getResult();
+
+	void setMessage(String message);
+
+	String getMessage();
+
+	void setDurationMillis(long durationMillis);
+
+	long getDurationMillis();
+
+}
@@ -0,0 +1,74 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+/**
+ * A structured progress event of an import or publish, sent as one line of newline-delimited JSON (NDJSON) if
+ * structured output is requested (see {@link com.mediaworx.opencms.ideconnector.def.IDEConnectorConst#PARAM_EVENTS}).
+ */
+public interface ProgressEvent {
+
+	/** The import of one or more modules started, total contains the number of modules */
+	String TYPE_IMPORT_STARTED = "IMPORT_STARTED";
+
+	/** The import of all modules finished, durationMillis contains the total duration */
+	String TYPE_IMPORT_FINISHED = "IMPORT_FINISHED";
+
+	/** The import of a module started */
+	String TYPE_MODULE_STARTED = "MODULE_STARTED";
+
+	/**
+	 * The import of a module finished, result contains the result (see {@link ModuleImportResult}), durationMillis the
+	 * duration of the module's import
+	 */
+	String TYPE_MODULE_FINISHED = "MODULE_FINISHED";
+
+	/** The publish of resources started, total contains the number of resources to be published */
+	String TYPE_PUBLISH_STARTED = "PUBLISH_STARTED";
+
+	/** The publish of resources finished, durationMillis contains the total duration */
+	String TYPE_PUBLISH_FINISHED = "PUBLISH_FINISHED";
+
+	/** Resource current of total is being processed, message contains the report line */
+	String TYPE_RESOURCE = "RESOURCE";
+
+	/** A line of the report */
+	String TYPE_MESSAGE = "MESSAGE";
+
+	/** A warning */
+	String TYPE_WARNING = "WARNING";
+
+	/** An error */
+	String TYPE_ERROR = "ERROR";
+
+	void setType(String type);
+
+	String getType();
+
+	void setTimestamp(long timestamp);
+
+	long getTimestamp();
+
+	void setModule(String module);
+
+	String getModule();
+
+	void setMessage(String message);
+
+	String getMessage();
+
+	void setCurrent(int current);
+
+	int getCurrent();
+
+	void setTotal(int total);
+
+	int getTotal();
+
+	void setResult(String result);
+
+	String getResult();
+
+	void setDurationMillis(long durationMillis);
+
+	long getDurationMillis();
+
+}
@@ -0,0 +1,74 @@
+package com.mediaworx.opencms.ideconnector.data;
+
+/**
+ * Status of an asynchronous publish job, returned when the job is submitted and on each status poll. Contains the part
+ * of the job's publish report starting at the log offset requested by the client, so clients can tail the report by
+ * passing {@link #getNextLogOffset()} with the next poll.
+ */
+public interface PublishJobStatus {
+
+	/** The publish list is being built or the job is waiting in the OpenCms publish queue */
+	String STATE_QUEUED = "QUEUED";
+
+	/** The job is being published */
+	String STATE_RUNNING = "RUNNING";
+
+	/** The job has been published without errors (there may be warnings) */
+	String STATE_FINISHED = "FINISHED";
+
+	/** The publish list couldn't be built, the job was aborted or the publish report contains errors */
+	String STATE_FAILED = "FAILED";
+
+	void setJobId(String jobId);
+
+	String getJobId();
+
+	void setState(String state);
+
+	String getState();
+
+	void setDateSubmitted(long dateSubmitted);
+
+	long getDateSubmitted();
+
+	void setDateStarted(long dateStarted);
+
+	long getDateStarted();
+
+	void setDateFinished(long dateFinished);
+
+	long getDateFinished();
+
+	void setDurationMillis(long durationMillis);
+
+	long getDurationMillis();
+
+	void setNumResources(int numResources);
+
+	int getNumResources();
+
+	void setNumWarnings(int numWarnings);
+
+	int getNumWarnings();
+
+	void setNumErrors(int numErrors);
+
+	int getNumErrors();
+
+	void setLog(String log);
+
+	String getLog();
+
+	void setLogOffset(long logOffset);
+
+	long getLogOffset();
+
+	void setNextLogOffset(long nextLogOffset);
+
+	long getNextLogOffset();
+
+	void setMessage(String message);
+
+	String getMessage();
+
+}
@@ -0,0 +1,91 @@
+package com.mediaworx.opencms.ideconnector.dataimpl;
+
+import com.mediaworx.opencms.ideconnector.data.BatchResponse;
+
+/**
+ * Default implementation of {@link BatchResponse}.
+ */
+public class BatchResponseImpl implements BatchResponse {
+
+	public int index;
+	public String service;
+	public int status;
+	public String contentType;
+	public String etag;
+	public String syncCursor;
+	public String body;
+	public String message;
+
+
+	@Override
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public String getService() {
+		return service;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public String getEtag() {
+		return etag;
+	}
+
+	@Override
+	public String getSyncCursor() {
+		return syncCursor;
+	}
+
+	@Override
+	public String getBody() {
+		return body;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public void setService(String service) {
+		this.service = service;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public void setSyncCursor(String syncCursor) {
+		this.syncCursor = syncCursor;
+	}
+
+	public void setBody(String body) {
+		this.body = body;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+}
@@ -0,0 +1,124 @@
+package com.mediaworx.opencms.ideconnector.dataimpl;
+
+import com.mediaworx.opencms.ideconnector.data.ImportJobStatus;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportResult;
+
+import java.util.List;
+
+/**
+ * Default implementation of {@link ImportJobStatus}.
+ */
+public class ImportJobStatusImpl implements ImportJobStatus {
+
+	public String jobId;
+	public String state;
+	public long dateSubmitted;
+	public long dateStarted;
+	public long dateFinished;
+	public long durationMillis;
+	public List<ModuleImportResult> moduleResults;
+	public String log;
+	public long logOffset;
+	public long nextLogOffset;
+	public String message;
+
+
+	@Override
+	public String getJobId() {
+		return jobId;
+	}
+
+	@Override
+	public String getState() {
+		return state;
+	}
+
+	@Override
+	public long getDateSubmitted() {
+		return dateSubmitted;
+	}
+
+	@Override
+	public long getDateStarted() {
+		return dateStarted;
+	}
+
+	@Override
+	public long getDateFinished() {
+		return dateFinished;
+	}
+
+	@Override
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	@Override
+	public List<ModuleImportResult> getModuleResults() {
+		return moduleResults;
+	}
+
+	@Override
+	public String getLog() {
+		return log;
+	}
+
+	@Override
+	public long getLogOffset() {
+		return logOffset;
+	}
+
+	@Override
+	public long getNextLogOffset() {
+		return nextLogOffset;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public void setDateSubmitted(long dateSubmitted) {
+		this.dateSubmitted = dateSubmitted;
+	}
+
+	public void setDateStarted(long dateStarted) {
+		this.dateStarted = dateStarted;
+	}
+
+	public void setDateFinished(long dateFinished) {
+		this.dateFinished = dateFinished;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public void setModuleResults(List<ModuleImportResult> moduleResults) {
+		this.moduleResults = moduleResults;
+	}
+
+	public void setLog(String log) {
+		this.log = log;
+	}
+
+	public void setLogOffset(long logOffset) {
+		this.logOffset = logOffset;
+	}
+
+	public void setNextLogOffset(long nextLogOffset) {
+		this.nextLogOffset = nextLogOffset;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+}
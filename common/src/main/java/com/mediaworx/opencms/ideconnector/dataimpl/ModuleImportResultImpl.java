@@ -0,0 +1,61 @@
+package com.mediaworx.opencms.ideconnector.dataimpl;
+
+import com.mediaworx.opencms.ideconnector.data.ModuleImportResult;
+
+/**
+ * Default implementation of {@link ModuleImportResult}.
+ */
+public class ModuleImportResultImpl implements ModuleImportResult {
+
+	public String moduleName;
+	public String moduleZipName;
+	public String result;
+	public String message;
+	public long durationMillis;
+
+
+	@Override
+	public String getModuleName() {
+		return moduleName;
+	}
+
+	@Override
+	public String getModuleZipName() {
+		return moduleZipName;
+	}
+
+	@Override
+	public String getResult() {
+		return result;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public void setModuleName(String moduleName) {
+		this.moduleName = moduleName;
+	}
+
+	public void setModuleZipName(String moduleZipName) {
+		this.moduleZipName = moduleZipName;
+	}
+
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+}
@@ -0,0 +1,91 @@
+package com.mediaworx.opencms.ideconnector.dataimpl;
+
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+
+/**
+ * Default implementation of {@link ProgressEvent}.
+ */
+public class ProgressEventImpl implements ProgressEvent {
+
+	public String type;
+	public long timestamp;
+	public String module;
+	public String message;
+	public int current;
+	public int total;
+	public String result;
+	public long durationMillis;
+
+
+	@Override
+	public String getType() {
+		return type;
+	}
+
+	@Override
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String getModule() {
+		return module;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public int getCurrent() {
+		return current;
+	}
+
+	@Override
+	public int getTotal() {
+		return total;
+	}
+
+	@Override
+	public String getResult() {
+		return result;
+	}
+
+	@Override
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public void setModule(String module) {
+		this.module = module;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public void setCurrent(int current) {
+		this.current = current;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+}
@@ -0,0 +1,141 @@
+package com.mediaworx.opencms.ideconnector.dataimpl;
+
+import com.mediaworx.opencms.ideconnector.data.PublishJobStatus;
+
+/**
+ * Default implementation of {@link PublishJobStatus}.
+ */
+public class PublishJobStatusImpl implements PublishJobStatus {
+
+	public String jobId;
+	public String state;
+	public long dateSubmitted;
+	public long dateStarted;
+	public long dateFinished;
+	public long durationMillis;
+	public int numResources;
+	public int numWarnings;
+	public int numErrors;
+	public String log;
+	public long logOffset;
+	public long nextLogOffset;
+	public String message;
+
+
+	@Override
+	public String getJobId() {
+		return jobId;
+	}
+
+	@Override
+	public String getState() {
+		return state;
+	}
+
+	@Override
+	public long getDateSubmitted() {
+		return dateSubmitted;
+	}
+
+	@Override
+	public long getDateStarted() {
+		return dateStarted;
+	}
+
+	@Override
+	public long getDateFinished() {
+		return dateFinished;
+	}
+
+	@Override
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	@Override
+	public int getNumResources() {
+		return numResources;
+	}
+
+	@Override
+	public int getNumWarnings() {
+		return numWarnings;
+	}
+
+	@Override
+	public int getNumErrors() {
+		return numErrors;
+	}
+
+	@Override
+	public String getLog() {
+		return log;
+	}
+
+	@Override
+	public long getLogOffset() {
+		return logOffset;
+	}
+
+	@Override
+	public long getNextLogOffset() {
+		return nextLogOffset;
+	}
+
+	@Override
+	public String getMessage() {
+		return message;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public void setDateSubmitted(long dateSubmitted) {
+		this.dateSubmitted = dateSubmitted;
+	}
+
+	public void setDateStarted(long dateStarted) {
+		this.dateStarted = dateStarted;
+	}
+
+	public void setDateFinished(long dateFinished) {
+		this.dateFinished = dateFinished;
+	}
+
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public void setNumResources(int numResources) {
+		this.numResources = numResources;
+	}
+
+	public void setNumWarnings(int numWarnings) {
+		this.numWarnings = numWarnings;
+	}
+
+	public void setNumErrors(int numErrors) {
+		this.numErrors = numErrors;
+	}
+
+	public void setLog(String log) {
+		this.log = log;
+	}
+
+	public void setLogOffset(long logOffset) {
+		this.logOffset = logOffset;
+	}
+
+	public void setNextLogOffset(long nextLogOffset) {
+		this.nextLogOffset = nextLogOffset;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+}
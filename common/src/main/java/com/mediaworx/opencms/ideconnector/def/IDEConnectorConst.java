@@ -8,12 +8,40 @@ public class IDEConnectorConst {
 	public static final String SERVICE_LOGIN = "login";
 	public static final String SERVICE_LOGOUT = "logout";
 	public static final String SERVICE_IMPORT_MODULE = "importModule";
+	public static final String SERVICE_SUBMIT_IMPORT = "submitImport";
+	public static final String SERVICE_IMPORT_STATUS = "importStatus";
+	public static final String SERVICE_RESOURCE_INFOS = "resourceInfos";
+	public static final String SERVICE_MODULE_MANIFESTS = "moduleManifests";
+	public static final String SERVICE_PUBLISH = "publish";
+	public static final String SERVICE_PUBLISH_STATUS = "publishStatus";
+	public static final String SERVICE_BATCH = "batch";
 
 
 	public static final String PARAM_USER = "u";
 	public static final String PARAM_PASSWORD = "p";
 	public static final String PARAM_TOKEN = "t";
 	public static final String PARAM_JSON = "j";
+	public static final String PARAM_PARALLELISM = "n";
+	public static final String PARAM_SITE_ROOT = "s";
+	public static final String PARAM_DIFFERENTIAL = "d";
+	public static final String PARAM_FORCE = "f";
+	public static final String PARAM_JOB_ID = "id";
+	public static final String PARAM_LOG_OFFSET = "o";
+	public static final String PARAM_EVENTS = "e";
+	public static final String PARAM_USE_DATE_VARIABLES = "dv";
+	public static final String PARAM_USE_ID_VARIABLES = "iv";
+	public static final String PARAM_PUBLISH_SUB_RESOURCES = "r";
+	public static final String PARAM_SUBTREE = "st";
+	public static final String PARAM_SINCE = "c";
+	public static final String PARAM_USE_LEGACY_XML_SERIALIZER = "lx";
+
+	public static final String HEADER_ETAG = "ETag";
+	public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	public static final String HEADER_SYNC_CURSOR = "X-IDEConnector-Sync-Cursor";
+
+	public static final String CONTENT_TYPE_ZIP = "application/zip";
+	public static final String CONTENT_TYPE_JSON = "application/json";
+	public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
 
 	public static final String METHOD_GET = "GET";
 	public static final String METHOD_POST = "POST";
@@ -0,0 +1,168 @@
+package com.mediaworx.opencms.ideconnector;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper for conditional requests: a client that still has a body with the same ETag can reuse it when the server
+ * answers with 304 (Not Modified). ETags are SHA-1 hashes, either of the response body (strong ETags, for small
+ * bodies that are generated anyway) or of the inputs the body is generated from (weak ETags, for large bodies that
+ * shouldn't be generated just to find out they haven't changed).
+ */
+public class ETagHelper {
+
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+	private ETagHelper() {
+	}
+
+	/**
+	 * Creates the ETag for the given response body.
+	 * @param body  the response body
+	 * @return  the ETag (quoted, as sent in the ETag header)
+	 */
+	public static String createETag(String body) {
+		ETagWriter writer = new ETagWriter();
+		writer.write(body);
+		return writer.getETag();
+	}
+
+	/**
+	 * Checks if the client already has the body with the given ETag.
+	 * @param ifNoneMatch   the value of the request header "If-None-Match" (may be <code>null</code>)
+	 * @param etag          the ETag of the current body
+	 * @return  <code>true</code> if one of the ETags sent by the client matches the current ETag (weak comparison),
+	 *          so 304 can be sent instead of the body
+	 */
+	public static boolean isNotModified(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || etag == null) {
+			return false;
+		}
+		String currentTag = stripWeakPrefix(etag);
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if ("*".equals(tag) || currentTag.equals(stripWeakPrefix(tag))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeakPrefix(String tag) {
+		return tag.startsWith("W/") ? tag.substring(2) : tag;
+	}
+
+	/**
+	 * Writer computing the ETag of everything written to it (encoded as UTF-8) without keeping the content.
+	 */
+	public static class ETagWriter extends Writer {
+
+		private final MessageDigest digest;
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final ByteBuffer byteBuffer = ByteBuffer.allocate(8192);
+		private CharBuffer pendingChars;
+		private String etag;
+
+		public ETagWriter() {
+			try {
+				digest = MessageDigest.getInstance("SHA-1");
+			}
+			catch (NoSuchAlgorithmException e) {
+				// every Java platform supports SHA-1
+				throw new IllegalStateException("SHA-1 is not available", e);
+			}
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			CharBuffer charBuffer;
+			if (pendingChars != null) {
+				// a surrogate pair was split between two writes
+				charBuffer = CharBuffer.allocate(pendingChars.remaining() + length);
+				charBuffer.put(pendingChars).put(chars, offset, length).flip();
+				pendingChars = null;
+			}
+			else {
+				charBuffer = CharBuffer.wrap(chars, offset, length);
+			}
+			encode(charBuffer, false);
+			if (charBuffer.hasRemaining()) {
+				pendingChars = CharBuffer.allocate(charBuffer.remaining()).put(charBuffer);
+				pendingChars.flip();
+			}
+		}
+
+		@Override
+		public void write(String str) {
+			write(str.toCharArray(), 0, str.length());
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+			getETag();
+		}
+
+		/**
+		 * @return the ETag of everything written so far, no more content may be written afterwards
+		 */
+		public String getETag() {
+			if (etag == null) {
+				encode(pendingChars != null ? pendingChars : CharBuffer.allocate(0), true);
+				pendingChars = null;
+				CoderResult result;
+				do {
+					result = encoder.flush(byteBuffer);
+					digestBytes();
+				}
+				while (result.isOverflow());
+				etag = toETag(digest.digest());
+			}
+			return etag;
+		}
+
+		/**
+		 * @return the weak ETag of everything written so far, used if the inputs of the body were written instead of
+		 *          the body, no more content may be written afterwards
+		 */
+		public String getWeakETag() {
+			return "W/" + getETag();
+		}
+
+		private void encode(CharBuffer charBuffer, boolean endOfInput) {
+			CoderResult result;
+			do {
+				result = encoder.encode(charBuffer, byteBuffer, endOfInput);
+				digestBytes();
+			}
+			while (result.isOverflow());
+		}
+
+		private void digestBytes() {
+			byteBuffer.flip();
+			digest.update(byteBuffer);
+			byteBuffer.clear();
+		}
+
+		private static String toETag(byte[] hash) {
+			StringBuilder etag = new StringBuilder(hash.length * 2 + 2);
+			etag.append('"');
+			for (byte b : hash) {
+				etag.append(HEX_CHARS[(b >> 4) & 0x0f]).append(HEX_CHARS[b & 0x0f]);
+			}
+			etag.append('"');
+			return etag.toString();
+		}
+	}
+}
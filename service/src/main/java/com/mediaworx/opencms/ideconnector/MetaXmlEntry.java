@@ -0,0 +1,58 @@
+package com.mediaworx.opencms.ideconnector;
+
+/**
+ * One entry of the JSON array returned by the actions "moduleManifests" and "resourceInfos": either the xml for a
+ * module or resource or a tombstone for a deleted resource.
+ */
+public class MetaXmlEntry {
+
+	private final String id;
+	private final String xml;
+	private final boolean deleted;
+
+	private MetaXmlEntry(String id, String xml, boolean deleted) {
+		this.id = id;
+		this.xml = xml;
+		this.deleted = deleted;
+	}
+
+	/**
+	 * Creates an entry containing the given xml.
+	 * @param id    the module name or resource path
+	 * @param xml   the manifest stub or resource info xml
+	 * @return  the entry
+	 */
+	public static MetaXmlEntry create(String id, String xml) {
+		return new MetaXmlEntry(id, xml, false);
+	}
+
+	/**
+	 * Creates a tombstone entry for a deleted resource.
+	 * @param id    the path of the deleted resource
+	 * @return  the tombstone entry
+	 */
+	public static MetaXmlEntry createTombstone(String id) {
+		return new MetaXmlEntry(id, null, true);
+	}
+
+	/**
+	 * @return the module name or resource path
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the manifest stub or resource info xml, <code>null</code> for tombstones
+	 */
+	public String getXml() {
+		return xml;
+	}
+
+	/**
+	 * @return <code>true</code> if this is a tombstone for a deleted resource
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+}
@@ -0,0 +1,34 @@
+package com.mediaworx.opencms.ideconnector;
+
+import org.opencms.file.CmsObject;
+
+/**
+ * Generates the {@link MetaXmlEntry} for one requested item (a module name, a resource path or a resource).
+ * Implementations must not keep any state, since the same generator is used by multiple worker threads if entries
+ * are generated in parallel; everything that isn't thread safe is passed in as parameter.
+ *
+ * @param <T> type of the requested items
+ */
+public interface MetaXmlEntryGenerator<T> {
+
+	/**
+	 * Generates the entry for the given item.
+	 * @param item          the item
+	 * @param cmsObject     the CmsObject to be used to read from the VFS
+	 * @param xmlHelper     the MetaXmlHelper to be used to generate the xml
+	 * @return  the entry or <code>null</code> if no entry should be returned for the item
+	 */
+	MetaXmlEntry generate(T item, CmsObject cmsObject, MetaXmlHelper xmlHelper);
+
+	/**
+	 * Writes the inputs the entry for the given item is generated from (e.g. the resource's ids, dates and sibling
+	 * count) to the given validator, so the ETag of a response can be computed without generating the entries. Changes
+	 * that aren't reflected by these inputs (e.g. modified properties) must be covered by the resource's modification
+	 * stamp (see {@link com.mediaworx.opencms.ideconnector.cache.ResourceInfoCache#getStamp}).
+	 * @param item          the item
+	 * @param cmsObject     the CmsObject to be used to read from the VFS
+	 * @param xmlHelper     the MetaXmlHelper the entries are generated with
+	 * @param validator     the writer the inputs are written to
+	 */
+	void writeValidator(T item, CmsObject cmsObject, MetaXmlHelper xmlHelper, ETagHelper.ETagWriter validator);
+}
@@ -1,5 +1,8 @@
 package com.mediaworx.opencms.ideconnector;
 
+import com.mediaworx.opencms.ideconnector.cache.ResourceInfoCache;
+import com.mediaworx.opencms.ideconnector.cache.UserNameCache;
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
@@ -21,13 +24,18 @@ import org.opencms.relations.CmsRelationFilter;
 import org.opencms.security.CmsAccessControlEntry;
 import org.opencms.security.CmsRole;
 import org.opencms.util.CmsDateUtil;
+import org.opencms.util.CmsFileUtil;
 import org.opencms.util.CmsUUID;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Helper Class providing methods to generate the module manifest stub or resource infos.
@@ -39,10 +47,19 @@ public class MetaXmlHelper extends CmsExport {
 	private static final Log LOG = LogFactory.getLog(MetaXmlHelper.class);
 	private static final String NODE_FILE_INFO = "fileinfo";
 	private static final String NODE_SIBLING_COUNT = "siblingcount";
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n";
+	private static final int MANIFEST_FLUSH_INTERVAL = 100;
 
 	private CmsObject cmsObject;
 	private boolean useDateVariablesEnabled = false;
 	private boolean useIdVariablesEnabled = false;
+	private boolean useStreamingSerializerEnabled = true;
+
+	/**
+	 * Buffer reused for all resource infos serialized by the streaming serializer, so no new buffer has to be
+	 * allocated per resource
+	 */
+	private StringBuilder xmlBuffer;
 
 	/**
 	 * Creates a new MetaXmlHelper that uses the given CmsObject to read meta information for modules or resources from
@@ -75,6 +92,48 @@ public class MetaXmlHelper extends CmsExport {
 		this.useIdVariablesEnabled = useIdVariables;
 	}
 
+	/**
+	 * @return <code>true</code> if date meta data is replaced by placeholders (see {@link #setUseDateVariables(boolean)})
+	 */
+	public boolean isUseDateVariables() {
+		return useDateVariablesEnabled;
+	}
+
+	/**
+	 * @return <code>true</code> if ID meta data is replaced by placeholders (see {@link #setUseIdVariables(boolean)})
+	 */
+	public boolean isUseIdVariables() {
+		return useIdVariablesEnabled;
+	}
+
+	/**
+	 * sets the flag useStreamingSerializerEnabled. If enabled (default), resource infos are written by the streaming
+	 * {@link MetaXmlWriter} without building a dom4j document for each resource. If disabled, the dom4j based
+	 * serializer is used. Both serializers produce the exact same output, the dom4j serializer is kept as fallback
+	 * and for comparison.
+	 *
+	 * @param useStreamingSerializer <code>true</code> if the streaming serializer should be used, <code>false</code>
+	 *                               if the dom4j serializer should be used
+	 */
+	public void setUseStreamingSerializer(boolean useStreamingSerializer) {
+		this.useStreamingSerializerEnabled = useStreamingSerializer;
+	}
+
+	/**
+	 * Creates a new MetaXmlHelper using the given CmsObject with the same settings (date variables, id variables,
+	 * serializer) as this helper. Used to provide each worker thread generating resource infos in parallel with its
+	 * own helper, since MetaXmlHelper instances are not thread safe.
+	 * @param cmsObject the CmsObject to be used by the new helper
+	 * @return  the new MetaXmlHelper
+	 */
+	public MetaXmlHelper createCopy(CmsObject cmsObject) {
+		MetaXmlHelper copy = new MetaXmlHelper(cmsObject);
+		copy.setUseDateVariables(useDateVariablesEnabled);
+		copy.setUseIdVariables(useIdVariablesEnabled);
+		copy.setUseStreamingSerializer(useStreamingSerializerEnabled);
+		return copy;
+	}
+
 	/**
 	 * Creates the module manifest stub XML (OpenCms module manifest with an empty files node) for the given module.
 	 * <br /><br />
@@ -124,6 +183,63 @@ public class MetaXmlHelper extends CmsExport {
 		return getFormattedStringForDocument(DocumentHelper.createDocument(exportElement));
 	}
 
+	/**
+	 * Returns everything the manifest stub for the given module is generated from except the export date (which is
+	 * the current time unless <code>useDateVariables</code> is set), so a validator for the stub can be computed that
+	 * only changes if the module changes.
+	 * @param moduleName    name of the module
+	 * @return  the inputs of the manifest stub
+	 * @throws IllegalArgumentException if there's no module with the given name
+	 */
+	public String getModuleManifestStubInputs(String moduleName) throws IllegalArgumentException {
+		return OpenCms.getDefaultUsers().getUserAdmin() + "\n" + OpenCms.getSystemInfo().getVersionNumber() + "\n"
+				+ CmsImportExportManager.EXPORT_VERSION + "\n" + getModuleElement(moduleName).asXML();
+	}
+
+	/**
+	 * Writes the complete module manifest for the given module to the given Writer. The manifest consists of the
+	 * manifest stub (see {@link #getModuleManifestStub(String)}) with the files node containing the file nodes for the
+	 * module resources, all resources below them and their parent folders, ordered by path. The source and destination
+	 * of each file node are set to the resource's path, so the manifest can be used for a module import without any
+	 * further processing. The flags <code>useDateVariables</code> and <code>useIdVariables</code> are respected.
+	 * <br /><br />
+	 * The header is written first, then the file nodes are written one by one while the meta data is read from the
+	 * VFS, so the manifest is never held in memory as a whole. The Writer is flushed regularly.
+	 * @param moduleName    name of the module for which the manifest should be written
+	 * @param out           the Writer the manifest is written to
+	 * @throws IllegalArgumentException if there's no module with the given name
+	 * @throws CmsException if the module resources can't be read
+	 * @throws IOException if writing to <code>out</code> fails
+	 */
+	public void writeModuleManifest(String moduleName, Writer out) throws IllegalArgumentException, CmsException, IOException {
+		String stub = getModuleManifestStub(moduleName);
+		String emptyFilesNode = "<" + CmsImportVersion7.N_FILES + "/>";
+		int filesNodePos = stub.lastIndexOf(emptyFilesNode);
+		List<CmsResource> resources = readModuleManifestResources(OpenCms.getModuleManager().getModule(moduleName));
+
+		out.write(XML_DECLARATION);
+		out.write(stub, 0, filesNodePos);
+		out.write("<" + CmsImportVersion7.N_FILES + ">");
+		out.flush();
+		int numFiles = 0;
+		for (CmsResource resource : resources) {
+			FileMetaData metaData = readFileMetaData(resource);
+			if (metaData == null) {
+				continue;
+			}
+			String path = trimResourceName(resource.getRootPath());
+			out.write("\n");
+			writeFileElement(new MetaXmlWriter(out, 2), metaData, resource.isFolder() ? null : path, path);
+			if (++numFiles % MANIFEST_FLUSH_INTERVAL == 0) {
+				out.flush();
+			}
+		}
+		out.write("\n    </" + CmsImportVersion7.N_FILES + ">");
+		out.write(stub, filesNodePos + emptyFilesNode.length(), stub.length() - filesNodePos - emptyFilesNode.length());
+		out.write("\n");
+		out.flush();
+	}
+
 	/**
 	 * Creates the resource info XML for the VFS file/folder at the given resource path.
 	 * <br /><br />
@@ -168,23 +284,163 @@ public class MetaXmlHelper extends CmsExport {
 	 * @return meta info XML for the resource at the given path.
 	 */
 	public String getResourceInfo(String resourcePath) {
+		CmsResource resource;
 		try {
-			CmsResource resource = cmsObject.readResource(resourcePath);
-			if (!resource.isFolder()) {
-				Element resourceInfo = DocumentHelper.createElement(NODE_FILE_INFO);
-				resourceInfo.add(getFileElement(resource));
-				Element siblingCount = resourceInfo.addElement(NODE_SIBLING_COUNT);
-				siblingCount.setText(String.valueOf(resource.getSiblingCount()));
-				return getFormattedStringForDocument(DocumentHelper.createDocument(resourceInfo));
+			resource = cmsObject.readResource(resourcePath);
+		}
+		catch (CmsException e) {
+			LOG.error("Resource " + resourcePath + " can't be read", e);
+			return null;
+		}
+		return getResourceInfo(resource);
+	}
+
+	/**
+	 * Creates the resource info XML for the given VFS file/folder. See {@link #getResourceInfo(String)} for samples.
+	 * <br /><br />
+	 * Resource infos read in offline projects are cached in the shared {@link ResourceInfoCache}, so unchanged
+	 * resources don't have to be read from the VFS again. The cache is bypassed if the dom4j serializer is used, so
+	 * the fallback always reflects the VFS.
+	 * @param resource  the resource for which meta information should be returned.
+	 * @return meta info XML for the given resource.
+	 */
+	public String getResourceInfo(CmsResource resource) {
+		if (useStreamingSerializerEnabled) {
+			ResourceInfoCache cache = ResourceInfoCache.getInstance();
+			boolean isCacheable = cache.isEnabled() && !cmsObject.getRequestContext().getCurrentProject().isOnlineProject();
+			long generation = cache.getGeneration();
+			if (isCacheable) {
+				String xml = cache.get(resource, useDateVariablesEnabled, useIdVariablesEnabled);
+				if (xml != null) {
+					return xml;
+				}
 			}
-			else {
-				return getFormattedStringForDocument(DocumentHelper.createDocument(getFileElement(resource)));
+			String xml = getStreamedResourceInfo(resource);
+			if (isCacheable && xml != null) {
+				cache.put(resource, useDateVariablesEnabled, useIdVariablesEnabled, xml, generation);
+			}
+			return xml;
+		}
+		if (!resource.isFolder()) {
+			Element resourceInfo = DocumentHelper.createElement(NODE_FILE_INFO);
+			resourceInfo.add(getFileElement(resource));
+			Element siblingCount = resourceInfo.addElement(NODE_SIBLING_COUNT);
+			siblingCount.setText(String.valueOf(resource.getSiblingCount()));
+			return getFormattedStringForDocument(DocumentHelper.createDocument(resourceInfo));
+		}
+		else {
+			return getFormattedStringForDocument(DocumentHelper.createDocument(getFileElement(resource)));
+		}
+	}
+
+	/**
+	 * Writes the resource info XML for the given VFS file/folder directly to the given Writer using the streaming
+	 * serializer. All meta data is read from the VFS before anything is written, so if reading fails nothing is
+	 * written at all.
+	 * @param resource  the resource for which meta information should be written.
+	 * @param out       the Writer the meta info XML is written to
+	 * @return <code>true</code> if the meta info was written, <code>false</code> if the resource is an organizational
+	 *         unit resource (those must not be exported)
+	 * @throws CmsException if the meta data for the resource can't be read from the VFS
+	 * @throws IOException if writing to <code>out</code> fails
+	 */
+	public boolean writeResourceInfo(CmsResource resource, Writer out) throws CmsException, IOException {
+		FileMetaData metaData = readFileMetaData(resource);
+		if (metaData == null) {
+			return false;
+		}
+		MetaXmlWriter xml = new MetaXmlWriter(out);
+		if (!resource.isFolder()) {
+			xml.startElement(NODE_FILE_INFO);
+			writeFileElement(xml, metaData, getVariable(CmsImportVersion7.N_SOURCE), getVariable(CmsImportVersion7.N_DESTINATION));
+			xml.textElement(NODE_SIBLING_COUNT, String.valueOf(resource.getSiblingCount()));
+			xml.endElement();
+		}
+		else {
+			writeFileElement(xml, metaData, null, getVariable(CmsImportVersion7.N_DESTINATION));
+		}
+		return true;
+	}
+
+	/**
+	 * Internal method serializing the resource info for the given resource using the streaming serializer into the
+	 * reused buffer.
+	 * @param resource  the resource for which meta information should be returned.
+	 * @return meta info XML for the given resource or <code>null</code> if the meta info can't be generated
+	 */
+	private String getStreamedResourceInfo(CmsResource resource) {
+		if (xmlBuffer == null) {
+			xmlBuffer = new StringBuilder(2048);
+		}
+		xmlBuffer.setLength(0);
+		try {
+			if (!writeResourceInfo(resource, new StringBuilderWriter(xmlBuffer))) {
+				return null;
 			}
 		}
 		catch (CmsException e) {
-			LOG.error("Resource " + resourcePath + " can't be read", e);
+			LOG.error("There was a CmsException while trying to genereate the XML info for the resource " + resource.getRootPath(), e);
+			return null;
+		}
+		catch (IOException e) {
+			// doesn't happen since the StringBuilderWriter does not throw IOExceptions
+			LOG.error("Error writing the XML info for the resource " + resource.getRootPath(), e);
 			return null;
 		}
+		return xmlBuffer.toString();
+	}
+
+	/**
+	 * Internal method reading the resources to be contained in the manifest of the given module: the module resources,
+	 * their parent folders (except the root folder) and all resources below them, excluding the module's excluded
+	 * resources and deleted resources.
+	 * @param module    the module
+	 * @return  the resources ordered by root path, so parent folders are returned before their children
+	 * @throws CmsException if the module resources can't be read
+	 */
+	private List<CmsResource> readModuleManifestResources(CmsModule module) throws CmsException {
+		Map<String, CmsResource> resourcesByPath = new TreeMap<>();
+		List<String> excludedPaths = module.getExcludeResources();
+		for (CmsResource moduleResource : CmsModule.calculateModuleResources(cmsObject, module)) {
+			String parentPath = CmsResource.getParentFolder(moduleResource.getRootPath());
+			while (parentPath != null && !"/".equals(parentPath) && !resourcesByPath.containsKey(parentPath)) {
+				resourcesByPath.put(parentPath, cmsObject.readResource(parentPath, CmsResourceFilter.IGNORE_EXPIRATION));
+				parentPath = CmsResource.getParentFolder(parentPath);
+			}
+			resourcesByPath.put(moduleResource.getRootPath(), moduleResource);
+			if (moduleResource.isFolder()) {
+				for (CmsResource resource : cmsObject.readResources(moduleResource.getRootPath(), CmsResourceFilter.IGNORE_EXPIRATION, true)) {
+					resourcesByPath.put(resource.getRootPath(), resource);
+				}
+			}
+		}
+		List<CmsResource> resources = new ArrayList<>(resourcesByPath.size());
+		for (CmsResource resource : resourcesByPath.values()) {
+			if (!resource.getState().isDeleted() && !isExcluded(resource.getRootPath(), excludedPaths)) {
+				resources.add(resource);
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Internal method checking if the given path is excluded from the module.
+	 * @param rootPath      the root path to check
+	 * @param excludedPaths the module's excluded resources
+	 * @return  <code>true</code> if the path is one of the excluded resources or below one of them
+	 */
+	private static boolean isExcluded(String rootPath, List<String> excludedPaths) {
+		if (excludedPaths == null) {
+			return false;
+		}
+		String path = CmsFileUtil.removeTrailingSeparator(rootPath);
+		for (String excludedPath : excludedPaths) {
+			String excluded = CmsFileUtil.removeTrailingSeparator(excludedPath);
+			if (path.equals(excluded) || path.startsWith(excluded + "/")) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -250,22 +506,10 @@ public class MetaXmlHelper extends CmsExport {
 				fileElement.addElement(CmsImportVersion7.N_UUIDRESOURCE).addText(useIdVariablesEnabled ? "${" + CmsImportVersion7.N_UUIDRESOURCE + "}" : resource.getResourceId().toString());
 			}
 			fileElement.addElement(CmsImportVersion7.N_DATELASTMODIFIED).addText(useDateVariablesEnabled ? "${" + CmsImportVersion7.N_DATELASTMODIFIED + "}" : CmsDateUtil.getHeaderDate(resource.getDateLastModified()));
-			String userNameLastModified;
-			try {
-				userNameLastModified = cmsObject.readUser(resource.getUserLastModified()).getName();
-			}
-			catch (CmsException e) {
-				userNameLastModified = OpenCms.getDefaultUsers().getUserAdmin();
-			}
+			String userNameLastModified = getUserName(resource.getUserLastModified());
 			fileElement.addElement(CmsImportVersion7.N_USERLASTMODIFIED).addText(userNameLastModified);
 			fileElement.addElement(CmsImportVersion7.N_DATECREATED).addText(useDateVariablesEnabled ? "${" + CmsImportVersion7.N_DATECREATED + "}" : CmsDateUtil.getHeaderDate(resource.getDateCreated()));
-			String userNameCreated;
-			try {
-				userNameCreated = cmsObject.readUser(resource.getUserCreated()).getName();
-			}
-			catch (CmsException e) {
-				userNameCreated = OpenCms.getDefaultUsers().getUserAdmin();
-			}
+			String userNameCreated = getUserName(resource.getUserCreated());
 			fileElement.addElement(CmsImportVersion7.N_USERCREATED).addText(userNameCreated);
 			if (resource.getDateReleased() != CmsResource.DATE_RELEASED_DEFAULT) {
 				fileElement.addElement(CmsImportVersion7.N_DATERELEASED).addText(CmsDateUtil.getHeaderDate(resource.getDateReleased()));
@@ -318,28 +562,8 @@ public class MetaXmlHelper extends CmsExport {
 			for (CmsAccessControlEntry ace : fileAcEntries) {
 				Element accessentry = acl.addElement(CmsImportVersion7.N_ACCESSCONTROL_ENTRY);
 
-				// now check if the principal is a group or a user
 				int flags = ace.getFlags();
-				String acePrincipalName;
-				CmsUUID acePrincipal = ace.getPrincipal();
-				if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_ALLOTHERS) > 0) {
-					acePrincipalName = CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_NAME;
-				}
-				else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_OVERWRITE_ALL) > 0) {
-					acePrincipalName = CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_NAME;
-				}
-				else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_GROUP) > 0) {
-					// the principal is a group
-					acePrincipalName = cmsObject.readGroup(acePrincipal).getPrefixedName();
-				}
-				else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_USER) > 0) {
-					// the principal is a user
-					acePrincipalName = cmsObject.readUser(acePrincipal).getPrefixedName();
-				}
-				else {
-					// the principal is a role
-					acePrincipalName = CmsRole.PRINCIPAL_ROLE + "." + CmsRole.valueOfId(acePrincipal).getRoleName();
-				}
+				String acePrincipalName = getAcePrincipalName(ace);
 
 				accessentry.addElement(CmsImportVersion7.N_ACCESSCONTROL_PRINCIPAL).addText(acePrincipalName);
 				accessentry.addElement(CmsImportVersion7.N_FLAGS).addText(Integer.toString(flags));
@@ -357,6 +581,198 @@ public class MetaXmlHelper extends CmsExport {
 		}
 	}
 
+	/**
+	 * Internal method used to write the XML file node for the meta data of a resource using the streaming serializer.
+	 * Creates exactly the same XML as {@link #getFileElement(CmsResource)}.
+	 * @param xml           the streaming XML writer used to write the file node
+	 * @param metaData      the meta data of the resource for which the file node should be written
+	 * @param source        the value for the source node, <code>null</code> for folders
+	 * @param destination   the value for the destination node
+	 * @throws IOException if writing fails
+	 */
+	private void writeFileElement(MetaXmlWriter xml, FileMetaData metaData, String source, String destination) throws IOException {
+		CmsResource resource = metaData.resource;
+
+		xml.startElement(CmsImportVersion7.N_FILE);
+
+		// only write <source> if resource is a file
+		if (resource.isFile()) {
+			xml.textElement(CmsImportVersion7.N_SOURCE, source);
+		}
+		xml.textElement(CmsImportVersion7.N_DESTINATION, destination);
+		xml.textElement(CmsImportVersion7.N_TYPE, metaData.typeName);
+		xml.textElement(CmsImportVersion7.N_UUIDSTRUCTURE, useIdVariablesEnabled ? getVariable(CmsImportVersion7.N_UUIDSTRUCTURE) : resource.getStructureId().toString());
+		if (resource.isFile()) {
+			xml.textElement(CmsImportVersion7.N_UUIDRESOURCE, useIdVariablesEnabled ? getVariable(CmsImportVersion7.N_UUIDRESOURCE) : resource.getResourceId().toString());
+		}
+		xml.textElement(CmsImportVersion7.N_DATELASTMODIFIED, useDateVariablesEnabled ? getVariable(CmsImportVersion7.N_DATELASTMODIFIED) : CmsDateUtil.getHeaderDate(resource.getDateLastModified()));
+		xml.textElement(CmsImportVersion7.N_USERLASTMODIFIED, metaData.userNameLastModified);
+		xml.textElement(CmsImportVersion7.N_DATECREATED, useDateVariablesEnabled ? getVariable(CmsImportVersion7.N_DATECREATED) : CmsDateUtil.getHeaderDate(resource.getDateCreated()));
+		xml.textElement(CmsImportVersion7.N_USERCREATED, metaData.userNameCreated);
+		if (resource.getDateReleased() != CmsResource.DATE_RELEASED_DEFAULT) {
+			xml.textElement(CmsImportVersion7.N_DATERELEASED, CmsDateUtil.getHeaderDate(resource.getDateReleased()));
+		}
+		if (resource.getDateExpired() != CmsResource.DATE_EXPIRED_DEFAULT) {
+			xml.textElement(CmsImportVersion7.N_DATEEXPIRED, CmsDateUtil.getHeaderDate(resource.getDateExpired()));
+		}
+		int resFlags = resource.getFlags();
+		resFlags &= ~CmsResource.FLAG_LABELED;
+		xml.textElement(CmsImportVersion7.N_FLAGS, Integer.toString(resFlags));
+
+		// properties (same structure as CmsExport.addPropertyNode)
+		xml.startElement(CmsImportVersion7.N_PROPERTIES);
+		for (CmsProperty property : metaData.properties) {
+			if (property == null) {
+				continue;
+			}
+			writePropertyNode(xml, property.getName(), property.getStructureValue(), false);
+			writePropertyNode(xml, property.getName(), property.getResourceValue(), true);
+		}
+		xml.endElement();
+
+		// relations (same structure as CmsExport.addRelationNode)
+		xml.startElement(CmsImportVersion7.N_RELATIONS);
+		for (RelationMetaData relation : metaData.relations) {
+			xml.startElement(CmsImportVersion7.N_RELATION);
+			xml.textElement(CmsImportVersion7.N_ID, relation.targetId);
+			xml.textElement(CmsImportVersion7.N_PATH, relation.targetPath);
+			xml.textElement(CmsImportVersion7.N_TYPE, relation.typeName);
+			xml.endElement();
+		}
+		xml.endElement();
+
+		// access control
+		xml.startElement(CmsImportVersion7.N_ACCESSCONTROL_ENTRIES);
+		for (int i = 0; i < metaData.accessControlEntries.size(); i++) {
+			CmsAccessControlEntry ace = metaData.accessControlEntries.get(i);
+			xml.startElement(CmsImportVersion7.N_ACCESSCONTROL_ENTRY);
+			xml.textElement(CmsImportVersion7.N_ACCESSCONTROL_PRINCIPAL, metaData.acePrincipalNames.get(i));
+			xml.textElement(CmsImportVersion7.N_FLAGS, Integer.toString(ace.getFlags()));
+			xml.startElement(CmsImportVersion7.N_ACCESSCONTROL_PERMISSIONSET);
+			xml.textElement(CmsImportVersion7.N_ACCESSCONTROL_ALLOWEDPERMISSIONS, Integer.toString(ace.getAllowedPermissions()));
+			xml.textElement(CmsImportVersion7.N_ACCESSCONTROL_DENIEDPERMISSIONS, Integer.toString(ace.getDeniedPermissions()));
+			xml.endElement();
+			xml.endElement();
+		}
+		xml.endElement();
+
+		xml.endElement();
+	}
+
+	/**
+	 * Internal method writing a property node, the streaming equivalent to
+	 * <code>org.opencms.importexport.CmsExport.addPropertyNode</code>.
+	 */
+	private static void writePropertyNode(MetaXmlWriter xml, String propertyName, String propertyValue, boolean shared) throws IOException {
+		if (propertyValue != null) {
+			xml.startElement(CmsImportVersion7.N_PROPERTY);
+			if (shared) {
+				xml.attribute(CmsImportVersion7.A_TYPE, CmsImportVersion7.PROPERTY_ATTRIB_TYPE_SHARED);
+			}
+			xml.textElement(CmsImportVersion7.N_NAME, propertyName);
+			xml.cdataElement(CmsImportVersion7.N_VALUE, propertyValue);
+			xml.endElement();
+		}
+	}
+
+	/**
+	 * Internal method reading all the meta data needed for the file node of the given resource from the VFS. Used by
+	 * the streaming serializer, so nothing is written if reading fails.
+	 * @param resource  the resource for which the meta data should be read
+	 * @return  the meta data for the given resource, <code>null</code> for organizational unit resources (those must
+	 *          not be exported)
+	 * @throws CmsException if reading the meta data fails
+	 */
+	private FileMetaData readFileMetaData(CmsResource resource) throws CmsException {
+		String rootPath = resource.getRootPath();
+
+		// it is not allowed to export organizational unit resources
+		if (trimResourceName(rootPath).startsWith("system/orgunits")) {
+			return null;
+		}
+
+		FileMetaData metaData = new FileMetaData(resource);
+		metaData.typeName = OpenCms.getResourceManager().getResourceType(resource.getTypeId()).getTypeName();
+		metaData.userNameLastModified = getUserName(resource.getUserLastModified());
+		metaData.userNameCreated = getUserName(resource.getUserCreated());
+
+		metaData.properties = cmsObject.readPropertyObjects(cmsObject.getSitePath(resource), false);
+		Collections.sort(metaData.properties);
+
+		List<CmsRelation> relations = cmsObject.getRelationsForResource(resource, CmsRelationFilter.TARGETS.filterNotDefinedInContent());
+		metaData.relations = new ArrayList<>(relations.size());
+		for (CmsRelation relation : relations) {
+			CmsResource target;
+			try {
+				target = relation.getTarget(cmsObject, CmsResourceFilter.ALL);
+			}
+			// if the relation's target is not found, LOG it and skip
+			catch (CmsVfsResourceNotFoundException e) {
+				if (LOG.isWarnEnabled()) {
+					LOG.warn("relation target " + relation.getTargetPath() + " not found for " + rootPath, e);
+				}
+				continue;
+			}
+			metaData.relations.add(new RelationMetaData(target.getStructureId().toString(), target.getRootPath(), relation.getType().getName()));
+		}
+
+		metaData.accessControlEntries = cmsObject.getAccessControlEntries(rootPath, false);
+		metaData.acePrincipalNames = new ArrayList<>(metaData.accessControlEntries.size());
+		for (CmsAccessControlEntry ace : metaData.accessControlEntries) {
+			metaData.acePrincipalNames.add(getAcePrincipalName(ace));
+		}
+
+		return metaData;
+	}
+
+	/**
+	 * Internal method returning the name of the user with the given id, if the user can't be read the name of the
+	 * default admin user is returned. User names are cached in the shared {@link UserNameCache}, since a module
+	 * usually has only a handful of distinct authors.
+	 * @param userId    id of the user
+	 * @return  the user's name
+	 */
+	private String getUserName(CmsUUID userId) {
+		return UserNameCache.getInstance().getUserName(cmsObject, userId);
+	}
+
+	/**
+	 * Internal method returning the principal name to be used in the manifest for the given access control entry.
+	 * @param ace   the access control entry
+	 * @return  the principal name (group, user, role or one of the special names for "all others" and "overwrite all")
+	 * @throws CmsException if the group or user can't be read
+	 */
+	private String getAcePrincipalName(CmsAccessControlEntry ace) throws CmsException {
+		// now check if the principal is a group or a user
+		int flags = ace.getFlags();
+		CmsUUID acePrincipal = ace.getPrincipal();
+		if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_ALLOTHERS) > 0) {
+			return CmsAccessControlEntry.PRINCIPAL_ALL_OTHERS_NAME;
+		}
+		else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_OVERWRITE_ALL) > 0) {
+			return CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_NAME;
+		}
+		else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_GROUP) > 0) {
+			// the principal is a group
+			return cmsObject.readGroup(acePrincipal).getPrefixedName();
+		}
+		else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_USER) > 0) {
+			// the principal is a user
+			return cmsObject.readUser(acePrincipal).getPrefixedName();
+		}
+		else {
+			// the principal is a role
+			return CmsRole.PRINCIPAL_ROLE + "." + CmsRole.valueOfId(acePrincipal).getRoleName();
+		}
+	}
+
+	/**
+	 * Internal helper returning the placeholder variable for the given node name, e.g. <code>${source}</code>.
+	 */
+	private static String getVariable(String nodeName) {
+		return "${" + nodeName + "}";
+	}
+
 	/**
 	 * Internal method used to convert an XML document to a formatted String.
 	 * @param document the Document to be converted.
@@ -406,4 +822,37 @@ public class MetaXmlHelper extends CmsExport {
 		return xmlString;
 	}
 
+	/**
+	 * Meta data of a resource read from the VFS before its file node is written by the streaming serializer.
+	 */
+	private static class FileMetaData {
+		private final CmsResource resource;
+		private String typeName;
+		private String userNameLastModified;
+		private String userNameCreated;
+		private List<CmsProperty> properties;
+		private List<RelationMetaData> relations;
+		private List<CmsAccessControlEntry> accessControlEntries;
+		private List<String> acePrincipalNames;
+
+		FileMetaData(CmsResource resource) {
+			this.resource = resource;
+		}
+	}
+
+	/**
+	 * Meta data of a relation read from the VFS before it is written by the streaming serializer.
+	 */
+	private static class RelationMetaData {
+		private final String targetId;
+		private final String targetPath;
+		private final String typeName;
+
+		RelationMetaData(String targetId, String targetPath, String typeName) {
+			this.targetId = targetId;
+			this.targetPath = targetPath;
+			this.typeName = typeName;
+		}
+	}
+
 }
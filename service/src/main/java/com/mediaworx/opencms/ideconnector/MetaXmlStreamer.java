@@ -0,0 +1,435 @@
+package com.mediaworx.opencms.ideconnector;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mediaworx.opencms.ideconnector.cache.ResourceInfoCache;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.main.CmsException;
+import org.opencms.util.CmsFileUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams the manifest stubs and resource infos returned by the actions "moduleManifests" and "resourceInfos" of the
+ * {@link OpenCmsIDEConnector} and by the services of the same names of the
+ * {@link com.mediaworx.opencms.ideconnector.service.IDEConnectorService}, so both return the same entries with the
+ * same ETags. See {@link OpenCmsIDEConnector} for the response format and the supported options (subtree mode,
+ * "since" cursor, parallelism and conditional requests).
+ * <br /><br />
+ * The JSON array of entries is written entry by entry as soon as each entry is generated. The ETag is computed from
+ * the inputs of the entries before anything is streamed, requested resources are read from the VFS only once.
+ */
+public class MetaXmlStreamer {
+
+	private static final Log LOG = LogFactory.getLog(MetaXmlStreamer.class);
+
+	/** Value for the "since" cursor if all resources are requested */
+	public static final long NO_SINCE = -1;
+
+	private static final String MODULE_MANIFESTS = "moduleManifests";
+	private static final String RESOURCE_INFOS = "resourceInfos";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	static {
+		// the generator must not close the response's Writer
+		JSON_FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	private final CmsObject cmsObject;
+	private final MetaXmlHelper xmlHelper;
+	private final int parallelism;
+
+	/**
+	 * Creates a new streamer.
+	 * @param cmsObject     the request's CmsObject
+	 * @param xmlHelper     the MetaXmlHelper with the requested settings (placeholders, serializer)
+	 * @param parallelism   the requested number of worker threads, capped by the module parameter
+	 *                      {@link ModuleParameters#PARAM_MAX_PARALLELISM}; <code>1</code> to generate the entries
+	 *                      sequentially in the request thread
+	 */
+	public MetaXmlStreamer(CmsObject cmsObject, MetaXmlHelper xmlHelper, int parallelism) {
+		this.cmsObject = cmsObject;
+		this.xmlHelper = xmlHelper;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Streams the manifest stubs for the given modules, unknown modules are skipped.
+	 * @param moduleNames   the names of the requested modules
+	 * @param request       the request, used for the header <code>If-None-Match</code>
+	 * @param response      the response the ETag header and the status are set on
+	 * @param out           the Writer the entries are written to
+	 * @throws IOException if writing to the response fails
+	 */
+	public void streamModuleManifests(String[] moduleNames, HttpServletRequest request, HttpServletResponse response, Writer out) throws IOException {
+		streamEntries(MODULE_MANIFESTS, Arrays.asList(moduleNames), new ModuleManifestEntryGenerator(), true, request, response, out);
+	}
+
+	/**
+	 * Streams the resource infos for the given resources. If a "since" cursor is provided, only resources modified
+	 * since then and tombstones for deleted resources are streamed, the cursor for the next request is sent as header
+	 * {@link IDEConnectorConst#HEADER_SYNC_CURSOR} and no ETag is sent.
+	 * @param paths     the root paths of the requested resources or, in subtree mode, of the requested subtrees
+	 * @param subtree   <code>true</code> if the resources below the given paths should be streamed as well
+	 * @param since     the "since" cursor or {@link #NO_SINCE}
+	 * @param request   the request, used for the header <code>If-None-Match</code>
+	 * @param response  the response the headers and the status are set on
+	 * @param out       the Writer the entries are written to
+	 * @throws IOException if writing to the response fails
+	 */
+	public void streamResourceInfos(String[] paths, boolean subtree, long since, HttpServletRequest request, HttpServletResponse response, Writer out) throws IOException {
+		CmsResourceFilter filter = CmsResourceFilter.DEFAULT;
+		if (since != NO_SINCE) {
+			// deleted resources are needed for the tombstones
+			filter = CmsResourceFilter.ALL;
+			response.setHeader(IDEConnectorConst.HEADER_SYNC_CURSOR, String.valueOf(System.currentTimeMillis()));
+		}
+		List<RequestedResource> resources = subtree ? readSubtreeResources(paths, filter) : readResources(paths, filter);
+		// incremental responses contain a sync cursor, they must not be answered from a client's cache
+		streamEntries(RESOURCE_INFOS, resources, new ResourceEntryGenerator(since), since == NO_SINCE, request, response, out);
+	}
+
+	/**
+	 * Internal helper streaming the entries for the given items to the response. If an ETag is to be used, it is
+	 * computed from the inputs of the entries (see {@link MetaXmlEntryGenerator#writeValidator}) and sent as header.
+	 * If the request has the header <code>If-None-Match</code> containing the ETag, 304 is sent instead of the entries.
+	 * @param name      the name of the requested meta data, part of the ETag
+	 * @param items     the requested items
+	 * @param generator the generator used to create the entry for each item
+	 * @param useETag   <code>true</code> if the response should carry an ETag
+	 * @param request   the request
+	 * @param response  the response
+	 * @param out       the Writer the entries are written to
+	 * @param <T>       type of the requested items
+	 * @throws IOException if writing to the response fails
+	 */
+	private <T> void streamEntries(String name, List<T> items, MetaXmlEntryGenerator<T> generator, boolean useETag,
+			HttpServletRequest request, HttpServletResponse response, Writer out) throws IOException {
+		if (useETag) {
+			String etag = createETag(name, items, generator);
+			response.setHeader(IDEConnectorConst.HEADER_ETAG, etag);
+			if (ETagHelper.isNotModified(request.getHeader(IDEConnectorConst.HEADER_IF_NONE_MATCH), etag)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+		EntryWriter entryWriter = new EntryWriter(out);
+		writeEntries(entryWriter, items, generator);
+		entryWriter.close();
+	}
+
+	/**
+	 * Internal helper computing the weak ETag of the entries for the given items from the entries' inputs, without
+	 * generating the entries. Besides each item's inputs the ETag depends on the project and the
+	 * <code>useDateVariables</code> and <code>useIdVariables</code> flags.
+	 * @param name      the name of the requested meta data
+	 * @param items     the requested items
+	 * @param generator the generator used to create the entry for each item
+	 * @param <T>       type of the requested items
+	 * @return  the weak ETag
+	 */
+	private <T> String createETag(String name, List<T> items, MetaXmlEntryGenerator<T> generator) {
+		ETagHelper.ETagWriter validator = new ETagHelper.ETagWriter();
+		validator.write(name + "\n");
+		validator.write(cmsObject.getRequestContext().getCurrentProject().getUuid() + "\n");
+		validator.write(xmlHelper.isUseDateVariables() + "," + xmlHelper.isUseIdVariables() + "\n");
+		for (T item : items) {
+			generator.writeValidator(item, cmsObject, xmlHelper, validator);
+		}
+		return validator.getWeakETag();
+	}
+
+	/**
+	 * Internal helper generating the entries for the given items and writing them to the response in request order.
+	 * Depending on the requested parallelism the entries are generated sequentially in the request thread or in
+	 * parallel by a {@link ParallelMetaXmlGenerator}.
+	 * @param entryWriter   the writer used to stream the JSON entries
+	 * @param items         the requested items
+	 * @param generator     the generator used to create the entry for each item
+	 * @param <T>           type of the requested items
+	 * @throws IOException if writing to the response fails
+	 */
+	private <T> void writeEntries(EntryWriter entryWriter, List<T> items, MetaXmlEntryGenerator<T> generator) throws IOException {
+		int workers = Math.min(Math.min(parallelism, ParallelMetaXmlGenerator.getMaxParallelism()), items.size());
+		if (workers > 1) {
+			ParallelMetaXmlGenerator<T> parallelGenerator = new ParallelMetaXmlGenerator<>(items, generator);
+			try {
+				parallelGenerator.start(cmsObject, xmlHelper, workers);
+			}
+			catch (CmsException e) {
+				LOG.error("CmsObjects for the workers can't be initialized, generating the entries sequentially", e);
+				parallelGenerator = null;
+			}
+			if (parallelGenerator != null) {
+				try {
+					while (parallelGenerator.hasNext()) {
+						entryWriter.writeEntry(parallelGenerator.next());
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					LOG.error("Interrupted while waiting for the workers, the response is incomplete", e);
+				}
+				finally {
+					parallelGenerator.cancel();
+				}
+				return;
+			}
+		}
+		for (T item : items) {
+			entryWriter.writeEntry(generator.generate(item, cmsObject, xmlHelper));
+		}
+	}
+
+	/**
+	 * Reads the resources at the given paths from the VFS, each resource is read once and used both for the ETag and
+	 * for the entry.
+	 * @param paths     the requested root paths
+	 * @param filter    the filter used to read the resources
+	 * @return  the requested resources in request order, without resource for paths that don't exist or can't be read
+	 */
+	private List<RequestedResource> readResources(String[] paths, CmsResourceFilter filter) {
+		List<RequestedResource> resources = new ArrayList<>(paths.length);
+		for (String path : paths) {
+			CmsResource resource = null;
+			if (cmsObject.existsResource(path, filter)) {
+				try {
+					resource = cmsObject.readResource(path, filter);
+				}
+				catch (CmsException e) {
+					LOG.error("Resource " + path + " can't be read", e);
+				}
+			}
+			resources.add(new RequestedResource(path, resource));
+		}
+		return resources;
+	}
+
+	/**
+	 * Reads the resources at the given root paths and all their descendants from the VFS, descendants are read with
+	 * one call per root. Resources contained in multiple subtrees are returned only once.
+	 * @param rootPaths the root paths of the subtrees, usually folders
+	 * @param filter    the filter used to read the resources
+	 * @return  all resources contained in the subtrees, ordered by root path (so parent folders are returned before
+	 *          their children), with the root path (without trailing slash) as id
+	 */
+	private List<RequestedResource> readSubtreeResources(String[] rootPaths, CmsResourceFilter filter) {
+		Map<String, CmsResource> resourcesByPath = new TreeMap<>();
+		for (String rootPath : rootPaths) {
+			if (!cmsObject.existsResource(rootPath, filter)) {
+				continue;
+			}
+			try {
+				CmsResource root = cmsObject.readResource(rootPath, filter);
+				resourcesByPath.put(root.getRootPath(), root);
+				if (root.isFolder()) {
+					for (CmsResource resource : cmsObject.readResources(rootPath, filter, true)) {
+						resourcesByPath.put(resource.getRootPath(), resource);
+					}
+				}
+			}
+			catch (CmsException e) {
+				LOG.error("The subtree " + rootPath + " can't be read from the VFS", e);
+			}
+		}
+		List<RequestedResource> resources = new ArrayList<>(resourcesByPath.size());
+		for (CmsResource resource : resourcesByPath.values()) {
+			resources.add(new RequestedResource(CmsFileUtil.removeTrailingSeparator(resource.getRootPath()), resource));
+		}
+		return resources;
+	}
+
+	/**
+	 * Internal helper creating the entry for the given resource. If the resource doesn't exist or is marked as deleted
+	 * a tombstone is returned for incremental requests. If a "since" cursor was provided and the resource wasn't
+	 * modified since then, no entry is returned at all.
+	 * @param id        the resource path used as id
+	 * @param resource  the resource or <code>null</code> if there's no resource at the requested path
+	 * @param since     the "since" cursor or {@link #NO_SINCE}
+	 * @param xmlHelper the MetaXmlHelper used to generate the resource info
+	 * @return  the entry or <code>null</code> if no entry is to be returned for the resource
+	 */
+	private static MetaXmlEntry createResourceEntry(String id, CmsResource resource, long since, MetaXmlHelper xmlHelper) {
+		if (resource == null) {
+			return since != NO_SINCE ? MetaXmlEntry.createTombstone(id) : null;
+		}
+		if (resource.getState().isDeleted()) {
+			return MetaXmlEntry.createTombstone(id);
+		}
+		if (since != NO_SINCE && resource.getDateLastModified() <= since && resource.getDateContent() <= since) {
+			return null;
+		}
+		String xml = xmlHelper.getResourceInfo(resource);
+		if (xml == null) {
+			return null;
+		}
+		return MetaXmlEntry.create(id, xml);
+	}
+
+	/**
+	 * Internal helper writing the inputs of the resource info for the given resource to the given validator: the
+	 * entry's id, the resource's ids, type, state, flags, dates, users and sibling count and the resource's
+	 * modification stamp (see {@link ResourceInfoCache#getStamp}) covering properties, relations and access control
+	 * entries. If there's no resource, only the id is written.
+	 * @param id        the id of the entry
+	 * @param resource  the resource or <code>null</code> if there's no resource at the requested path
+	 * @param validator the writer the inputs are written to
+	 */
+	private static void writeResourceValidator(String id, CmsResource resource, ETagHelper.ETagWriter validator) {
+		if (resource == null) {
+			validator.write(id + "\n");
+			return;
+		}
+		validator.write(id + "," + resource.getStructureId() + "," + resource.getResourceId() + ","
+				+ resource.getTypeId() + "," + resource.getState() + "," + resource.getFlags() + ","
+				+ resource.getDateCreated() + "," + resource.getDateLastModified() + "," + resource.getDateContent() + ","
+				+ resource.getDateReleased() + "," + resource.getDateExpired() + "," + resource.getUserCreated() + ","
+				+ resource.getUserLastModified() + "," + resource.getSiblingCount() + ","
+				+ ResourceInfoCache.getInstance().getStamp(resource) + "\n");
+	}
+
+	/**
+	 * Generates the manifest stubs, the items are module names.
+	 */
+	private static class ModuleManifestEntryGenerator implements MetaXmlEntryGenerator<String> {
+
+		ModuleManifestEntryGenerator() {
+		}
+
+		@Override
+		public MetaXmlEntry generate(String moduleName, CmsObject cmsObject, MetaXmlHelper xmlHelper) {
+			try {
+				return MetaXmlEntry.create(moduleName, xmlHelper.getModuleManifestStub(moduleName));
+			}
+			catch (IllegalArgumentException e) {
+				LOG.error(moduleName + " is not a valid module name");
+				return null;
+			}
+		}
+
+		@Override
+		public void writeValidator(String moduleName, CmsObject cmsObject, MetaXmlHelper xmlHelper, ETagHelper.ETagWriter validator) {
+			validator.write(moduleName + "\n");
+			try {
+				validator.write(xmlHelper.getModuleManifestStubInputs(moduleName) + "\n");
+			}
+			catch (IllegalArgumentException e) {
+				// invalid module names are skipped
+			}
+		}
+	}
+
+	/**
+	 * A requested resource, read from the VFS before the ETag and the entries are created.
+	 */
+	private static class RequestedResource {
+
+		private final String id;
+		private final CmsResource resource;
+
+		RequestedResource(String id, CmsResource resource) {
+			this.id = id;
+			this.resource = resource;
+		}
+
+		@Override
+		public String toString() {
+			return id;
+		}
+	}
+
+	/**
+	 * Generates the resource infos, the items are the resources read from the VFS. If a "since" cursor was provided,
+	 * tombstones are returned for paths that don't exist.
+	 */
+	private static class ResourceEntryGenerator implements MetaXmlEntryGenerator<RequestedResource> {
+
+		private final long since;
+
+		ResourceEntryGenerator(long since) {
+			this.since = since;
+		}
+
+		@Override
+		public MetaXmlEntry generate(RequestedResource item, CmsObject cmsObject, MetaXmlHelper xmlHelper) {
+			return createResourceEntry(item.id, item.resource, since, xmlHelper);
+		}
+
+		@Override
+		public void writeValidator(RequestedResource item, CmsObject cmsObject, MetaXmlHelper xmlHelper, ETagHelper.ETagWriter validator) {
+			writeResourceValidator(item.id, item.resource, validator);
+		}
+	}
+
+	/**
+	 * Streams the JSON array of entries to the response using a Jackson JsonGenerator. The first entry is flushed
+	 * immediately, after that the output is flushed every {@link #FLUSH_INTERVAL} entries.
+	 */
+	private static class EntryWriter {
+
+		private static final int FLUSH_INTERVAL = 100;
+
+		private final Writer out;
+		private final JsonGenerator generator;
+		private int numEntries = 0;
+
+		EntryWriter(Writer out) throws IOException {
+			this.out = out;
+			generator = JSON_FACTORY.createGenerator(out);
+			generator.writeStartArray();
+		}
+
+		/**
+		 * Writes the given entry, either containing the id and xml or, for tombstones, the id and the deleted flag.
+		 * @param entry the entry, nothing is written if the entry is <code>null</code>
+		 * @throws IOException if writing to the response fails
+		 */
+		void writeEntry(MetaXmlEntry entry) throws IOException {
+			if (entry == null) {
+				return;
+			}
+			generator.writeStartObject();
+			generator.writeStringField("id", entry.getId());
+			if (entry.isDeleted()) {
+				generator.writeBooleanField("deleted", true);
+			}
+			else {
+				generator.writeStringField("xml", entry.getXml());
+			}
+			generator.writeEndObject();
+			entryWritten();
+		}
+
+		/**
+		 * Ends the JSON array and flushes the output, the Writer itself is not closed.
+		 * @throws IOException if writing to the response fails
+		 */
+		void close() throws IOException {
+			generator.writeEndArray();
+			generator.close();
+			// same line separator as JspWriter.println()
+			out.write(System.lineSeparator());
+			out.flush();
+		}
+
+		private void entryWritten() throws IOException {
+			numEntries++;
+			if (numEntries == 1 || numEntries % FLUSH_INTERVAL == 0) {
+				generator.flush();
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package com.mediaworx.opencms.ideconnector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming XML writer used to write resource meta data without building a dom4j document first.
+ * <br /><br />
+ * The output is byte for byte identical to what dom4j's <code>XMLWriter</code> produces with the pretty print
+ * format used by {@link MetaXmlHelper} (indent size 4, no text trimming, UTF-8, no XML declaration, leading line
+ * break trimmed). Only the small subset of XML needed for OpenCms manifest nodes is supported: elements, attributes,
+ * text only elements and CDATA only elements.
+ * <br /><br />
+ * Instances are not thread safe.
+ */
+public class MetaXmlWriter {
+
+	private static final String INDENT = "    ";
+	private static final String LINE_SEPARATOR = "\n";
+
+	private final Writer out;
+	private final Deque<String> openElements = new ArrayDeque<>();
+	private int indentLevel;
+	private boolean startTagOpen = false;
+	private boolean lineStarted = false;
+
+	/**
+	 * Creates a new MetaXmlWriter writing a standalone XML fragment (starting without a line break at indent level 0)
+	 * to the given Writer.
+	 * @param out   the Writer the XML is written to
+	 */
+	public MetaXmlWriter(Writer out) {
+		this(out, 0);
+	}
+
+	/**
+	 * Creates a new MetaXmlWriter writing an XML fragment that is embedded in a larger document at the given indent
+	 * level. The first line is indented, but not preceded by a line break.
+	 * @param out           the Writer the XML is written to
+	 * @param indentLevel   the indent level of the fragment's root element
+	 */
+	public MetaXmlWriter(Writer out, int indentLevel) {
+		this.out = out;
+		this.indentLevel = indentLevel;
+	}
+
+	/**
+	 * Starts a new element that may contain child elements or attributes. The start tag is left open until either
+	 * a child element is started (then it is closed with "&gt;") or the element is ended without children (then it is
+	 * written as empty element "&lt;name/&gt;").
+	 * @param name  the element's name
+	 * @throws IOException if writing to the underlying Writer fails
+	 */
+	public void startElement(String name) throws IOException {
+		closeStartTag();
+		writeLineStart();
+		out.write('<');
+		out.write(name);
+		openElements.push(name);
+		startTagOpen = true;
+		indentLevel++;
+	}
+
+	/**
+	 * Adds an attribute to the element that was just started. Must be called directly after
+	 * {@link #startElement(String)}.
+	 * @param name  the attribute's name
+	 * @param value the attribute's value, escaped the way dom4j escapes attribute values
+	 * @throws IOException if writing to the underlying Writer fails
+	 */
+	public void attribute(String name, String value) throws IOException {
+		if (!startTagOpen) {
+			throw new IllegalStateException("Attribute " + name + " can only be written directly after a start tag");
+		}
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		if (value != null) {
+			writeEscaped(value, true);
+		}
+		out.write('"');
+	}
+
+	/**
+	 * Writes an element containing only the given text, e.g. <code>&lt;type&gt;plain&lt;/type&gt;</code>.
+	 * @param name  the element's name
+	 * @param text  the element's text, escaped the way dom4j escapes element text
+	 * @throws IOException if writing to the underlying Writer fails
+	 */
+	public void textElement(String name, String text) throws IOException {
+		writeInlineStart(name);
+		if (text != null) {
+			writeEscaped(text, false);
+		}
+		writeEndTag(name);
+	}
+
+	/**
+	 * Writes an element containing only the given text as CDATA section, e.g.
+	 * <code>&lt;value&gt;&lt;![CDATA[some value]]&gt;&lt;/value&gt;</code>.
+	 * @param name  the element's name
+	 * @param text  the CDATA content (not escaped, just like dom4j)
+	 * @throws IOException if writing to the underlying Writer fails
+	 */
+	public void cdataElement(String name, String text) throws IOException {
+		writeInlineStart(name);
+		out.write("<![CDATA[");
+		if (text != null) {
+			out.write(text);
+		}
+		out.write("]]>");
+		writeEndTag(name);
+	}
+
+	/**
+	 * Ends the element that was started last.
+	 * @throws IOException if writing to the underlying Writer fails
+	 */
+	public void endElement() throws IOException {
+		String name = openElements.pop();
+		indentLevel--;
+		if (startTagOpen) {
+			out.write("/>");
+			startTagOpen = false;
+		}
+		else {
+			writeLineStart();
+			writeEndTag(name);
+		}
+	}
+
+	/**
+	 * Flushes the underlying Writer.
+	 * @throws IOException if flushing the underlying Writer fails
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	private void writeInlineStart(String name) throws IOException {
+		closeStartTag();
+		writeLineStart();
+		out.write('<');
+		out.write(name);
+		out.write('>');
+	}
+
+	private void writeEndTag(String name) throws IOException {
+		out.write("</");
+		out.write(name);
+		out.write('>');
+	}
+
+	private void closeStartTag() throws IOException {
+		if (startTagOpen) {
+			out.write('>');
+			startTagOpen = false;
+		}
+	}
+
+	private void writeLineStart() throws IOException {
+		if (lineStarted) {
+			out.write(LINE_SEPARATOR);
+		}
+		else {
+			lineStarted = true;
+		}
+		for (int i = 0; i < indentLevel; i++) {
+			out.write(INDENT);
+		}
+	}
+
+	/**
+	 * Writes the given text escaping the predefined XML entities exactly like dom4j's <code>XMLWriter</code> does
+	 * for UTF-8 output: tabs and line breaks are kept, other control characters are written as character references.
+	 */
+	private void writeEscaped(String text, boolean isAttribute) throws IOException {
+		int last = 0;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String entity;
+			switch (c) {
+				case '<':
+					entity = "&lt;";
+					break;
+				case '>':
+					entity = "&gt;";
+					break;
+				case '&':
+					entity = "&amp;";
+					break;
+				case '"':
+					entity = isAttribute ? "&quot;" : null;
+					break;
+				case '\t':
+				case '\n':
+				case '\r':
+					entity = null;
+					break;
+				default:
+					entity = c < 32 ? "&#" + (int)c + ";" : null;
+					break;
+			}
+			if (entity != null) {
+				if (i > last) {
+					out.write(text, last, i - last);
+				}
+				out.write(entity);
+				last = i + 1;
+			}
+		}
+		if (last < length) {
+			out.write(text, last, length - last);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.mediaworx.opencms.ideconnector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule;
+
+/**
+ * Provides access to the parameters of the IDE connector module (as configured in the OpenCms module management).
+ * Used for settings that must be controlled by the administrator of the OpenCms instance rather than by the client,
+ * e.g. limits protecting the live site.
+ */
+public class ModuleParameters {
+
+	private static final Log LOG = LogFactory.getLog(ModuleParameters.class);
+
+	/** Name of the IDE connector module */
+	public static final String MODULE_NAME = "com.mediaworx.opencms.ideconnector";
+
+	/**
+	 * Module parameter containing the maximum number of threads used to generate resource infos or module manifest
+	 * stubs in parallel (for all requests together)
+	 */
+	public static final String PARAM_MAX_PARALLELISM = "maxParallelism";
+
+	/** Default for {@link #PARAM_MAX_PARALLELISM} */
+	public static final int DEFAULT_MAX_PARALLELISM = 4;
+
+	/**
+	 * Module parameter containing the maximum size (in megabytes) of the shared resource info cache, <code>0</code>
+	 * disables the cache
+	 */
+	public static final String PARAM_RESOURCE_INFO_CACHE_SIZE = "resourceInfoCacheSize";
+
+	/** Default for {@link #PARAM_RESOURCE_INFO_CACHE_SIZE} */
+	public static final int DEFAULT_RESOURCE_INFO_CACHE_SIZE = 32;
+
+	/**
+	 * Module parameter containing the time (in minutes) after which an unused IDE connector session expires,
+	 * <code>0</code> if sessions should not expire when idle
+	 */
+	public static final String PARAM_SESSION_IDLE_TIMEOUT = "sessionIdleTimeout";
+
+	/** Default for {@link #PARAM_SESSION_IDLE_TIMEOUT} */
+	public static final int DEFAULT_SESSION_IDLE_TIMEOUT = 120;
+
+	/**
+	 * Module parameter containing the maximum age (in minutes) of an IDE connector session, no matter how often it is
+	 * used, <code>0</code> if there's no maximum age
+	 */
+	public static final String PARAM_SESSION_MAX_AGE = "sessionMaxAge";
+
+	/** Default for {@link #PARAM_SESSION_MAX_AGE} */
+	public static final int DEFAULT_SESSION_MAX_AGE = 24 * 60;
+
+	/** Module parameter containing the maximum number of concurrent IDE connector sessions */
+	public static final String PARAM_MAX_SESSIONS = "maxSessions";
+
+	/** Default for {@link #PARAM_MAX_SESSIONS} */
+	public static final int DEFAULT_MAX_SESSIONS = 1000;
+
+	/** Module parameter containing the maximum number of modules imported concurrently by one import request */
+	public static final String PARAM_MAX_IMPORT_PARALLELISM = "maxImportParallelism";
+
+	/** Default for {@link #PARAM_MAX_IMPORT_PARALLELISM} */
+	public static final int DEFAULT_MAX_IMPORT_PARALLELISM = 4;
+
+	/** Module parameter containing the maximum number of asynchronous import jobs running concurrently */
+	public static final String PARAM_MAX_IMPORT_JOBS = "maxImportJobs";
+
+	/** Default for {@link #PARAM_MAX_IMPORT_JOBS} */
+	public static final int DEFAULT_MAX_IMPORT_JOBS = 2;
+
+	/**
+	 * Module parameter containing the maximum number of asynchronous import jobs waiting for a free import thread,
+	 * further jobs are rejected
+	 */
+	public static final String PARAM_MAX_QUEUED_IMPORT_JOBS = "maxQueuedImportJobs";
+
+	/** Default for {@link #PARAM_MAX_QUEUED_IMPORT_JOBS} */
+	public static final int DEFAULT_MAX_QUEUED_IMPORT_JOBS = 20;
+
+	/**
+	 * Module parameter containing the time (in minutes) the status and log of a finished import job are kept
+	 */
+	public static final String PARAM_IMPORT_JOB_RETENTION = "importJobRetention";
+
+	/** Default for {@link #PARAM_IMPORT_JOB_RETENTION} */
+	public static final int DEFAULT_IMPORT_JOB_RETENTION = 60;
+
+	/**
+	 * Module parameter containing the maximum time (in seconds) a publish request with progress events waits for the
+	 * publish job to finish, the job continues in the background afterwards
+	 */
+	public static final String PARAM_PUBLISH_WAIT_TIMEOUT = "publishWaitTimeout";
+
+	/** Default for {@link #PARAM_PUBLISH_WAIT_TIMEOUT} */
+	public static final int DEFAULT_PUBLISH_WAIT_TIMEOUT = 600;
+
+	/**
+	 * Module parameter containing the time (in minutes) the status and report of a finished publish job are kept
+	 */
+	public static final String PARAM_PUBLISH_JOB_RETENTION = "publishJobRetention";
+
+	/** Default for {@link #PARAM_PUBLISH_JOB_RETENTION} */
+	public static final int DEFAULT_PUBLISH_JOB_RETENTION = 60;
+
+	/**
+	 * Module parameter containing the time (in milliseconds) publish requests of the same user and project are
+	 * collected to be published as one publish job, 0 to publish each request immediately
+	 */
+	public static final String PARAM_PUBLISH_COALESCE_WINDOW = "publishCoalesceWindow";
+
+	/** Default for {@link #PARAM_PUBLISH_COALESCE_WINDOW} */
+	public static final int DEFAULT_PUBLISH_COALESCE_WINDOW = 0;
+
+	private ModuleParameters() {
+	}
+
+	/**
+	 * Returns the value of the given module parameter.
+	 * @param name          the parameter's name
+	 * @param defaultValue  the value to be returned if the module or the parameter doesn't exist
+	 * @return  the parameter's value or the given default value
+	 */
+	public static String getParameter(String name, String defaultValue) {
+		CmsModule module = OpenCms.getModuleManager().getModule(MODULE_NAME);
+		if (module == null) {
+			return defaultValue;
+		}
+		return module.getParameter(name, defaultValue);
+	}
+
+	/**
+	 * Returns the int value of the given module parameter.
+	 * @param name          the parameter's name
+	 * @param defaultValue  the value to be returned if the module or the parameter doesn't exist or if the parameter's
+	 *                      value is not a valid number
+	 * @return  the parameter's value or the given default value
+	 */
+	public static int getIntParameter(String name, int defaultValue) {
+		String value = getParameter(name, null);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for module parameter " + name + ", using the default " + defaultValue + ": " + value);
+			return defaultValue;
+		}
+	}
+}
@@ -1,6 +1,19 @@
 package com.mediaworx.opencms.ideconnector;
 
-import org.apache.chemistry.opencmis.commons.impl.json.JSONObject;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediaworx.opencms.ideconnector.cache.ResourceInfoCache;
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+import com.mediaworx.opencms.ideconnector.data.LoginStatus;
+import com.mediaworx.opencms.ideconnector.dataimpl.LoginStatusImpl;
+import com.mediaworx.opencms.ideconnector.dataimpl.ProgressEventImpl;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+import com.mediaworx.opencms.ideconnector.report.ProgressEventReport;
+import com.mediaworx.opencms.ideconnector.report.ProgressEventWriter;
+import com.mediaworx.opencms.ideconnector.service.SessionStore;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.simple.JSONArray;
@@ -14,11 +27,14 @@ import org.opencms.file.CmsResourceFilter;
 import org.opencms.flex.CmsFlexController;
 import org.opencms.main.CmsException;
 import org.opencms.main.OpenCms;
-import org.opencms.publish.CmsPublishManager;
-import org.opencms.report.CmsLogReport;
+import org.opencms.publish.CmsPublishJobBase;
+import org.opencms.publish.CmsPublishJobFinished;
 import org.opencms.report.I_CmsReport;
+import org.opencms.util.CmsUUID;
 
 import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
 import java.io.IOException;
@@ -26,6 +42,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Provides a simple interface to OpenCms that enables pulling module and resource metadata and publishing resources
@@ -46,6 +64,25 @@ import java.util.Locale;
  * via POST to avoid running into problems if GET parameters get too long. The connector's response differs depending
  * on the action (see below).
  * <br /><br />
+ * Instead of the form parameter <code>json</code>, the json array may be sent as request body with the content type
+ * <code>application/json</code> (the other parameters are then sent in the query string). The body is parsed while it
+ * is read, so large requests (e.g. thousands of resource paths) don't have to be decoded into one big String first.
+ * <br /><br />
+ * <strong>Token login</strong>
+ * <br /><br />
+ * Instead of <code>user</code> and <code>password</code> the parameter <code>token</code> may be sent with each request.
+ * The token identifies a CmsObject that is logged in already and has the Offline project selected, so there's no login
+ * and no project lookup per request. Tokens are issued by the action "login" (see below) or by the login service of
+ * the {@link com.mediaworx.opencms.ideconnector.service.IDEConnectorService}, both share the same session store (see
+ * {@link SessionStore}) with its idle timeout and maximum session age. If the token is unknown or expired and
+ * <code>user</code> and <code>password</code> are sent as well, the user is logged in with those.
+ * <br /><br />
+ * <strong>action=login</strong>
+ * <br /><br />
+ * Logs in the user provided in the parameters <code>user</code> and <code>password</code> and returns the JSON login
+ * status (see {@link com.mediaworx.opencms.ideconnector.data.LoginStatus}) containing the token to be used for
+ * subsequent requests. The action "logout" with the parameter <code>token</code> ends the session.
+ * <br /><br />
  * <strong>action=moduleManifests</strong>
  * <br /><br />
  * The action "moduleManifests" is used to retrieve module manifest stubs (like regular OpenCms module manifests, but
@@ -191,6 +228,56 @@ import java.util.Locale;
  * The returned xml structures can be used to fill the empty files node of the manifest stub (see above). Source and
  * destination paths are represented by variables and must be set when generating the manifest.
  * <br /><br />
+ * <strong>Optional parameter "subtree" for action=resourceInfos</strong>
+ * <br /><br />
+ * If the parameter <code>subtree</code> is set to <code>true</code>, the json array must contain the root paths of
+ * folders (e.g. the module resources) instead of every single resource path. The connector then returns the meta
+ * data for the given folders and all resources below them, all descendants are read from the VFS with one call per
+ * folder. The ids in the response are the root paths of the resources (without trailing slash for folders), ordered
+ * by path, so parent folders come before their children. Non existing root paths are skipped.
+ * <br /><br />
+ * Sample parameters:
+ * <ul>
+ *     <li>user: Admin</li>
+ *     <li>password: admin</li>
+ *     <li>action: resourceInfos</li>
+ *     <li>json: ["/system/modules/com.mycompany.mypackage.mymodule1"]</li>
+ *     <li>subtree: true</li>
+ * </ul>
+ * <br /><br />
+ * <strong>Optional parameter "since" for action=resourceInfos</strong>
+ * <br /><br />
+ * The parameter <code>since</code> can be used for incremental syncs. Its value is a sync cursor (a timestamp in
+ * milliseconds since the epoch). If provided, only resources whose date last modified or date content changed is
+ * newer than the cursor are returned. Resources that are marked as deleted are returned as tombstones like
+ * <code>{"id":"\/testfolder\/oldfile.jsp","deleted":true}</code>. If resource paths are provided (not in subtree
+ * mode), tombstones are returned for paths that don't exist in the VFS at all as well.
+ * <br />
+ * The response header <code>X-IDEConnector-Sync-Cursor</code> contains the cursor to be used for the next request
+ * (the server time before the first resource was read). The parameter <code>since</code> may be combined with the
+ * parameter <code>subtree</code>; note that in subtree mode resources whose deletion was already published are gone
+ * from the VFS, so no tombstones can be returned for them.
+ * <br /><br />
+ * <strong>action=moduleManifest</strong>
+ * <br /><br />
+ * The action "moduleManifest" is used to retrieve the complete manifest of a module in one request, instead of
+ * fetching the manifest stub and the resource infos of all module resources and merging them on the client. The json
+ * array provided as parameter <code>json</code> must contain exactly one module package name.
+ * <br /><br />
+ * Sample parameters:
+ * <ul>
+ *     <li>user: Admin</li>
+ *     <li>password: admin</li>
+ *     <li>action: moduleManifest</li>
+ *     <li>json: ["com.mycompany.mypackage.mymodule1"]</li>
+ * </ul>
+ * Response:<br />
+ * The response is the module manifest XML (content type <code>text/xml</code>): the manifest stub (see
+ * action=moduleManifests) with the files node containing the file nodes of the module resources, all resources below
+ * them and their parent folders, ordered by path. Source and destination of each file node are set to the resource's
+ * path (without leading slash), so no variables have to be replaced. The parameters <code>useDateVariables</code> and
+ * <code>useIdVariables</code> are respected. The manifest is streamed while the resources are read from the VFS.
+ * <br /><br />
  * <strong>action=publishResources</strong>
  * <br /><br />
  * The action "publishResources" is used to trigger a direct publish session of VFS resources. The json array
@@ -210,9 +297,46 @@ import java.util.Locale;
  * Response:<br />
  * If the direct publish session was triggered successfully, the response is simply "OK". If there was an error, the
  * response contains a description of the error that may be shown to the user. The error message may be something like
- * "/testfolder/testfile.jsp could not be read from the VFS" or "Error retrieving CmsPublishList from OpenCms".
+ * "/testfolder/testfile.jsp could not be read from the VFS" or "Error publishing the resources: ...".
  * Messages of multiple errors that occur during one publish request are concatenated.
  * <br /><br />
+ * If the module parameter <code>publishCoalesceWindow</code> is set to a number of milliseconds greater than 0,
+ * publish requests of the same user and project arriving within that window are merged into one publish job with a
+ * deduplicated publish list (see {@link PublishCoalescer}). Each request still gets its own response.
+ * <br /><br />
+ * If the optional parameter <code>events</code> is set to <code>true</code>, the response consists of structured
+ * progress events as NDJSON (one {@link ProgressEvent} per line) instead: a "publishStarted" event containing the
+ * number of resources, the lines of the publish report as "resource", "warning" or "error" events and a
+ * "publishFinished" event containing the publish duration. In that mode the request waits until the publish job has
+ * finished, at most for the time configured in the module parameter <code>publishWaitTimeout</code> (in seconds,
+ * default 600).
+ * <br /><br />
+ * <strong>Optional parameter "async" for action=publishResources</strong>
+ * <br /><br />
+ * If the optional parameter <code>async</code> is set to <code>true</code>, the publish list is built and enqueued in
+ * the background and the response is returned immediately. The response is the JSON status of the publish job (see
+ * {@link com.mediaworx.opencms.ideconnector.data.PublishJobStatus}) containing the job id to be used for the action
+ * "publishStatus".
+ * <br /><br />
+ * <strong>action=publishStatus</strong>
+ * <br /><br />
+ * The action "publishStatus" returns the JSON status of an asynchronous publish job (state, timings, number of
+ * warnings and errors) including the publish report written by OpenCms. The job id must be provided as parameter
+ * <code>jobId</code>. The report is returned starting at the character offset provided as parameter
+ * <code>offset</code> (default 0), so clients can tail the report by passing the status' <code>nextLogOffset</code>
+ * with the next poll. Jobs are kept for a while after they have finished (module parameter
+ * <code>publishJobRetention</code>, default 60 minutes) and can only be accessed by the user who submitted them.
+ * <br /><br />
+ * Sample parameters:
+ * <ul>
+ *     <li>user: Admin</li>
+ *     <li>password: admin</li>
+ *     <li>action: publishStatus</li>
+ *     <li>jobId: 0e436b9f-5c5d-11e3-91b4-210cc9a3bba6</li>
+ *     <li>offset: 0</li>
+ * </ul>
+ * If there's no such job, the response is "Unknown publish job" followed by the job id.
+ * <br /><br />
  * <strong>Optional parameter "useDateVariables"</strong>
  * <br /><br />
  * There's an optional parameter <code>useDateVariables</code> that can be used to replace the meta variables
@@ -275,6 +399,35 @@ import java.util.Locale;
  * circumstances content references depend on static IDs and with <code>useIdVariables</code> set to <code>true</code>,
  * new IDs are created whenever the manifest is generated. So we advise against using this option. It's there for
  * downward compatibility reasons.</strong>
+ * <br /><br />
+ * <strong>Optional parameter "useLegacyXmlSerializer"</strong>
+ * <br /><br />
+ * Resource infos are serialized by a streaming XML writer that writes the XML without building a dom4j document for
+ * each resource. If the optional parameter <code>useLegacyXmlSerializer</code> is set to <code>true</code>, the old
+ * dom4j based serializer is used instead. Both serializers produce exactly the same XML, so the parameter is only
+ * needed for comparison or as fallback.
+ * <br /><br />
+ * <strong>Optional parameter "parallelism" for action=moduleManifests and action=resourceInfos</strong>
+ * <br /><br />
+ * By default all entries are generated one after the other in the request thread. If the optional parameter
+ * <code>parallelism</code> is set to a number greater than 1, the entries are generated by that many worker threads
+ * in parallel, each with its own copy of the CmsObject. The response is exactly the same as without the parameter,
+ * entries are returned in request order. The number of worker threads is capped by the module parameter
+ * <code>maxParallelism</code> (default 4), which also limits the number of worker threads used by all requests
+ * together, so parallel generation can't starve the live site.
+ * <br /><br />
+ * <strong>Conditional requests for action=moduleManifests and action=resourceInfos</strong>
+ * <br /><br />
+ * Responses of the actions <code>moduleManifests</code> and <code>resourceInfos</code> (without "since" cursor) carry
+ * a weak <code>ETag</code> header. If the request's <code>If-None-Match</code> header contains that ETag, the connector
+ * responds with 304 (Not Modified) and without body, so clients caching the responses only pay for a round trip if
+ * the meta data hasn't changed. The ETag is a hash of the inputs the entries are generated from, so it's known before
+ * the body is streamed without generating the entries: the module configuration (without the export date) for
+ * manifest stubs, the structure ids, dates, flags and sibling counts of the resources for resource infos. Since
+ * properties, relations and access control entries may change without touching the date last modified, the ETag of
+ * resource infos also contains each resource's modification stamp kept by the {@link ResourceInfoCache}, so only
+ * modifications of the requested resources change the ETag. The resources are read from the VFS once, for the ETag
+ * and the entries.
  *
  * @author Kai Widman, 2013-2016 mediaworx Berlin AG
  */
@@ -283,8 +436,21 @@ public class OpenCmsIDEConnector {
 	private static final Log LOG = LogFactory.getLog(OpenCmsIDEConnector.class);
 
 	private static final String ACTION_MODULEMANIFESTS = "moduleManifests";
+	private static final String ACTION_MODULEMANIFEST = "moduleManifest";
 	private static final String ACTION_RESOURCEINFOS = "resourceInfos";
 	private static final String ACTION_PUBLISH = "publishResources";
+	private static final String ACTION_PUBLISH_STATUS = "publishStatus";
+	private static final String ACTION_LOGIN = "login";
+	private static final String ACTION_LOGOUT = "logout";
+
+	private static final long PUBLISH_POLL_INTERVAL_MILLIS = 200;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JSON_FACTORY);
+	static {
+		// the generator must not close the JspWriter
+		JSON_FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
 	
 	private ServletRequest request;
 	private JspWriter out;
@@ -299,7 +465,8 @@ public class OpenCmsIDEConnector {
 	private String action;
 
 	/**
-	 * A JSON array with incoming data provided as request parameter "json"
+	 * A JSON array with incoming data provided as request parameter "json" (<code>null</code> if the data is sent as
+	 * request body)
 	 */
 	private String json;
 
@@ -312,23 +479,56 @@ public class OpenCmsIDEConnector {
 		request = pageContext.getRequest();
 		out = pageContext.getOut();
 
-		CmsFlexController flexController = CmsFlexController.getController(pageContext.getRequest());
-		cmsObject = flexController.getCmsObject();
-		cmsObject.getRequestContext().setSiteRoot("/");
+		action = request.getParameter("action");
+		json = request.getParameter("json");
+
+		cmsObject = getSessionCmsObject(request.getParameter("token"));
+		if (cmsObject == null) {
+			CmsFlexController flexController = CmsFlexController.getController(pageContext.getRequest());
+			cmsObject = flexController.getCmsObject();
+			cmsObject.getRequestContext().setSiteRoot("/");
+
+			String user = request.getParameter("user");
+			String password = request.getParameter("password");
+
+			login(user, password);
+		}
+
 		xmlHelper = new MetaXmlHelper(cmsObject);
 		boolean useDateVariables = "true".equals(request.getParameter("useDateVariables"));
 		xmlHelper.setUseDateVariables(useDateVariables);
 		boolean useIdVariables = "true".equals(request.getParameter("useIdVariables"));
 		xmlHelper.setUseIdVariables(useIdVariables);
+		boolean useLegacyXmlSerializer = "true".equals(request.getParameter("useLegacyXmlSerializer"));
+		xmlHelper.setUseStreamingSerializer(!useLegacyXmlSerializer);
 		jsonParser = new JSONParser();
+	}
 
-		action = request.getParameter("action");
-		json = request.getParameter("json");
-
-		String user = request.getParameter("user");
-		String password = request.getParameter("password");
-
-		login(user, password);
+	/**
+	 * Returns a copy of the CmsObject stored in the {@link SessionStore} for the given token, so the user doesn't have
+	 * to be logged in again. The copy belongs to this request, so concurrent requests using the same token don't
+	 * interfere.
+	 * @param token the token sent as request parameter "token"
+	 * @return  the CmsObject or <code>null</code> if no token was sent or the token is unknown or expired
+	 */
+	private static CmsObject getSessionCmsObject(String token) {
+		if (token == null || token.length() == 0) {
+			return null;
+		}
+		CmsObject sessionCmsObject = SessionStore.getInstance().get(token);
+		if (sessionCmsObject == null) {
+			LOG.warn("Unknown or expired token, falling back to user and password");
+			return null;
+		}
+		try {
+			CmsObject requestCmsObject = OpenCms.initCmsObject(sessionCmsObject);
+			requestCmsObject.getRequestContext().setSiteRoot("/");
+			return requestCmsObject;
+		}
+		catch (CmsException e) {
+			LOG.error("the CmsObject for the token can't be initialized", e);
+			return null;
+		}
 	}
 
 	/**
@@ -355,9 +555,12 @@ public class OpenCmsIDEConnector {
 
 	/**
 	 * Executes the action and sends the response to the response output stream. Depending on the requested action
-	 * ("moduleManifests", "resourceInfos" or "publishResources") different methods are triggered.
+	 * ("moduleManifests", "resourceInfos", "moduleManifest", "publishResources", "publishStatus", "login" or "logout")
+	 * different methods are triggered.
 	 * @see #streamModuleManifestsOrResourceInfos(boolean)
+	 * @see #streamModuleManifest()
 	 * @see #publishResources()
+	 * @see #streamPublishStatus()
 	 */
 	public void executeAction() {
 		if (ACTION_MODULEMANIFESTS.equals(action)) {
@@ -366,9 +569,22 @@ public class OpenCmsIDEConnector {
 		else if (ACTION_RESOURCEINFOS.equals(action)) {
 			streamModuleManifestsOrResourceInfos(false);
 		}
+		else if (ACTION_MODULEMANIFEST.equals(action)) {
+			streamModuleManifest();
+		}
 		else if (ACTION_PUBLISH.equals(action)) {
 			publishResources();
 		}
+		else if (ACTION_PUBLISH_STATUS.equals(action)) {
+			streamPublishStatus();
+		}
+		else if (ACTION_LOGIN.equals(action)) {
+			createSession();
+		}
+		else if (ACTION_LOGOUT.equals(action)) {
+			SessionStore.getInstance().remove(request.getParameter("token"));
+			println("success");
+		}
 	}
 
 
@@ -377,40 +593,61 @@ public class OpenCmsIDEConnector {
 	 * <code>isModuleManifest</code>) and streams it to the response output stream. For which modules or resources the
 	 * information is to be genereated is determined from the JSON array that was passed in as the request parameter
 	 * "json".
+	 * <br /><br />
+	 * The JSON response is written entry by entry as soon as each entry is generated (see {@link MetaXmlStreamer}), so
+	 * memory consumption does not depend on the number of requested resources and the client receives the first bytes
+	 * early.
 	 * @param isModuleManifest <code>true</code> if manifest stubs should be streamed, <code>false</code> if
 	 *                         resource infos should be streamed
 	 */
-	@SuppressWarnings("unchecked")
 	private void streamModuleManifestsOrResourceInfos(boolean isModuleManifest) {
-		String[] ids = getStringArrayFromJSON(json);
+		String[] ids = getRequestStringArray();
 		if (ids == null) {
 			return;
 		}
-
-		JSONArray out = new JSONArray();
-		for (String id : ids) {
-			String xml;
+		HttpServletResponse topResponse = CmsFlexController.getController(request).getTopResponse();
+		MetaXmlStreamer streamer = new MetaXmlStreamer(cmsObject, xmlHelper, getParallelism());
+		try {
 			if (isModuleManifest) {
-				try {
-					xml = xmlHelper.getModuleManifestStub(id);
-				}
-				catch (IllegalArgumentException e) {
-					LOG.error(id + " is not a valid module name");
-					continue;
-				}
+				streamer.streamModuleManifests(ids, (HttpServletRequest)request, topResponse, out);
 			}
 			else {
-				if (!cmsObject.existsResource(id)) {
-					continue;
-				}
-				xml = xmlHelper.getResourceInfo(id);
+				boolean subtree = "true".equals(request.getParameter("subtree"));
+				streamer.streamResourceInfos(ids, subtree, getSince(), (HttpServletRequest)request, topResponse, out);
 			}
-			JSONObject jsonObject = new JSONObject();
-			jsonObject.put("id", id);
-			jsonObject.put("xml", xml);
-			out.add(jsonObject);
 		}
-		println(out.toJSONString());
+		catch (IOException e) {
+			LOG.error("printing to out is not possible", e);
+		}
+	}
+
+	/**
+	 * Generates the complete module manifest for the module whose name was passed in as the only entry of the JSON
+	 * array in the request parameter "json" and streams it to the response output stream as XML.
+	 */
+	private void streamModuleManifest() {
+		String[] ids = getRequestStringArray();
+		if (ids == null) {
+			return;
+		}
+		if (ids.length != 1) {
+			LOG.error("Exactly one module name must be provided to generate a module manifest, aborting\nJSON: " + json);
+			return;
+		}
+		String moduleName = ids[0];
+		CmsFlexController.getController(request).getTopResponse().setContentType("text/xml; charset=UTF-8");
+		try {
+			xmlHelper.writeModuleManifest(moduleName, out);
+		}
+		catch (IllegalArgumentException e) {
+			LOG.error(moduleName + " is not a valid module name");
+		}
+		catch (CmsException e) {
+			LOG.error("The resources of the module " + moduleName + " can't be read", e);
+		}
+		catch (IOException e) {
+			LOG.error("printing to out is not possible", e);
+		}
 	}
 
 	/**
@@ -422,12 +659,41 @@ public class OpenCmsIDEConnector {
 
 		LOG.info("IntelliJ triggered publish. Publishing the following resources (if necessary):");
 
-		String[] resourcePaths = getStringArrayFromJSON(json);
+		String[] resourcePaths = getRequestStringArray();
 		boolean publishSubResources = "true".equals(request.getParameter("publishSubResources"));
 
+		if ("true".equals(request.getParameter("async"))) {
+			submitPublishJob(resourcePaths, publishSubResources);
+			return;
+		}
+
+		ProgressEventWriter events = null;
+		if ("true".equals(request.getParameter("events"))) {
+			events = new ProgressEventWriter(out, OBJECT_MAPPER);
+		}
+		try {
+			publishResources(resourcePaths, publishSubResources, events);
+		}
+		finally {
+			if (events != null) {
+				// the publish thread may still write to the report if waiting for the job timed out or was interrupted
+				events.close();
+			}
+		}
+	}
+
+	/**
+	 * Internal helper publishing the given resources and writing the response for the action "publishResources".
+	 * @param resourcePaths         the root paths of the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 * @param events                the writer for the progress events or <code>null</code> if the plain text response
+	 *                              is to be written
+	 */
+	private void publishResources(String[] resourcePaths, boolean publishSubResources, ProgressEventWriter events) {
 		List<CmsResource> publishResources = new ArrayList<CmsResource>(resourcePaths.length);
 		boolean hasWarnings = false;
 		StringBuilder warnings = new StringBuilder();
+		long start = System.currentTimeMillis();
 
 		for (String resourcePath : resourcePaths) {
 			if (cmsObject.existsResource(resourcePath, CmsResourceFilter.ALL)) {
@@ -447,41 +713,56 @@ public class OpenCmsIDEConnector {
 			}
 		}
 		if (publishResources.size() > 0) {
-			publish: {
-				CmsPublishManager publishManager = OpenCms.getPublishManager();
-				CmsPublishList publishList;
-				try {
-					publishList = publishManager.getPublishList(cmsObject, publishResources, false, publishSubResources);
-				}
-				catch (CmsException e) {
-					String message = "Error retrieving CmsPublishList from OpenCms";
-					warnings.append(message).append("\n");
-					LOG.warn(message, e);
-					hasWarnings = true;
-					break publish;
-				}
-				I_CmsReport report = new CmsLogReport(Locale.ENGLISH, OpenCmsIDEConnector.class);
-				try {
-					List<CmsResource> resources = publishList.getAllResources();
-					for (CmsResource resource : resources) {
-						if (resource.getState().isDeleted()) {
-							LOG.info("DELETED resource " + resource.getRootPath() + " will be published");
-						}
-						else {
-							LOG.info("Resource " + resource.getRootPath() + " will be published");
-						}
-					}
-					publishManager.publishProject(cmsObject, report, publishList);
-				}
-				catch (CmsException e) {
-					String message = "Error publishing the resources: " + e.getMessage();
-					warnings.append(message).append("\n");
-					LOG.warn(message, e);
-					hasWarnings = true;
+			// the publish report is only needed for events, otherwise the coalescer logs the report
+			I_CmsReport report = null;
+			if (events != null) {
+				report = new ProgressEventReport(events, null, Locale.ENGLISH);
+				ProgressEventImpl event = ProgressEventWriter.createEvent(ProgressEvent.TYPE_PUBLISH_STARTED, null, null);
+				event.setTotal(publishResources.size());
+				events.write(event);
+				events.flush();
+			}
+			String error = null;
+			try {
+				CmsPublishList publishList = PublishCoalescer.getInstance().publish(cmsObject, publishResources, publishSubResources, report).get();
+				// the report is written by the publish thread, so the events are only complete after the job
+				if (events != null && !waitForPublishJob(publishList.getPublishHistoryId())) {
+					error = "Timed out waiting for the publish job, the resources are published in the background";
+					LOG.warn(error);
 				}
 			}
+			catch (CmsException e) {
+				error = "Error publishing the resources: " + e.getMessage();
+				LOG.warn(error, e);
+			}
+			catch (ExecutionException e) {
+				error = "Error publishing the resources: " + e.getCause().getMessage();
+				LOG.warn(error, e.getCause());
+			}
+			catch (CancellationException e) {
+				error = "The publish was cancelled";
+				LOG.warn(error);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error = "Interrupted while waiting for the publish";
+				LOG.warn(error);
+			}
+			if (error != null) {
+				warnings.append(error).append("\n");
+				hasWarnings = true;
+			}
 		}
-		if (!hasWarnings) {
+		if (events != null) {
+			if (hasWarnings) {
+				events.write(ProgressEvent.TYPE_WARNING, null, warnings.toString().trim());
+			}
+			ProgressEventImpl event = ProgressEventWriter.createEvent(ProgressEvent.TYPE_PUBLISH_FINISHED, null, hasWarnings ? "WARNINGS" : "OK");
+			event.setDurationMillis(System.currentTimeMillis() - start);
+			events.write(event);
+			events.flush();
+		}
+		else if (!hasWarnings) {
 			println("OK");
 		}
 		else {
@@ -489,6 +770,190 @@ public class OpenCmsIDEConnector {
 		}
 	}
 
+	/**
+	 * Stores a copy of the logged in CmsObject (with the Offline project selected) in the {@link SessionStore} for the
+	 * action "login" and writes the JSON login status containing the token to the response.
+	 */
+	private void createSession() {
+		LoginStatus status = new LoginStatusImpl();
+		if (cmsObject.getRequestContext().getCurrentUser().isGuestUser()) {
+			status.setLoggedIn(false);
+			status.setMessage("ERROR logging in to OpenCms, see the OpenCms log file for details.");
+			printJson(status);
+			return;
+		}
+		CmsObject sessionCmsObject;
+		try {
+			sessionCmsObject = OpenCms.initCmsObject(cmsObject);
+		}
+		catch (CmsException e) {
+			String message = "ERROR initializing the CmsObject for the session: ";
+			LOG.error(message, e);
+			status.setLoggedIn(false);
+			status.setMessage(message + e.getMessage() + ".\n StackTrace available in the OpenCms log file.");
+			printJson(status);
+			return;
+		}
+		String token = (new CmsUUID()).getStringValue();
+		SessionStore.getInstance().put(token, sessionCmsObject);
+		String userName = cmsObject.getRequestContext().getCurrentUser().getName();
+		status.setLoggedIn(true);
+		status.setMessage("User " + userName + " logged in successfully.");
+		status.setToken(token);
+		printJson(status);
+	}
+
+	/**
+	 * Waits until the publish job with the given publish history id has finished, at most for the time configured in
+	 * the module parameter {@link ModuleParameters#PARAM_PUBLISH_WAIT_TIMEOUT} (e.g. if the publish engine is paused).
+	 * The job is looked up in the OpenCms publish manager (like {@link PublishJob} does), so other publish jobs running
+	 * before or after it are not waited for.
+	 * @param publishHistoryId  the publish history id of the job's publish list
+	 * @return  <code>true</code> if the job has finished, <code>false</code> if the timeout has expired
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private static boolean waitForPublishJob(CmsUUID publishHistoryId) throws InterruptedException {
+		int timeout = ModuleParameters.getIntParameter(ModuleParameters.PARAM_PUBLISH_WAIT_TIMEOUT, ModuleParameters.DEFAULT_PUBLISH_WAIT_TIMEOUT);
+		long deadline = System.currentTimeMillis() + Math.max(0, timeout) * 1000L;
+		while (true) {
+			CmsPublishJobBase publishJob = OpenCms.getPublishManager().getJobByPublishHistoryId(publishHistoryId);
+			// null if the job was aborted or has been removed from the publish history already
+			if (publishJob == null || publishJob instanceof CmsPublishJobFinished) {
+				return true;
+			}
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(PUBLISH_POLL_INTERVAL_MILLIS);
+		}
+	}
+
+	/**
+	 * Submits an asynchronous publish job for the action "publishResources" with the parameter "async" and writes the
+	 * job's JSON status (containing the job id) to the response.
+	 * @param resourcePaths         the root paths of the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 * @see PublishJobManager
+	 */
+	private void submitPublishJob(String[] resourcePaths, boolean publishSubResources) {
+		PublishJob job;
+		try {
+			job = PublishJobManager.getInstance().submit(cmsObject, resourcePaths, publishSubResources);
+		}
+		catch (CmsException e) {
+			String message = "Error submitting the publish job: " + e.getMessage();
+			LOG.warn(message, e);
+			println(message);
+			return;
+		}
+		LOG.info("IntelliJ submitted publish job " + job.getId() + " for " + resourcePaths.length + " resources");
+		printJson(job.getStatus(0));
+	}
+
+	/**
+	 * Writes the JSON status of the asynchronous publish job with the id provided as request parameter "jobId" to the
+	 * response, including the publish report starting at the offset provided as request parameter "offset".
+	 */
+	private void streamPublishStatus() {
+		String jobId = request.getParameter("jobId");
+		PublishJob job = PublishJobManager.getInstance().get(jobId);
+		if (job == null || !job.getUserName().equals(cmsObject.getRequestContext().getCurrentUser().getName())) {
+			println("Unknown publish job " + jobId);
+			return;
+		}
+		long offset = 0;
+		String offsetParam = request.getParameter("offset");
+		if (offsetParam != null && offsetParam.length() > 0) {
+			try {
+				offset = Long.parseLong(offsetParam);
+			}
+			catch (NumberFormatException e) {
+				LOG.error("Invalid value for parameter offset, the report is returned from the start: " + offsetParam);
+			}
+		}
+		printJson(job.getStatus(offset));
+	}
+
+	/**
+	 * Internal helper returning the "since" cursor provided as request parameter "since".
+	 * @return  the "since" cursor (milliseconds since the epoch) or {@link MetaXmlStreamer#NO_SINCE} if the parameter
+	 *          was not provided or is not a valid number
+	 */
+	private long getSince() {
+		String since = request.getParameter("since");
+		if (since == null || since.length() == 0) {
+			return MetaXmlStreamer.NO_SINCE;
+		}
+		try {
+			return Long.parseLong(since);
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for parameter since, all resources are returned: " + since);
+			return MetaXmlStreamer.NO_SINCE;
+		}
+	}
+
+	/**
+	 * Internal helper returning the number of worker threads requested by the request parameter "parallelism", the
+	 * {@link MetaXmlStreamer} caps it by the module parameter "maxParallelism" and by the number of entries.
+	 * @return  the requested number of worker threads, <code>1</code> if the entries should be generated sequentially
+	 */
+	private int getParallelism() {
+		String parallelism = request.getParameter("parallelism");
+		if (parallelism == null || parallelism.length() == 0) {
+			return 1;
+		}
+		try {
+			return Math.max(1, Integer.parseInt(parallelism));
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for parameter parallelism, entries are generated sequentially: " + parallelism);
+			return 1;
+		}
+	}
+
+	/**
+	 * Internal helper returning the incoming data of the request as String array. The data is read from the request
+	 * body if it is sent with the content type <code>application/json</code>, otherwise it is parsed from the request
+	 * parameter "json".
+	 * @return  the String array or <code>null</code> if the data can't be read or parsed
+	 */
+	private String[] getRequestStringArray() {
+		String contentType = request.getContentType();
+		if (contentType != null && contentType.toLowerCase().startsWith(IDEConnectorConst.CONTENT_TYPE_JSON)) {
+			return getStringArrayFromJSONBody();
+		}
+		return getStringArrayFromJSON(json);
+	}
+
+	/**
+	 * Internal helper parsing the JSON array of Strings sent as request body. The body is parsed incrementally while it
+	 * is read, so only the resulting Strings are held in memory.
+	 * @return  the String array or <code>null</code> if the body can't be read or isn't a JSON array of Strings
+	 */
+	private String[] getStringArrayFromJSONBody() {
+		try (JsonParser parser = JSON_FACTORY.createParser(request.getInputStream())) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				LOG.error("The JSON request body is not an array, aborting");
+				return null;
+			}
+			List<String> values = new ArrayList<String>();
+			JsonToken token;
+			while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+				if (token != JsonToken.VALUE_STRING) {
+					LOG.error("The JSON request body contains a value that is not a String, aborting: " + token);
+					return null;
+				}
+				values.add(parser.getText());
+			}
+			return values.toArray(new String[values.size()]);
+		}
+		catch (IOException e) {
+			LOG.error("Exception reading the JSON request body, aborting", e);
+			return null;
+		}
+	}
+
 	/**
 	 * Internal helper method used to convert a JSON array of Strings to a String array.
 	 * @param json  JSON array of Strings
@@ -516,6 +981,20 @@ public class OpenCmsIDEConnector {
 		return arr;
 	}
 	
+	/**
+	 * Internal helper writing the given object as JSON to the response output stream.
+	 * @param value the object to be serialized
+	 */
+	private void printJson(Object value) {
+		try {
+			OBJECT_MAPPER.writeValue(out, value);
+			out.println();
+		}
+		catch (IOException e) {
+			LOG.error("printing to out is not possible", e);
+		}
+	}
+
 	/**
 	 * Internal helper method streaming the given String to the response output stream.
 	 * @param str   The string to be written to the response output stream.
@@ -0,0 +1,323 @@
+package com.mediaworx.opencms.ideconnector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the entries for the actions "moduleManifests" and "resourceInfos" in parallel and returns them in request
+ * order.
+ * <br /><br />
+ * The work is done by a pool of worker threads shared by all requests. The size of the pool is limited by the module
+ * parameter {@link ModuleParameters#PARAM_MAX_PARALLELISM}, so parallel generation can't use up all the CPUs of the
+ * OpenCms instance and starve the live site. Each worker of a request uses its own copy of the request's CmsObject
+ * (created with <code>OpenCms.initCmsObject(cms)</code>) and its own {@link MetaXmlHelper}, since neither is thread
+ * safe.
+ * <br /><br />
+ * The workers pick the next item to process from a shared counter, so the items are processed roughly in request
+ * order. A worker generates one entry per run and then resubmits itself to the end of the pool's queue, so the pool
+ * threads are shared round robin by the workers of all requests and a large request can't starve the others. The
+ * number of generated entries that were not yet consumed by the request thread is limited, so memory consumption
+ * doesn't depend on the number of requested items even if writing the response is slower than generating the entries.
+ * If that limit is reached the worker is parked without occupying a pool thread and is resubmitted when the request
+ * thread consumes the next entry, so a slow client doesn't block the pool for other requests.
+ * <br /><br />
+ * If generating an entry fails, the exception is thrown by {@link #next()} for that entry, just like generating the
+ * entries sequentially in the request thread would.
+ *
+ * @param <T> type of the requested items
+ */
+public class ParallelMetaXmlGenerator<T> {
+
+	private static final Log LOG = LogFactory.getLog(ParallelMetaXmlGenerator.class);
+
+	/** Number of entries each worker may generate ahead of the entry currently consumed by the request thread */
+	private static final int WINDOW_PER_WORKER = 16;
+
+	private static ThreadPoolExecutor executor;
+
+	private final List<T> items;
+	private final MetaXmlEntryGenerator<T> generator;
+
+	private final Object lock = new Object();
+	private final MetaXmlEntry[] entries;
+	private final RuntimeException[] failures;
+	private final boolean[] generated;
+	private final Deque<Worker> parkedWorkers = new ArrayDeque<>();
+	private int windowSize;
+	private int numActiveWorkers;
+	private int nextItem = 0;
+	private int nextEntry = 0;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a new parallel generator for the given items.
+	 * @param items     the requested items
+	 * @param generator the generator used to create the entry for each item
+	 */
+	public ParallelMetaXmlGenerator(List<T> items, MetaXmlEntryGenerator<T> generator) {
+		this.items = items;
+		this.generator = generator;
+		entries = new MetaXmlEntry[items.size()];
+		failures = new RuntimeException[items.size()];
+		generated = new boolean[items.size()];
+	}
+
+	/**
+	 * @return the maximum number of worker threads as configured in the module parameter
+	 *         {@link ModuleParameters#PARAM_MAX_PARALLELISM} (at least 1)
+	 */
+	public static int getMaxParallelism() {
+		int maxParallelism = ModuleParameters.getIntParameter(ModuleParameters.PARAM_MAX_PARALLELISM, ModuleParameters.DEFAULT_MAX_PARALLELISM);
+		return Math.max(1, maxParallelism);
+	}
+
+	/**
+	 * Stops the shared worker pool, running workers are interrupted and queued workers are terminated. Called when the
+	 * {@link com.mediaworx.opencms.ideconnector.service.IDEConnectorService} is taken out of service. A new pool is
+	 * created on the next access.
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			LOG.info("Shutting down the meta xml worker pool, " + executor.getActiveCount() + " active workers");
+			List<Runnable> queuedWorkers = executor.shutdownNow();
+			for (Runnable queuedWorker : queuedWorkers) {
+				((ParallelMetaXmlGenerator<?>.Worker)queuedWorker).terminate();
+			}
+			executor = null;
+		}
+	}
+
+	/**
+	 * Starts the generation of the entries.
+	 * @param cmsObject     the request's CmsObject, each worker gets its own copy
+	 * @param xmlHelper     the request's MetaXmlHelper, each worker gets its own helper with the same settings
+	 * @param parallelism   the number of workers to be used for this request
+	 * @throws CmsException if the CmsObjects for the workers can't be initialized, in that case no worker is started
+	 */
+	public void start(CmsObject cmsObject, MetaXmlHelper xmlHelper, int parallelism) throws CmsException {
+		List<Worker> workers = new ArrayList<>(parallelism);
+		for (int i = 0; i < parallelism; i++) {
+			CmsObject workerCmsObject = OpenCms.initCmsObject(cmsObject);
+			workers.add(new Worker(workerCmsObject, xmlHelper.createCopy(workerCmsObject)));
+		}
+		synchronized (lock) {
+			windowSize = parallelism * WINDOW_PER_WORKER;
+			numActiveWorkers = parallelism;
+		}
+		for (Worker worker : workers) {
+			submit(worker);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if there are entries that have not been returned by {@link #next()} yet
+	 */
+	public boolean hasNext() {
+		return nextEntry < entries.length;
+	}
+
+	/**
+	 * Returns the next entry in request order, waits until the entry is generated if necessary.
+	 * @return  the next entry or <code>null</code> if no entry is to be returned for the next item
+	 * @throws InterruptedException if the request thread is interrupted while waiting for the entry
+	 * @throws RuntimeException the exception thrown by the {@link MetaXmlEntryGenerator} for the next item
+	 */
+	public MetaXmlEntry next() throws InterruptedException {
+		MetaXmlEntry entry;
+		RuntimeException failure;
+		Worker resumedWorker;
+		synchronized (lock) {
+			while (!generated[nextEntry]) {
+				if (numActiveWorkers == 0) {
+					throw new IllegalStateException("All workers terminated before the entry for " + items.get(nextEntry) + " was generated");
+				}
+				lock.wait();
+			}
+			entry = entries[nextEntry];
+			failure = failures[nextEntry];
+			entries[nextEntry] = null;
+			failures[nextEntry] = null;
+			nextEntry++;
+			// consuming an entry makes room for exactly one more entry
+			resumedWorker = parkedWorkers.poll();
+		}
+		if (resumedWorker != null) {
+			submit(resumedWorker);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stops the workers of this generator, must be called if the request thread stops consuming entries before all
+	 * entries are returned (e.g. because the client disconnected). Calling it after all entries are returned does no
+	 * harm.
+	 */
+	public void cancel() {
+		cancelled = true;
+		synchronized (lock) {
+			numActiveWorkers -= parkedWorkers.size();
+			parkedWorkers.clear();
+		}
+	}
+
+	/**
+	 * Returns the shared worker pool, the pool's size is adjusted if the module parameter
+	 * {@link ModuleParameters#PARAM_MAX_PARALLELISM} was changed.
+	 * @return  the shared worker pool
+	 */
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		int maxParallelism = getMaxParallelism();
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(maxParallelism, maxParallelism, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+			executor.allowCoreThreadTimeOut(true);
+		}
+		else if (executor.getMaximumPoolSize() < maxParallelism) {
+			executor.setMaximumPoolSize(maxParallelism);
+			executor.setCorePoolSize(maxParallelism);
+		}
+		else if (executor.getMaximumPoolSize() > maxParallelism) {
+			executor.setCorePoolSize(maxParallelism);
+			executor.setMaximumPoolSize(maxParallelism);
+		}
+		return executor;
+	}
+
+	/**
+	 * Submits the given worker to the shared pool, the worker is terminated if the pool has been shut down.
+	 * @param worker    the worker
+	 */
+	private void submit(Worker worker) {
+		try {
+			getExecutor().execute(worker);
+		}
+		catch (RejectedExecutionException e) {
+			LOG.warn("The meta xml worker pool has been shut down, terminating worker");
+			workerTerminated();
+		}
+	}
+
+	/**
+	 * Returns the index of the next item to be processed by the given worker.
+	 * @param worker    the worker
+	 * @return  the index of the next item, or -1 if the worker is parked because the window of unconsumed entries is
+	 *          full or if the worker is terminated because all items are processed or the generator is cancelled
+	 */
+	private int claimNextItem(Worker worker) {
+		synchronized (lock) {
+			if (cancelled || nextItem >= items.size()) {
+				numActiveWorkers--;
+				lock.notifyAll();
+				return -1;
+			}
+			if (nextItem - nextEntry >= windowSize) {
+				parkedWorkers.add(worker);
+				return -1;
+			}
+			return nextItem++;
+		}
+	}
+
+	private void entryGenerated(int index, MetaXmlEntry entry, RuntimeException failure) {
+		synchronized (lock) {
+			entries[index] = entry;
+			failures[index] = failure;
+			generated[index] = true;
+			lock.notifyAll();
+		}
+	}
+
+	private void workerTerminated() {
+		synchronized (lock) {
+			numActiveWorkers--;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Worker generating one entry per run, the worker resubmits itself until all items are processed or the generator
+	 * is cancelled.
+	 */
+	private class Worker implements Runnable {
+
+		private final CmsObject cmsObject;
+		private final MetaXmlHelper xmlHelper;
+
+		Worker(CmsObject cmsObject, MetaXmlHelper xmlHelper) {
+			this.cmsObject = cmsObject;
+			this.xmlHelper = xmlHelper;
+		}
+
+		@Override
+		public void run() {
+			int index = claimNextItem(this);
+			if (index < 0) {
+				return;
+			}
+			boolean done = false;
+			try {
+				MetaXmlEntry entry = null;
+				RuntimeException failure = null;
+				try {
+					entry = generator.generate(items.get(index), cmsObject, xmlHelper);
+				}
+				catch (RuntimeException e) {
+					failure = e;
+				}
+				entryGenerated(index, entry, failure);
+				done = true;
+			}
+			finally {
+				if (done) {
+					submit(this);
+				}
+				else {
+					workerTerminated();
+				}
+			}
+		}
+
+		/**
+		 * Terminates the worker without running it, used for workers dropped from the queue of the shared pool.
+		 */
+		void terminate() {
+			workerTerminated();
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for the shared worker pool, so the pool doesn't prevent the servlet container from
+	 * shutting down.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		WorkerThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-MetaXml-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
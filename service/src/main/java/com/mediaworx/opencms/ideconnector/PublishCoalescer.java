@@ -0,0 +1,221 @@
+package com.mediaworx.opencms.ideconnector;
+
+import com.mediaworx.opencms.ideconnector.report.MultiplexReport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.db.CmsPublishList;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.publish.CmsPublishManager;
+import org.opencms.report.CmsLogReport;
+import org.opencms.report.I_CmsReport;
+import org.opencms.util.CmsUUID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges publish requests of the {@link OpenCmsIDEConnector}, so several developers saving and publishing in quick
+ * succession don't flood the OpenCms publish queue with many small, overlapping publish jobs.
+ * <br /><br />
+ * If the module parameter {@link ModuleParameters#PARAM_PUBLISH_COALESCE_WINDOW} is set to a number of milliseconds
+ * greater than 0, the first publish request opens a batch that is published when the window has passed. All publish
+ * requests of the same user in the same project (and with the same "publishSubResources" flag) arriving within the
+ * window are added to that batch. The batch is published as one publish job with a deduplicated publish list, the
+ * publish report is forwarded to the reports of all requests. Each request gets its own future, completed with the
+ * batch's publish list as soon as the job is enqueued.
+ * <br /><br />
+ * If the window is 0 (the default), every request is published immediately in the calling thread.
+ */
+public class PublishCoalescer {
+
+	private static final Log LOG = LogFactory.getLog(PublishCoalescer.class);
+
+	private static PublishCoalescer instance;
+
+	private final long windowMillis;
+	private final Map<String, Batch> openBatches = new HashMap<>();
+	private final ScheduledExecutorService scheduler;
+
+	private PublishCoalescer(long windowMillis) {
+		this.windowMillis = windowMillis;
+		scheduler = windowMillis > 0 ? Executors.newSingleThreadScheduledExecutor(new PublishCoalescerThreadFactory()) : null;
+	}
+
+	/**
+	 * Returns the shared coalescer, on first access the coalescer is created with the window configured in the module
+	 * parameters.
+	 * @return the shared coalescer
+	 */
+	public static synchronized PublishCoalescer getInstance() {
+		if (instance == null) {
+			int windowMillis = ModuleParameters.getIntParameter(ModuleParameters.PARAM_PUBLISH_COALESCE_WINDOW, ModuleParameters.DEFAULT_PUBLISH_COALESCE_WINDOW);
+			instance = new PublishCoalescer(Math.max(0, windowMillis));
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops the scheduler of the shared coalescer, batches that haven't been published yet are cancelled.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			if (instance.scheduler != null) {
+				instance.scheduler.shutdownNow();
+			}
+			synchronized (instance.openBatches) {
+				for (Batch batch : instance.openBatches.values()) {
+					batch.task.cancel(false);
+				}
+				instance.openBatches.clear();
+			}
+			instance = null;
+		}
+	}
+
+	/**
+	 * Publishes the given resources, either immediately or together with other requests arriving within the window.
+	 * @param cmsObject             the CmsObject of the request
+	 * @param resources             the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 * @param report                the report the publish is reported to (<code>null</code> if the report should only
+	 *                              be logged)
+	 * @return  the future completed with the (possibly merged) publish list as soon as the publish job is enqueued,
+	 *          failing with the CmsException thrown while building or enqueuing the publish list
+	 * @throws CmsException if the CmsObject can't be copied for the batch
+	 */
+	public Future<CmsPublishList> publish(CmsObject cmsObject, List<CmsResource> resources, boolean publishSubResources, I_CmsReport report) throws CmsException {
+		if (scheduler == null) {
+			Batch batch = new Batch(null, cmsObject, publishSubResources);
+			batch.add(resources, report);
+			batch.task.run();
+			return batch.task;
+		}
+		String key = cmsObject.getRequestContext().getCurrentUser().getName() + "|"
+				+ cmsObject.getRequestContext().getCurrentProject().getUuid() + "|" + publishSubResources;
+		synchronized (openBatches) {
+			Batch batch = openBatches.get(key);
+			if (batch == null) {
+				batch = new Batch(key, OpenCms.initCmsObject(cmsObject), publishSubResources);
+				openBatches.put(key, batch);
+				scheduler.schedule(batch.task, windowMillis, TimeUnit.MILLISECONDS);
+			}
+			batch.add(resources, report);
+			return batch.task;
+		}
+	}
+
+	/**
+	 * @return the coalescing window in milliseconds, 0 if requests are not coalesced
+	 */
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	@Override
+	public String toString() {
+		synchronized (openBatches) {
+			return getClass().getSimpleName() + "{windowMillis=" + windowMillis + ", openBatches=" + openBatches.size() + "}";
+		}
+	}
+
+	/**
+	 * The publish requests merged into one publish job. Modified only while holding the lock of the open batches.
+	 */
+	private class Batch implements Callable<CmsPublishList> {
+
+		private final String key;
+		private final CmsObject cmsObject;
+		private final boolean publishSubResources;
+		private final Map<CmsUUID, CmsResource> resources = new LinkedHashMap<>();
+		private final List<I_CmsReport> reports = new ArrayList<>();
+		private int numRequests = 0;
+		final FutureTask<CmsPublishList> task = new FutureTask<>(this);
+
+		Batch(String key, CmsObject cmsObject, boolean publishSubResources) {
+			this.key = key;
+			this.cmsObject = cmsObject;
+			this.publishSubResources = publishSubResources;
+		}
+
+		void add(List<CmsResource> requestResources, I_CmsReport report) {
+			for (CmsResource resource : requestResources) {
+				resources.put(resource.getStructureId(), resource);
+			}
+			if (report != null) {
+				reports.add(report);
+			}
+			numRequests++;
+		}
+
+		/**
+		 * Closes the batch for further requests and publishes it.
+		 */
+		@Override
+		public CmsPublishList call() throws CmsException {
+			List<CmsResource> publishResources;
+			I_CmsReport report;
+			synchronized (openBatches) {
+				if (key != null) {
+					openBatches.remove(key);
+				}
+				publishResources = new ArrayList<>(resources.values());
+				if (reports.isEmpty()) {
+					report = new CmsLogReport(Locale.ENGLISH, OpenCmsIDEConnector.class);
+				}
+				else if (reports.size() == 1) {
+					report = reports.get(0);
+				}
+				else {
+					report = new MultiplexReport(new ArrayList<>(reports), Locale.ENGLISH);
+				}
+			}
+			CmsPublishManager publishManager = OpenCms.getPublishManager();
+			CmsPublishList publishList = publishManager.getPublishList(cmsObject, publishResources, false, publishSubResources);
+			if (LOG.isInfoEnabled()) {
+				if (numRequests > 1) {
+					LOG.info("Coalesced " + numRequests + " publish requests with " + publishResources.size() + " resources");
+				}
+				for (CmsResource resource : publishList.getAllResources()) {
+					if (resource.getState().isDeleted()) {
+						LOG.info("DELETED resource " + resource.getRootPath() + " will be published");
+					}
+					else {
+						LOG.info("Resource " + resource.getRootPath() + " will be published");
+					}
+				}
+			}
+			publishManager.publishProject(cmsObject, report, publishList);
+			return publishList;
+		}
+	}
+
+	/**
+	 * Creates the named daemon thread publishing the batches.
+	 */
+	private static class PublishCoalescerThreadFactory implements ThreadFactory {
+
+		PublishCoalescerThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-PublishCoalescer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package com.mediaworx.opencms.ideconnector;
+
+import com.mediaworx.opencms.ideconnector.data.PublishJobStatus;
+import com.mediaworx.opencms.ideconnector.dataimpl.PublishJobStatusImpl;
+import com.mediaworx.opencms.ideconnector.report.JobLog;
+import org.apache.commons.io.output.WriterOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.db.CmsPublishList;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.publish.CmsPublishJobBase;
+import org.opencms.publish.CmsPublishJobEnqueued;
+import org.opencms.publish.CmsPublishJobFinished;
+import org.opencms.publish.CmsPublishJobRunning;
+import org.opencms.report.CmsPrintStreamReport;
+import org.opencms.report.I_CmsReport;
+import org.opencms.util.CmsUUID;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An asynchronous direct publish of VFS resources, run by the {@link PublishJobManager} for the action
+ * "publishResources" of the {@link OpenCmsIDEConnector} and the service "publish" of the
+ * {@link com.mediaworx.opencms.ideconnector.service.IDEConnectorService}.
+ * <br /><br />
+ * The job builds the publish list in a background thread and enqueues it in the OpenCms publish queue (through the
+ * {@link PublishCoalescer}, so the job may be merged with other publish requests). The publish
+ * report written by the OpenCms publish thread is kept in a {@link JobLog}, so clients can poll the job's status and
+ * tail the report while the job is running and for a while after it has finished. The job's state is taken from the
+ * OpenCms publish manager (queued, running or finished), a job is failed if the publish report contains errors.
+ */
+public class PublishJob implements Runnable {
+
+	private static final Log LOG = LogFactory.getLog(PublishJob.class);
+
+	private final String id;
+	private final String userName;
+	private final CmsObject cmsObject;
+	private final String[] resourcePaths;
+	private final boolean publishSubResources;
+
+	private final JobLog log = new JobLog();
+	private final PrintStream logStream;
+	private final CmsPrintStreamReport report;
+
+	private volatile String state = PublishJobStatus.STATE_QUEUED;
+	private final long dateSubmitted;
+	private volatile long dateStarted;
+	private volatile long dateFinished;
+	private volatile int numResources;
+	private volatile Future<CmsPublishList> publish;
+	private volatile CmsUUID publishHistoryId;
+	private volatile String message;
+
+	/**
+	 * Creates a new job.
+	 * @param id                    the job's id
+	 * @param cmsObject             the CmsObject used for the publish (a copy owned by the job)
+	 * @param resourcePaths         the root paths of the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 */
+	PublishJob(String id, CmsObject cmsObject, String[] resourcePaths, boolean publishSubResources) {
+		this.id = id;
+		this.userName = cmsObject.getRequestContext().getCurrentUser().getName();
+		this.cmsObject = cmsObject;
+		this.resourcePaths = resourcePaths;
+		this.publishSubResources = publishSubResources;
+		// the print stream and the WriterOutputStream use the same (default) charset
+		logStream = new PrintStream(new WriterOutputStream(log, Charset.defaultCharset()), true);
+		report = new CmsPrintStreamReport(logStream, Locale.ENGLISH, false);
+		dateSubmitted = System.currentTimeMillis();
+	}
+
+	/**
+	 * Builds the publish list and enqueues the publish job, exceptions are logged, so the job never throws exceptions.
+	 */
+	@Override
+	public void run() {
+		try {
+			List<CmsResource> publishResources = new ArrayList<>(resourcePaths.length);
+			for (String resourcePath : resourcePaths) {
+				if (cmsObject.existsResource(resourcePath, CmsResourceFilter.ALL)) {
+					try {
+						publishResources.add(cmsObject.readResource(resourcePath, CmsResourceFilter.ALL));
+					}
+					catch (CmsException e) {
+						String warning = resourcePath + " could not be read from the VFS";
+						LOG.warn(warning, e);
+						// the report records the warning
+						report.print(warning, I_CmsReport.FORMAT_WARNING);
+						report.println();
+					}
+				}
+			}
+			if (publishResources.isEmpty()) {
+				finish("There are no resources to be published");
+				return;
+			}
+			// not waiting for the future, so the thread is free for further jobs that may be merged into the same batch
+			publish = PublishCoalescer.getInstance().publish(cmsObject, publishResources, publishSubResources, report);
+		}
+		catch (CmsException | RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Marks the job as failed because it was aborted (by a user in the OpenCms workplace or because the server is shut
+	 * down).
+	 */
+	void cancel() {
+		message = "The publish job was aborted";
+		fail();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the id of the OpenCms publish job (the publish history id) or <code>null</code> if the job hasn't been
+	 *         enqueued in the OpenCms publish queue yet
+	 */
+	CmsUUID getPublishHistoryId() {
+		updateState();
+		return publishHistoryId;
+	}
+
+	/**
+	 * @return the name of the user who submitted the job, only this user may access the job
+	 */
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * @param now       the current time
+	 * @param retention the time finished jobs are kept (in milliseconds)
+	 * @return  <code>true</code> if the job has finished longer than the retention time ago
+	 */
+	boolean isExpired(long now, long retention) {
+		updateState();
+		return dateFinished > 0 && now - dateFinished > retention;
+	}
+
+	/**
+	 * Returns the job's status including the publish report starting at the given offset.
+	 * @param logOffset the offset of the first log character to be returned
+	 * @return  the job's status
+	 */
+	public PublishJobStatus getStatus(long logOffset) {
+		updateState();
+		PublishJobStatusImpl status = new PublishJobStatusImpl();
+		status.setJobId(id);
+		status.setState(state);
+		status.setDateSubmitted(dateSubmitted);
+		status.setDateStarted(dateStarted);
+		status.setDateFinished(dateFinished);
+		if (dateStarted > 0) {
+			status.setDurationMillis((dateFinished > 0 ? dateFinished : System.currentTimeMillis()) - dateStarted);
+		}
+		status.setNumResources(numResources);
+		status.setNumWarnings(report.getWarnings().size());
+		status.setNumErrors(report.getErrors().size());
+		status.setMessage(message);
+		logStream.flush();
+		JobLog.Tail tail = log.getTail(logOffset);
+		status.setLogOffset(tail.getOffset());
+		status.setLog(tail.getLog());
+		status.setNextLogOffset(tail.getNextOffset());
+		return status;
+	}
+
+	/**
+	 * Takes the job's state from the OpenCms publish manager, as long as the job isn't finished.
+	 */
+	private synchronized void updateState() {
+		if (dateFinished > 0) {
+			return;
+		}
+		if (publishHistoryId == null) {
+			if (publish == null || !publish.isDone()) {
+				return;
+			}
+			try {
+				CmsPublishList publishList = publish.get();
+				numResources = publishList.size();
+				publishHistoryId = publishList.getPublishHistoryId();
+			}
+			catch (ExecutionException e) {
+				fail(e.getCause());
+				return;
+			}
+			catch (CancellationException | InterruptedException e) {
+				cancel();
+				return;
+			}
+		}
+		CmsPublishJobBase publishJob = OpenCms.getPublishManager().getJobByPublishHistoryId(publishHistoryId);
+		if (publishJob instanceof CmsPublishJobRunning) {
+			dateStarted = ((CmsPublishJobRunning)publishJob).getStartTime();
+			state = PublishJobStatus.STATE_RUNNING;
+		}
+		else if (publishJob instanceof CmsPublishJobFinished) {
+			CmsPublishJobFinished finishedJob = (CmsPublishJobFinished)publishJob;
+			dateStarted = finishedJob.getStartTime();
+			finish(null);
+			dateFinished = finishedJob.getFinishTime();
+		}
+		else if (publishJob == null) {
+			// neither queued nor running nor in the publish history, so the job was aborted or has been removed from
+			// the publish history already
+			if (dateStarted > 0) {
+				finish(null);
+			}
+			else {
+				cancel();
+			}
+		}
+		else if (!(publishJob instanceof CmsPublishJobEnqueued)) {
+			LOG.warn("Unknown state of publish job " + id + ": " + publishJob.getClass().getName());
+		}
+	}
+
+	/**
+	 * Marks the job as finished, or as failed if the publish report contains errors.
+	 */
+	private synchronized void finish(String message) {
+		if (message != null) {
+			this.message = message;
+		}
+		if (dateStarted == 0) {
+			dateStarted = System.currentTimeMillis();
+		}
+		dateFinished = System.currentTimeMillis();
+		if (report.hasError()) {
+			if (this.message == null) {
+				this.message = "The publish report contains " + report.getErrors().size() + " error(s)";
+			}
+			state = PublishJobStatus.STATE_FAILED;
+		}
+		else {
+			state = PublishJobStatus.STATE_FINISHED;
+		}
+	}
+
+	private void fail(Throwable t) {
+		LOG.error("Error publishing the resources of publish job " + id, t);
+		report.println(t);
+		message = "Error publishing the resources: " + t.getMessage();
+		fail();
+	}
+
+	private synchronized void fail() {
+		if (dateStarted == 0) {
+			dateStarted = System.currentTimeMillis();
+		}
+		dateFinished = System.currentTimeMillis();
+		state = PublishJobStatus.STATE_FAILED;
+	}
+}
@@ -0,0 +1,144 @@
+package com.mediaworx.opencms.ideconnector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.util.CmsUUID;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs asynchronous publish jobs submitted to the {@link OpenCmsIDEConnector} or the
+ * {@link com.mediaworx.opencms.ideconnector.service.IDEConnectorService}, so a large publish doesn't tie up the
+ * request thread and the IDE while the publish list is built and the resources are published.
+ * <br /><br />
+ * Publish lists are built one after the other by a single background thread, the publish itself is done by the
+ * OpenCms publish queue. Finished jobs (status and publish report) are kept for
+ * {@link ModuleParameters#PARAM_PUBLISH_JOB_RETENTION} minutes, expired jobs are removed whenever a new job is
+ * submitted.
+ */
+public class PublishJobManager {
+
+	private static final Log LOG = LogFactory.getLog(PublishJobManager.class);
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+	private static PublishJobManager instance;
+
+	private final long retentionMillis;
+	private final ConcurrentHashMap<String, PublishJob> jobs = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+
+	private PublishJobManager(long retentionMillis) {
+		this.retentionMillis = retentionMillis;
+		executor = Executors.newSingleThreadExecutor(new PublishJobThreadFactory());
+	}
+
+	/**
+	 * Returns the shared job manager, on first access the manager is created with the retention configured in the
+	 * module parameters.
+	 * @return the shared job manager
+	 */
+	public static synchronized PublishJobManager getInstance() {
+		if (instance == null) {
+			long retention = ModuleParameters.getIntParameter(ModuleParameters.PARAM_PUBLISH_JOB_RETENTION, ModuleParameters.DEFAULT_PUBLISH_JOB_RETENTION);
+			instance = new PublishJobManager(Math.max(0, retention) * MILLIS_PER_MINUTE);
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops the background thread of the shared job manager. Jobs whose publish list hasn't been built yet are
+	 * cancelled, jobs already enqueued in the OpenCms publish queue are published by OpenCms.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			LOG.info("Shutting down " + instance);
+			List<Runnable> queuedJobs = instance.executor.shutdownNow();
+			for (Runnable queuedJob : queuedJobs) {
+				((PublishJob)queuedJob).cancel();
+			}
+			instance.jobs.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Submits a new publish job.
+	 * @param cmsObject             the CmsObject of the request, the job works on its own copy
+	 * @param resourcePaths         the root paths of the resources to be published
+	 * @param publishSubResources   <code>true</code> if the sub resources of folders should be published as well
+	 * @return  the submitted job
+	 * @throws CmsException if the CmsObject can't be copied
+	 */
+	public PublishJob submit(CmsObject cmsObject, String[] resourcePaths, boolean publishSubResources) throws CmsException {
+		int numRemoved = removeExpired();
+		if (numRemoved > 0 && LOG.isDebugEnabled()) {
+			LOG.debug("Removed " + numRemoved + " expired publish jobs, " + this);
+		}
+		PublishJob job = new PublishJob(new CmsUUID().getStringValue(), OpenCms.initCmsObject(cmsObject), resourcePaths, publishSubResources);
+		jobs.put(job.getId(), job);
+		executor.execute(job);
+		return job;
+	}
+
+	/**
+	 * @param jobId the job's id
+	 * @return  the job with the given id or <code>null</code> if there's no such job (or it has expired)
+	 */
+	public PublishJob get(String jobId) {
+		return jobId != null ? jobs.get(jobId) : null;
+	}
+
+	/**
+	 * Removes all finished jobs that have been kept for the retention time.
+	 * @return  the number of removed jobs
+	 */
+	public int removeExpired() {
+		long now = System.currentTimeMillis();
+		int numRemoved = 0;
+		Iterator<PublishJob> it = jobs.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isExpired(now, retentionMillis)) {
+				it.remove();
+				numRemoved++;
+			}
+		}
+		return numRemoved;
+	}
+
+	/**
+	 * @return the number of jobs (queued, running and finished)
+	 */
+	public int size() {
+		return jobs.size();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{jobs=" + jobs.size() + "}";
+	}
+
+	/**
+	 * Creates the named daemon thread building the publish lists.
+	 */
+	private static class PublishJobThreadFactory implements ThreadFactory {
+
+		PublishJobThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-PublishJob");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.mediaworx.opencms.ideconnector.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple thread safe cache with a maximum number of entries and an optional time to live. If the cache is full, the
+ * least recently used entry is evicted. Entries older than the time to live are treated as missing.
+ * <br /><br />
+ * Hits, misses and evictions are counted, so the cache's efficiency can be monitored.
+ *
+ * @param <K> type of the cache keys
+ * @param <V> type of the cached values
+ */
+public class LruCache<K, V> {
+
+	private final int maxEntries;
+	private final long timeToLiveMillis;
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a new cache.
+	 * @param maxEntries        maximum number of entries, if exceeded the least recently used entry is evicted
+	 * @param timeToLiveMillis  time in milliseconds after which an entry expires, <code>0</code> if entries should not
+	 *                          expire
+	 */
+	public LruCache(final int maxEntries, long timeToLiveMillis) {
+		this.maxEntries = maxEntries;
+		this.timeToLiveMillis = timeToLiveMillis;
+		entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > LruCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value cached for the given key.
+	 * @param key   the key
+	 * @return  the cached value or <code>null</code> if there's no value for the key or if the value has expired
+	 */
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry != null && isExpired(entry)) {
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Stores the given value for the given key.
+	 * @param key   the key
+	 * @param value the value (must not be <code>null</code>)
+	 */
+	public synchronized void put(K key, V value) {
+		entries.put(key, new CacheEntry<>(value, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Removes the value for the given key.
+	 * @param key   the key
+	 * @return  the removed value or <code>null</code> if there was no value for the key
+	 */
+	public synchronized V remove(K key) {
+		CacheEntry<V> entry = entries.remove(key);
+		return entry != null ? entry.value : null;
+	}
+
+	/**
+	 * Removes all expired entries.
+	 * @return  the number of removed entries
+	 */
+	public synchronized int removeExpired() {
+		if (timeToLiveMillis <= 0) {
+			return 0;
+		}
+		int numRemoved = 0;
+		Iterator<CacheEntry<V>> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (isExpired(it.next())) {
+				it.remove();
+				numRemoved++;
+			}
+		}
+		evictions += numRemoved;
+		return numRemoved;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the current number of entries (including expired entries not removed yet)
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full or because they expired
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{size=" + entries.size() + ", maxEntries=" + maxEntries + ", hits=" + hits
+				+ ", misses=" + misses + ", evictions=" + evictions + "}";
+	}
+
+	private boolean isExpired(CacheEntry<V> entry) {
+		return timeToLiveMillis > 0 && System.currentTimeMillis() - entry.created > timeToLiveMillis;
+	}
+
+	private static class CacheEntry<V> {
+		private final V value;
+		private final long created;
+
+		CacheEntry(V value, long created) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+}
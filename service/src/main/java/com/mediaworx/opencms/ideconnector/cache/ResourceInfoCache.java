@@ -0,0 +1,394 @@
+package com.mediaworx.opencms.ideconnector.cache;
+
+import com.mediaworx.opencms.ideconnector.ModuleParameters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.I_CmsEventListener;
+import org.opencms.main.OpenCms;
+import org.opencms.util.CmsUUID;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared cache for generated resource info XML, so resource infos for unchanged resources that are requested over and
+ * over (e.g. by multiple developers syncing the same modules) don't have to be read from the VFS again.
+ * <br /><br />
+ * Entries are keyed by the resource's structure id. A cached resource info is only used if the resource's date last
+ * modified and sibling count still match and if it was generated with the same <code>useDateVariables</code> and
+ * <code>useIdVariables</code> flags. Since properties, relations and access control entries may change without
+ * touching the date last modified, the cache is registered as OpenCms event listener: resource and property
+ * modification events evict the affected entries, events that may affect many resources (moves, property definition
+ * changes, cache flushes and resource events without resources) clear the whole cache. Publishing and principal
+ * events are ignored: resource infos don't contain the publish state, and user names are read through the
+ * {@link UserNameCache}. Since a resource info may be read while an event is processed, each evicting event
+ * increments the cache's generation: callers fetch the generation with {@link #getGeneration()} before reading the
+ * resource info and pass it to {@link #put}, resource infos read before the last evicting event are dropped.
+ * <br /><br />
+ * The cache also keeps a modification stamp for recently modified resources (see {@link #getStamp}), so validators
+ * (ETags) of resource infos can reflect changes that don't touch the date last modified without depending on
+ * modifications of unrelated resources.
+ * <br /><br />
+ * The cache is bounded by the total size of the cached XML, configured by the module parameter
+ * {@link ModuleParameters#PARAM_RESOURCE_INFO_CACHE_SIZE} (in megabytes, <code>0</code> disables the cache). If the
+ * cache is full, the least recently used entries are evicted. Only resource infos read in offline projects should be
+ * cached.
+ */
+public class ResourceInfoCache implements I_CmsEventListener {
+
+	private static final Log LOG = LogFactory.getLog(ResourceInfoCache.class);
+
+	/** Maximum number of resources whose modification stamps are kept */
+	private static final int MAX_STAMPS = 10000;
+
+	private static ResourceInfoCache instance;
+
+	private final long maxChars;
+	private final LinkedHashMap<CmsUUID, CachedResourceInfo> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long numChars;
+	private long generation;
+	private final LinkedHashMap<CmsUUID, Long> stamps = new LinkedHashMap<>();
+	private long stampFloor;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private ResourceInfoCache(long maxChars) {
+		this.maxChars = maxChars;
+		// stamps of different server runs must not collide, since they are part of the ETags sent to clients
+		generation = System.currentTimeMillis();
+		stampFloor = generation;
+	}
+
+	/**
+	 * Returns the shared resource info cache, on first access the cache is created and registered as OpenCms event
+	 * listener.
+	 * @return the shared resource info cache
+	 */
+	public static synchronized ResourceInfoCache getInstance() {
+		if (instance == null) {
+			int maxMegabytes = ModuleParameters.getIntParameter(ModuleParameters.PARAM_RESOURCE_INFO_CACHE_SIZE, ModuleParameters.DEFAULT_RESOURCE_INFO_CACHE_SIZE);
+			// Java chars take two bytes
+			instance = new ResourceInfoCache(Math.max(0, maxMegabytes) * 1024L * 1024L / 2);
+			OpenCms.addCmsEventListener(instance, new int[] {
+					EVENT_RESOURCE_MODIFIED,
+					EVENT_RESOURCES_MODIFIED,
+					EVENT_RESOURCE_AND_PROPERTIES_MODIFIED,
+					EVENT_RESOURCES_AND_PROPERTIES_MODIFIED,
+					EVENT_PROPERTY_MODIFIED,
+					EVENT_RESOURCE_CREATED,
+					EVENT_RESOURCE_COPIED,
+					EVENT_RESOURCE_DELETED,
+					EVENT_RESOURCE_MOVED,
+					EVENT_PROPERTY_DEFINITION_MODIFIED,
+					EVENT_CLEAR_CACHES,
+					EVENT_CLEAR_OFFLINE_CACHES
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * @return <code>true</code> if the cache is enabled (the configured size is greater than 0)
+	 */
+	public boolean isEnabled() {
+		return maxChars > 0;
+	}
+
+	/**
+	 * Returns the resource info cached for the given resource.
+	 * @param resource          the resource
+	 * @param useDateVariables  the <code>useDateVariables</code> flag the resource info must have been generated with
+	 * @param useIdVariables    the <code>useIdVariables</code> flag the resource info must have been generated with
+	 * @return  the cached resource info XML or <code>null</code> if there's no (up to date) resource info for the
+	 *          resource
+	 */
+	public synchronized String get(CmsResource resource, boolean useDateVariables, boolean useIdVariables) {
+		if (!isEnabled()) {
+			return null;
+		}
+		CachedResourceInfo entry = entries.get(resource.getStructureId());
+		String xml = null;
+		if (entry != null) {
+			if (entry.isValidFor(resource)) {
+				xml = entry.xml[getVariant(useDateVariables, useIdVariables)];
+			}
+			else {
+				remove(resource.getStructureId());
+				evictions++;
+			}
+		}
+		if (xml == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return xml;
+	}
+
+	/**
+	 * Returns the cache's generation, incremented by each OpenCms event evicting entries. Must be fetched before the
+	 * resource info is read and passed to {@link #put}.
+	 * @return the cache's generation
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the modification stamp of the given resource: the generation of the last event that evicted the resource
+	 * or one of its siblings. For resources that haven't been modified recently, a stamp shared by all those resources
+	 * is returned, which changes if the whole cache is cleared or if a stamp is dropped because too many resources
+	 * were modified. Stamps never decrease, so the stamp and the resource's dates together change whenever the
+	 * resource info changes.
+	 * @param resource  the resource
+	 * @return  the resource's modification stamp
+	 */
+	public synchronized long getStamp(CmsResource resource) {
+		long stamp = stampFloor;
+		Long structureStamp = stamps.get(resource.getStructureId());
+		if (structureStamp != null) {
+			stamp = Math.max(stamp, structureStamp);
+		}
+		Long resourceStamp = stamps.get(resource.getResourceId());
+		if (resourceStamp != null) {
+			stamp = Math.max(stamp, resourceStamp);
+		}
+		return stamp;
+	}
+
+	/**
+	 * Stores the given resource info for the given resource. The resource info is dropped if an OpenCms event evicted
+	 * entries since the given generation was fetched, since it may have been read before the resource was modified.
+	 * @param resource          the resource
+	 * @param useDateVariables  the <code>useDateVariables</code> flag the resource info was generated with
+	 * @param useIdVariables    the <code>useIdVariables</code> flag the resource info was generated with
+	 * @param xml               the resource info XML
+	 * @param generation        the cache's generation fetched before the resource info was read
+	 */
+	public synchronized void put(CmsResource resource, boolean useDateVariables, boolean useIdVariables, String xml,
+			long generation) {
+		if (!isEnabled() || xml.length() > maxChars || generation < this.generation) {
+			return;
+		}
+		CachedResourceInfo entry = entries.get(resource.getStructureId());
+		if (entry == null || !entry.isValidFor(resource)) {
+			if (entry != null) {
+				remove(resource.getStructureId());
+			}
+			entry = new CachedResourceInfo(resource);
+			entries.put(resource.getStructureId(), entry);
+		}
+		int variant = getVariant(useDateVariables, useIdVariables);
+		if (entry.xml[variant] != null) {
+			numChars -= entry.xml[variant].length();
+		}
+		entry.xml[variant] = xml;
+		numChars += xml.length();
+		evictEldestEntries();
+	}
+
+	/**
+	 * Removes all entries, resource infos read before are dropped by {@link #put}.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		numChars = 0;
+		generation++;
+		stamps.clear();
+		stampFloor = generation;
+	}
+
+	/**
+	 * @return the current number of cached resources
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total number of characters of all cached resource infos
+	 */
+	public synchronized long getNumChars() {
+		return numChars;
+	}
+
+	/**
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full or because they were outdated
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Evicts the entries of modified resources or clears the whole cache if the event may affect many resources.
+	 * @param event the OpenCms event
+	 */
+	@Override
+	public void cmsEvent(CmsEvent event) {
+		switch (event.getType()) {
+			case EVENT_RESOURCE_MODIFIED:
+			case EVENT_RESOURCES_MODIFIED:
+			case EVENT_RESOURCE_AND_PROPERTIES_MODIFIED:
+			case EVENT_RESOURCES_AND_PROPERTIES_MODIFIED:
+			case EVENT_PROPERTY_MODIFIED:
+			case EVENT_RESOURCE_CREATED:
+			case EVENT_RESOURCE_COPIED:
+			case EVENT_RESOURCE_DELETED:
+				if (removeResources(event.getData())) {
+					return;
+				}
+				break;
+			default:
+				break;
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Clearing resource info cache (event type " + event.getType() + "), " + this);
+		}
+		clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{size=" + entries.size() + ", numChars=" + numChars + ", maxChars="
+				+ maxChars + ", generation=" + generation + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+	}
+
+	/**
+	 * Removes the entries for the resources contained in the given event data and increments the generation.
+	 * Resources that aren't cached count as well, since their resource infos may be read at the moment.
+	 * @param data  the event data
+	 * @return  <code>true</code> if the event data contained the affected resources, <code>false</code> otherwise (then
+	 *          the whole cache must be cleared)
+	 */
+	private synchronized boolean removeResources(Map<String, Object> data) {
+		if (data == null) {
+			return false;
+		}
+		Object resource = data.get(KEY_RESOURCE);
+		Object resources = data.get(KEY_RESOURCES);
+		if (resource instanceof CmsResource) {
+			generation++;
+			removeResource((CmsResource)resource);
+			return true;
+		}
+		if (resources instanceof List) {
+			for (Object o : (List)resources) {
+				if (!(o instanceof CmsResource)) {
+					return false;
+				}
+			}
+			generation++;
+			for (Object o : (List)resources) {
+				removeResource((CmsResource)o);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the entry for the given resource. If the resource has siblings, the entries of the siblings are removed
+	 * as well, since shared properties are contained in the resource infos of all siblings. The resource's stamp is set
+	 * to the current generation.
+	 * @param resource  the modified resource
+	 */
+	private void removeResource(CmsResource resource) {
+		setStamp(resource.getStructureId());
+		setStamp(resource.getResourceId());
+		remove(resource.getStructureId());
+		if (resource.getSiblingCount() > 1) {
+			Iterator<Map.Entry<CmsUUID, CachedResourceInfo>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				CachedResourceInfo entry = it.next().getValue();
+				if (entry.resourceId.equals(resource.getResourceId())) {
+					numChars -= entry.getNumChars();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private void setStamp(CmsUUID id) {
+		// re-inserted, so the eldest entry is the least recently modified one
+		stamps.remove(id);
+		stamps.put(id, generation);
+		if (stamps.size() > MAX_STAMPS) {
+			Iterator<Long> it = stamps.values().iterator();
+			stampFloor = Math.max(stampFloor, it.next());
+			it.remove();
+		}
+	}
+
+	private void remove(CmsUUID structureId) {
+		CachedResourceInfo entry = entries.remove(structureId);
+		if (entry != null) {
+			numChars -= entry.getNumChars();
+		}
+	}
+
+	private void evictEldestEntries() {
+		Iterator<CachedResourceInfo> it = entries.values().iterator();
+		while (numChars > maxChars && it.hasNext()) {
+			numChars -= it.next().getNumChars();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static int getVariant(boolean useDateVariables, boolean useIdVariables) {
+		return (useDateVariables ? 1 : 0) + (useIdVariables ? 2 : 0);
+	}
+
+	/**
+	 * The cached resource infos of one resource, one for each combination of the <code>useDateVariables</code> and
+	 * <code>useIdVariables</code> flags.
+	 */
+	private static class CachedResourceInfo {
+
+		private final CmsUUID resourceId;
+		private final long dateLastModified;
+		private final int siblingCount;
+		private final String[] xml = new String[4];
+
+		CachedResourceInfo(CmsResource resource) {
+			resourceId = resource.getResourceId();
+			dateLastModified = resource.getDateLastModified();
+			siblingCount = resource.getSiblingCount();
+		}
+
+		boolean isValidFor(CmsResource resource) {
+			return dateLastModified == resource.getDateLastModified() && siblingCount == resource.getSiblingCount()
+					&& resourceId.equals(resource.getResourceId());
+		}
+
+		long getNumChars() {
+			long numChars = 0;
+			for (String variant : xml) {
+				if (variant != null) {
+					numChars += variant.length();
+				}
+			}
+			return numChars;
+		}
+	}
+}
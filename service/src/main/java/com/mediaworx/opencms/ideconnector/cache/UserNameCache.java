@@ -0,0 +1,104 @@
+package com.mediaworx.opencms.ideconnector.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.db.CmsDbEntryNotFoundException;
+import org.opencms.file.CmsObject;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.CmsException;
+import org.opencms.main.I_CmsEventListener;
+import org.opencms.main.OpenCms;
+import org.opencms.util.CmsUUID;
+
+/**
+ * Shared cache mapping user ids to user names. Used when generating resource infos, where the names of the users that
+ * created or last modified a resource have to be read for every single resource, although a module usually has only
+ * a handful of distinct authors.
+ * <br /><br />
+ * The cache is bounded (least recently used entries are evicted) and entries expire after a while. It is registered
+ * as OpenCms event listener, so entries are invalidated when users are modified or deleted and the whole cache is
+ * cleared when OpenCms clears its caches.
+ */
+public class UserNameCache implements I_CmsEventListener {
+
+	private static final Log LOG = LogFactory.getLog(UserNameCache.class);
+
+	private static final int MAX_ENTRIES = 1000;
+	private static final long TIME_TO_LIVE_MILLIS = 10 * 60 * 1000;
+
+	private static UserNameCache instance;
+
+	private final LruCache<CmsUUID, String> userNames = new LruCache<>(MAX_ENTRIES, TIME_TO_LIVE_MILLIS);
+
+	private UserNameCache() {
+	}
+
+	/**
+	 * Returns the shared user name cache, on first access the cache is created and registered as OpenCms event
+	 * listener.
+	 * @return the shared user name cache
+	 */
+	public static synchronized UserNameCache getInstance() {
+		if (instance == null) {
+			instance = new UserNameCache();
+			OpenCms.addCmsEventListener(instance, new int[] {
+					EVENT_USER_MODIFIED,
+					EVENT_CLEAR_CACHES,
+					EVENT_CLEAR_PRINCIPAL_CACHES
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the name of the user with the given id. If the user's name is not cached yet, it is read using the given
+	 * CmsObject. If the user doesn't exist (anymore) the name of the default admin user is returned.
+	 * @param cmsObject the CmsObject used to read the user if the name is not cached yet
+	 * @param userId    id of the user
+	 * @return  the user's name
+	 */
+	public String getUserName(CmsObject cmsObject, CmsUUID userId) {
+		String userName = userNames.get(userId);
+		if (userName == null) {
+			try {
+				userName = cmsObject.readUser(userId).getName();
+				userNames.put(userId, userName);
+			}
+			catch (CmsDbEntryNotFoundException e) {
+				// the user doesn't exist, so cache the fallback to avoid reading the missing user over and over
+				userName = OpenCms.getDefaultUsers().getUserAdmin();
+				userNames.put(userId, userName);
+			}
+			catch (CmsException e) {
+				userName = OpenCms.getDefaultUsers().getUserAdmin();
+			}
+		}
+		return userName;
+	}
+
+	/**
+	 * Invalidates cached user names if users are modified or if OpenCms clears its caches.
+	 * @param event the OpenCms event
+	 */
+	@Override
+	public void cmsEvent(CmsEvent event) {
+		if (event.getType() == EVENT_USER_MODIFIED) {
+			Object userId = event.getData() != null ? event.getData().get(KEY_USER_ID) : null;
+			if (userId != null && CmsUUID.isValidUUID(userId.toString())) {
+				userNames.remove(new CmsUUID(userId.toString()));
+				return;
+			}
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Clearing user name cache (event type " + event.getType() + "), " + userNames);
+		}
+		userNames.clear();
+	}
+
+	/**
+	 * @return the underlying cache, e.g. to read its hit/miss counters
+	 */
+	public LruCache<CmsUUID, String> getCache() {
+		return userNames;
+	}
+}
@@ -0,0 +1,86 @@
+package com.mediaworx.opencms.ideconnector.report;
+
+import java.io.Writer;
+
+/**
+ * In-memory log of an asynchronous job (see {@link com.mediaworx.opencms.ideconnector.service.ImportJobManager} and
+ * {@link com.mediaworx.opencms.ideconnector.PublishJobManager}), so clients can poll the job's status and tail the log
+ * from any offset while the job is running and for a while after it has finished. Everything written to the log is
+ * appended, the log is thread safe.
+ * <br /><br />
+ * Log offsets are absolute character offsets. The log is bounded, if it grows too large the oldest part is dropped
+ * and clients requesting a dropped offset get the log from the oldest retained offset.
+ */
+public class JobLog extends Writer {
+
+	/** Maximum number of log characters kept per job */
+	private static final int MAX_LOG_CHARS = 4 * 1024 * 1024;
+
+	private final StringBuilder log = new StringBuilder();
+	private long logStart = 0;
+
+	@Override
+	public synchronized void write(char[] chars, int offset, int length) {
+		log.append(chars, offset, length);
+		int overflow = log.length() - MAX_LOG_CHARS;
+		if (overflow > 0) {
+			log.delete(0, overflow);
+			logStart += overflow;
+		}
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Returns the log starting at the given offset.
+	 * @param logOffset the offset of the first log character to be returned
+	 * @return  the log starting at the given offset, or at the oldest retained offset if the given offset was dropped
+	 */
+	public synchronized Tail getTail(long logOffset) {
+		long offset = Math.max(logStart, Math.min(logOffset, logStart + log.length()));
+		return new Tail(offset, log.substring((int)(offset - logStart)), logStart + log.length());
+	}
+
+	/**
+	 * A part of the log, from an offset to the end of the log.
+	 */
+	public static class Tail {
+
+		private final long offset;
+		private final String log;
+		private final long nextOffset;
+
+		Tail(long offset, String log, long nextOffset) {
+			this.offset = offset;
+			this.log = log;
+			this.nextOffset = nextOffset;
+		}
+
+		/**
+		 * @return the absolute offset of the first character of the tail
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return the log characters from the tail's offset to the end of the log
+		 */
+		public String getLog() {
+			return log;
+		}
+
+		/**
+		 * @return the absolute offset following the end of the log, to be requested by the next poll
+		 */
+		public long getNextOffset() {
+			return nextOffset;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.mediaworx.opencms.ideconnector.report;
+
+import org.opencms.i18n.CmsMessageContainer;
+import org.opencms.report.A_CmsReport;
+import org.opencms.report.I_CmsReport;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * OpenCms report forwarding everything printed to several other reports, used if one publish job is reported to
+ * several clients (see {@link com.mediaworx.opencms.ideconnector.PublishCoalescer}). Errors and warnings are recorded
+ * by this report and by each of the other reports.
+ */
+public class MultiplexReport extends A_CmsReport {
+
+	private final List<I_CmsReport> reports;
+
+	/**
+	 * Creates a new report.
+	 * @param reports   the reports everything is forwarded to
+	 * @param locale    the locale of the report messages
+	 */
+	public MultiplexReport(List<I_CmsReport> reports, Locale locale) {
+		this.reports = reports;
+		init(locale, null);
+	}
+
+	@Override
+	public synchronized void print(CmsMessageContainer container) {
+		for (I_CmsReport report : reports) {
+			report.print(container);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void print(CmsMessageContainer container, int format) {
+		for (I_CmsReport report : reports) {
+			report.print(container, format);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void println(CmsMessageContainer container) {
+		for (I_CmsReport report : reports) {
+			report.println(container);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void println(CmsMessageContainer container, int format) {
+		for (I_CmsReport report : reports) {
+			report.println(container, format);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void printMessageWithParam(CmsMessageContainer container, Object param) {
+		for (I_CmsReport report : reports) {
+			report.printMessageWithParam(container, param);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void printMessageWithParam(int m, int n, CmsMessageContainer container, Object param) {
+		for (I_CmsReport report : reports) {
+			report.printMessageWithParam(m, n, container, param);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void println() {
+		for (I_CmsReport report : reports) {
+			report.println();
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void println(Throwable t) {
+		for (I_CmsReport report : reports) {
+			report.println(t);
+		}
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void addError(Object obj) {
+		super.addError(obj);
+		for (I_CmsReport report : reports) {
+			report.addError(obj);
+		}
+	}
+
+	@Override
+	public synchronized void addWarning(Object obj) {
+		super.addWarning(obj);
+		for (I_CmsReport report : reports) {
+			report.addWarning(obj);
+		}
+	}
+
+	/**
+	 * Only used by the print methods of {@link A_CmsReport}, which are all overridden to forward the messages.
+	 */
+	@Override
+	protected void print(String value, int format) {
+	}
+
+	@Override
+	public String getReportUpdate() {
+		return "";
+	}
+}
@@ -0,0 +1,102 @@
+package com.mediaworx.opencms.ideconnector.report;
+
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+import com.mediaworx.opencms.ideconnector.dataimpl.ProgressEventImpl;
+import org.opencms.i18n.CmsMessageContainer;
+import org.opencms.report.A_CmsReport;
+
+import java.util.Locale;
+
+/**
+ * OpenCms report converting the report output of imports or publishes to structured progress events. Each report
+ * line becomes one event:
+ * <ul>
+ *     <li>lines containing an error (or printed exceptions) become {@link ProgressEvent#TYPE_ERROR} events</li>
+ *     <li>lines containing a warning become {@link ProgressEvent#TYPE_WARNING} events</li>
+ *     <li>lines reporting the progress of a resource ("( N / M ) ...") become {@link ProgressEvent#TYPE_RESOURCE}
+ *     events containing N and M</li>
+ *     <li>all other lines become {@link ProgressEvent#TYPE_MESSAGE} events</li>
+ * </ul>
+ */
+public class ProgressEventReport extends A_CmsReport {
+
+	private final ProgressEventWriter events;
+	private final String module;
+
+	private final StringBuilder line = new StringBuilder();
+	private int current = 0;
+	private int total = 0;
+	private int lineFormat = FORMAT_DEFAULT;
+
+	/**
+	 * Creates a new report.
+	 * @param events    the writer the events are written to
+	 * @param module    the module the report belongs to (<code>null</code> for publishes)
+	 * @param locale    the locale of the report messages
+	 */
+	public ProgressEventReport(ProgressEventWriter events, String module, Locale locale) {
+		this.events = events;
+		this.module = module;
+		init(locale, null);
+	}
+
+	@Override
+	public synchronized void printMessageWithParam(int m, int n, CmsMessageContainer container, Object param) {
+		current = m;
+		total = n;
+		super.printMessageWithParam(m, n, container, param);
+	}
+
+	@Override
+	protected synchronized void print(String value, int format) {
+		if (format == FORMAT_ERROR || (format == FORMAT_WARNING && lineFormat != FORMAT_ERROR)) {
+			lineFormat = format;
+		}
+		line.append(value);
+		setLastEntryTime(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void println() {
+		String type;
+		if (lineFormat == FORMAT_ERROR) {
+			type = ProgressEvent.TYPE_ERROR;
+		}
+		else if (lineFormat == FORMAT_WARNING) {
+			type = ProgressEvent.TYPE_WARNING;
+		}
+		else if (total > 0) {
+			type = ProgressEvent.TYPE_RESOURCE;
+		}
+		else {
+			type = ProgressEvent.TYPE_MESSAGE;
+		}
+		if (line.length() > 0 || total > 0) {
+			ProgressEventImpl event = ProgressEventWriter.createEvent(type, module, line.toString());
+			event.setCurrent(current);
+			event.setTotal(total);
+			events.write(event);
+		}
+		line.setLength(0);
+		current = 0;
+		total = 0;
+		lineFormat = FORMAT_DEFAULT;
+	}
+
+	@Override
+	public synchronized void println(Throwable t) {
+		if (line.length() > 0) {
+			println();
+		}
+		events.write(ProgressEvent.TYPE_ERROR, module, t.toString());
+	}
+
+	/**
+	 * The report is not polled, events are written as they occur.
+	 * @return an empty String
+	 */
+	@Override
+	public String getReportUpdate() {
+		return "";
+	}
+}
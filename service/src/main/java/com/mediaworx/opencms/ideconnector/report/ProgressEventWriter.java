@@ -0,0 +1,182 @@
+package com.mediaworx.opencms.ideconnector.report;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+import com.mediaworx.opencms.ideconnector.dataimpl.ProgressEventImpl;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes structured progress events as newline-delimited JSON (NDJSON, one event per line). Thread safe, so events of
+ * modules imported concurrently can be written to the same response.
+ * <br /><br />
+ * Events are buffered and written in batches: the buffer is flushed to the response if it exceeds
+ * {@link #FLUSH_SIZE} characters or if the last flush is longer than {@link #FLUSH_INTERVAL_MILLIS} ago (checked when
+ * an event is written), and whenever {@link #flush()} is called (e.g. when a module is finished). After
+ * {@link #close()} nothing is written anymore.
+ */
+public class ProgressEventWriter {
+
+	private static final Log LOG = LogFactory.getLog(ProgressEventWriter.class);
+
+	/** Buffer size (in characters) triggering a flush */
+	public static final int FLUSH_SIZE = 8192;
+
+	/** Time (in milliseconds) after which buffered events are flushed with the next event */
+	public static final long FLUSH_INTERVAL_MILLIS = 250;
+
+	private final Writer out;
+	private final ObjectWriter jsonWriter;
+	private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE);
+	private long lastFlush = System.currentTimeMillis();
+	private boolean failed = false;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new event writer.
+	 * @param out           the writer the events are written to (usually the response's writer)
+	 * @param objectMapper  the ObjectMapper used to serialize the events
+	 */
+	public ProgressEventWriter(Writer out, ObjectMapper objectMapper) {
+		this.out = out;
+		jsonWriter = objectMapper.writerFor(ProgressEventImpl.class);
+	}
+
+	/**
+	 * Creates a new event with the current time as timestamp.
+	 * @param type      the event type (see the constants in {@link ProgressEvent})
+	 * @param module    the name of the module the event belongs to (may be <code>null</code>)
+	 * @param message   the event's message (may be <code>null</code>)
+	 * @return  the new event
+	 */
+	public static ProgressEventImpl createEvent(String type, String module, String message) {
+		ProgressEventImpl event = new ProgressEventImpl();
+		event.setType(type);
+		event.setTimestamp(System.currentTimeMillis());
+		event.setModule(module);
+		event.setMessage(message);
+		return event;
+	}
+
+	/**
+	 * Creates and writes a new event.
+	 * @param type      the event type (see the constants in {@link ProgressEvent})
+	 * @param module    the name of the module the event belongs to (may be <code>null</code>)
+	 * @param message   the event's message (may be <code>null</code>)
+	 */
+	public void write(String type, String module, String message) {
+		write(createEvent(type, module, message));
+	}
+
+	/**
+	 * Writes the given event, the buffer is flushed if it is full or if the last flush is too long ago.
+	 * @param event the event
+	 */
+	public synchronized void write(ProgressEventImpl event) {
+		if (closed) {
+			return;
+		}
+		try {
+			buffer.append(jsonWriter.writeValueAsString(event)).append('\n');
+		}
+		catch (JsonProcessingException e) {
+			LOG.error("Progress event can't be serialized", e);
+			return;
+		}
+		if (buffer.length() >= FLUSH_SIZE || System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes all buffered events to the response.
+	 */
+	public synchronized void flush() {
+		lastFlush = System.currentTimeMillis();
+		if (buffer.length() == 0 || failed || closed) {
+			buffer.setLength(0);
+			return;
+		}
+		try {
+			out.write(buffer.toString());
+			out.flush();
+		}
+		catch (IOException e) {
+			// the client is gone, further events are dropped
+			LOG.warn("Progress events can't be written, the client has probably disconnected", e);
+			failed = true;
+		}
+		buffer.setLength(0);
+	}
+
+	/**
+	 * Writes all buffered events to the response and stops writing, events written afterwards are dropped. Must be
+	 * called before the request returns if events may still be written by other threads (e.g. by the report of a
+	 * publish job), so nothing is written to a response that has been recycled by the servlet container.
+	 */
+	public synchronized void close() {
+		flush();
+		closed = true;
+	}
+
+	/**
+	 * Creates a writer converting each line written to it to a {@link ProgressEvent#TYPE_MESSAGE} event, used for
+	 * plain text log output.
+	 * @param module    the module the lines belong to (may be <code>null</code>)
+	 * @return  the writer
+	 */
+	public Writer createLineWriter(String module) {
+		return new LineWriter(module);
+	}
+
+	/**
+	 * Converts each line to a message event.
+	 */
+	private class LineWriter extends Writer {
+
+		private final String module;
+		private final StringBuilder line = new StringBuilder();
+
+		LineWriter(String module) {
+			this.module = module;
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			for (int i = offset; i < offset + length; i++) {
+				char c = chars[i];
+				if (c == '\n') {
+					writeLine();
+				}
+				else if (c != '\r') {
+					line.append(c);
+				}
+			}
+		}
+
+		@Override
+		public void flush() {
+			ProgressEventWriter.this.flush();
+		}
+
+		@Override
+		public void close() {
+			if (line.length() > 0) {
+				writeLine();
+			}
+			flush();
+		}
+
+		private void writeLine() {
+			if (line.length() > 0) {
+				ProgressEventWriter.this.write(ProgressEvent.TYPE_MESSAGE, module, line.toString());
+			}
+			line.setLength(0);
+		}
+	}
+}
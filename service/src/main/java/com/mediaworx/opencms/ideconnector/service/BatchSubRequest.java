@@ -0,0 +1,110 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.data.BatchRequest;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.Part;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request passed to the {@link IDEConnectorServiceHandler} for one sub-request of a batch. The parameters are the
+ * sub-request's parameters (plus the batch's token if the sub-request doesn't provide one), the sub-request's ETag is
+ * provided as header <code>If-None-Match</code>. The batch's request body belongs to the batch, so sub-requests have
+ * neither a body nor uploads.
+ */
+class BatchSubRequest extends HttpServletRequestWrapper {
+
+	private final Map<String, String> params;
+	private final String etag;
+
+	/**
+	 * Creates the request for a sub-request.
+	 * @param batchRequest  the request of the batch
+	 * @param subRequest    the sub-request
+	 * @param token         the token used if the sub-request doesn't provide one (may be <code>null</code>)
+	 */
+	BatchSubRequest(HttpServletRequest batchRequest, BatchRequest subRequest, String token) {
+		super(batchRequest);
+		params = new LinkedHashMap<>(subRequest.getParams());
+		if (token != null && !params.containsKey(IDEConnectorConst.PARAM_TOKEN)) {
+			params.put(IDEConnectorConst.PARAM_TOKEN, token);
+		}
+		etag = subRequest.getEtag();
+	}
+
+	@Override
+	public String getParameter(String name) {
+		return params.get(name);
+	}
+
+	@Override
+	public String[] getParameterValues(String name) {
+		String value = params.get(name);
+		return value != null ? new String[] {value} : null;
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(params.keySet());
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		Map<String, String[]> parameterMap = new LinkedHashMap<>();
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			parameterMap.put(param.getKey(), new String[] {param.getValue()});
+		}
+		return Collections.unmodifiableMap(parameterMap);
+	}
+
+	@Override
+	public String getHeader(String name) {
+		if (IDEConnectorConst.HEADER_IF_NONE_MATCH.equalsIgnoreCase(name)) {
+			return etag;
+		}
+		if ("Content-Type".equalsIgnoreCase(name)) {
+			return null;
+		}
+		return super.getHeader(name);
+	}
+
+	@Override
+	public String getContentType() {
+		return null;
+	}
+
+	@Override
+	public int getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+		throw new IOException("Sub-requests of a batch have no request body");
+	}
+
+	@Override
+	public BufferedReader getReader() throws IOException {
+		throw new IOException("Sub-requests of a batch have no request body");
+	}
+
+	@Override
+	public Collection<Part> getParts() throws ServletException {
+		throw new ServletException("Sub-requests of a batch can't upload files");
+	}
+
+	@Override
+	public Part getPart(String name) throws ServletException {
+		throw new ServletException("Sub-requests of a batch can't upload files");
+	}
+}
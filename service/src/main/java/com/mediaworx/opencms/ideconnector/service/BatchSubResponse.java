@@ -0,0 +1,168 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.data.BatchResponse;
+import com.mediaworx.opencms.ideconnector.dataimpl.BatchResponseImpl;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Response passed to the {@link IDEConnectorServiceHandler} for one sub-request of a batch. Everything the handler
+ * writes is collected, status, content type, ETag, sync cursor and error message are recorded instead of being sent,
+ * so the handler's output can be sent as one {@link BatchResponse} of the batch. Other headers are ignored.
+ */
+class BatchSubResponse extends HttpServletResponseWrapper {
+
+	private final StringWriter body = new StringWriter();
+	private final PrintWriter writer = new PrintWriter(body);
+	private int status = SC_OK;
+	private String contentType;
+	private String etag;
+	private String syncCursor;
+	private String message;
+
+	/**
+	 * Creates the response for a sub-request.
+	 * @param batchResponse the response of the batch
+	 */
+	BatchSubResponse(HttpServletResponse batchResponse) {
+		super(batchResponse);
+	}
+
+	@Override
+	public PrintWriter getWriter() {
+		return writer;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		throw new IllegalStateException("Sub-responses of a batch only support writers");
+	}
+
+	@Override
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public void sendError(int status, String message) {
+		this.status = status;
+		this.message = message;
+	}
+
+	@Override
+	public void sendError(int status) {
+		this.status = status;
+	}
+
+	@Override
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public void setCharacterEncoding(String charset) {
+	}
+
+	@Override
+	public void setContentLength(int length) {
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		if (IDEConnectorConst.HEADER_ETAG.equalsIgnoreCase(name)) {
+			etag = value;
+		}
+		else if (IDEConnectorConst.HEADER_SYNC_CURSOR.equalsIgnoreCase(name)) {
+			syncCursor = value;
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		setHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, long date) {
+	}
+
+	@Override
+	public void addDateHeader(String name, long date) {
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+	}
+
+	@Override
+	public void flushBuffer() {
+		writer.flush();
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return false;
+	}
+
+	@Override
+	public void resetBuffer() {
+		writer.flush();
+		body.getBuffer().setLength(0);
+	}
+
+	@Override
+	public void reset() {
+		resetBuffer();
+		status = SC_OK;
+		contentType = null;
+		etag = null;
+		syncCursor = null;
+		message = null;
+	}
+
+	/**
+	 * @return everything written to the sub-response so far
+	 */
+	String getBody() {
+		writer.flush();
+		return body.toString();
+	}
+
+	/**
+	 * Creates the batch response for the recorded output.
+	 * @param index     the index of the sub-request in the batch
+	 * @param service   the service that was called
+	 * @return  the batch response
+	 */
+	BatchResponse toBatchResponse(int index, String service) {
+		BatchResponse batchResponse = new BatchResponseImpl();
+		batchResponse.setIndex(index);
+		batchResponse.setService(service);
+		batchResponse.setStatus(status);
+		batchResponse.setContentType(contentType);
+		batchResponse.setEtag(etag);
+		batchResponse.setSyncCursor(syncCursor);
+		batchResponse.setBody(getBody());
+		batchResponse.setMessage(message);
+		return batchResponse;
+	}
+}
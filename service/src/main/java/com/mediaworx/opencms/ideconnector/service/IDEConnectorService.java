@@ -1,39 +1,29 @@
 package com.mediaworx.opencms.ideconnector.service;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.module.mrbean.MrBeanModule;
+import com.mediaworx.opencms.ideconnector.ParallelMetaXmlGenerator;
+import com.mediaworx.opencms.ideconnector.PublishCoalescer;
+import com.mediaworx.opencms.ideconnector.PublishJobManager;
+import com.mediaworx.opencms.ideconnector.data.BatchRequest;
+import com.mediaworx.opencms.ideconnector.data.BatchResponse;
 import com.mediaworx.opencms.ideconnector.data.LoginStatus;
-import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
 import com.mediaworx.opencms.ideconnector.dataimpl.LoginStatusImpl;
 import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
-import org.apache.commons.io.output.WriterOutputStream;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.opencms.file.CmsObject;
-import org.opencms.importexport.CmsImportParameters;
-import org.opencms.main.CmsException;
-import org.opencms.main.OpenCms;
-import org.opencms.report.CmsPrintStreamReport;
-import org.opencms.report.I_CmsReport;
-import org.opencms.util.CmsUUID;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Servlet providing a service to connect IDEs to OpenCms. This Service is intended to be the successor to the old
@@ -45,31 +35,59 @@ import java.util.Map;
  * <ul>
  *     <li>login</li>
  *     <li>logout</li>
- *     <li>importModule (can import multiple modules as well)</li>
+ *     <li>importModule (can import multiple modules as well, module zips may be uploaded)</li>
+ *     <li>submitImport (like importModule, but runs the import as asynchronous job and returns the job's status)</li>
+ *     <li>importStatus (returns the status and the log of an import job)</li>
+ *     <li>resourceInfos (returns the meta xml for VFS resources)</li>
+ *     <li>moduleManifests (returns the manifest stubs for modules)</li>
+ *     <li>publish (runs a publish as asynchronous job and returns the job's status)</li>
+ *     <li>publishStatus (returns the status and the publish report of a publish job)</li>
+ *     <li>batch (executes several of the services above with one request, see {@link #executeBatch})</li>
  * </ul>
  *
  * There's a standalone Java client that can be used to connect to those services and that does all the request/response
  * handling and provides a convenient API.
  * See <a href="https://github.com/mediaworx/opencms-ideconnector/tree/master/client">GitHub</a> for details.
+ *
+ * The servlet serves concurrent requests: all request specific state is kept in an {@link IDEConnectorServiceHandler}
+ * created for each request, sessions are kept in the {@link SessionStore}.
  */
 @WebServlet(
 		name = "ideConnector",
 		urlPatterns = {"/ideConnector/*"}
 )
+@MultipartConfig
 public class IDEConnectorService extends javax.servlet.http.HttpServlet {
 
 	private static final Log LOG = LogFactory.getLog(IDEConnectorService.class);
 
-	private static Map<String, CmsObject> cmsObjects = new HashMap<>();
-
-	private HttpServletRequest request;
-	private HttpServletResponse response;
-	private PrintWriter out;
 	private ObjectMapper objectMapper;
+	private SessionStore sessionStore;
+	private ImportJobManager importJobManager;
+	private PublishJobManager publishJobManager;
+
+	/**
+	 * Creates the servlet, the shared session store and job managers are looked up when the servlet is initialized.
+	 */
+	public IDEConnectorService() {
+	}
 
+	/**
+	 * Creates the servlet using the given session store and job managers instead of the shared instances (used for
+	 * tests).
+	 * @param sessionStore      the session store
+	 * @param importJobManager  the import job manager
+	 * @param publishJobManager the publish job manager
+	 */
+	IDEConnectorService(SessionStore sessionStore, ImportJobManager importJobManager, PublishJobManager publishJobManager) {
+		this.sessionStore = sessionStore;
+		this.importJobManager = importJobManager;
+		this.publishJobManager = publishJobManager;
+	}
 
 	/**
-	 * Initializes the Servlet, creates the ObjectMapper used to deserialize or serialize JSON
+	 * Initializes the Servlet, creates the ObjectMapper used to deserialize or serialize JSON and looks up the shared
+	 * session store and job managers unless they were passed to the constructor
 	 *
 	 * @param config the <code>ServletConfig</code> object that contains configutation information for this servlet,
 	 *               provided by the ServletContainer
@@ -84,18 +102,23 @@ public class IDEConnectorService extends javax.servlet.http.HttpServlet {
 		objectMapper.registerModule(new MrBeanModule());
 		objectMapper.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
 		objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+		if (sessionStore == null) {
+			sessionStore = SessionStore.getInstance();
+		}
+		if (importJobManager == null) {
+			importJobManager = ImportJobManager.getInstance();
+		}
+		if (publishJobManager == null) {
+			publishJobManager = PublishJobManager.getInstance();
+		}
 	}
 
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-		this.request = request;
-		this.response = response;
-
 		response.setContentType("text/plain; charset=" + StandardCharsets.UTF_8.name());
 		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
 
-		out = response.getWriter();
-
 		String servletPath = request.getServletPath();
 		String requestUri = request.getRequestURI();
 		String service = requestUri.substring(servletPath.length() + 1);
@@ -106,185 +129,137 @@ public class IDEConnectorService extends javax.servlet.http.HttpServlet {
 			LOG.info("service: " + service);
 		}
 
-		// TODO: use reflection on self to locate methods (for this all methods should be self contained and void)
-		if (IDEConnectorConst.SERVICE_LOGIN.equals(service)) {
-			login();
-		}
-		else if (IDEConnectorConst.SERVICE_IMPORT_MODULE.equals(service)) {
-			importModules();
-		}
-		else if (IDEConnectorConst.SERVICE_LOGOUT.equals(service)) {
-			logout();
+		IDEConnectorServiceHandler handler = new IDEConnectorServiceHandler(request, response, objectMapper, sessionStore, importJobManager, publishJobManager);
+
+		if (IDEConnectorConst.SERVICE_BATCH.equals(service)) {
+			executeBatch(request, response, handler);
 		}
-		else {
+		else if (!executeService(service, handler)) {
 			response.sendError(404, "Service not found: " + service);
 		}
 	}
 
-	@Override
-	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-		doGet(req, resp);
-	}
-
-	@Override
-	public void init() throws ServletException {
-		LOG.info("Initializing OpenCms IDEConnector servlet");
-		super.init();
-	}
-
-	private void login() throws ServletException, IOException {
-
-		LoginStatus status = new LoginStatusImpl();
-
-		CmsObject cmsObject;
-		try {
-			cmsObject = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserGuest());
+	/**
+	 * Executes the given service.
+	 * @param service   the service's name
+	 * @param handler   the handler for the request
+	 * @return  <code>false</code> if the service doesn't exist
+	 * @throws IOException if writing the response fails
+	 */
+	private boolean executeService(String service, IDEConnectorServiceHandler handler) throws IOException {
+		// TODO: use reflection on the handler to locate methods (for this all methods should be self contained and void)
+		if (IDEConnectorConst.SERVICE_LOGIN.equals(service)) {
+			handler.login();
 		}
-		catch (CmsException e) {
-			String message = "ERROR initializing OpenCms: ";
-			LOG.error(message, e);
-			status.setLoggedIn(false);
-			status.setMessage(message + e.getMessage() + ".\n StackTrace available in the OpenCms log file.");
-			objectMapper.writeValue(out, status);
-			return;
+		else if (IDEConnectorConst.SERVICE_IMPORT_MODULE.equals(service)) {
+			handler.importModules();
 		}
-
-		String user = request.getParameter(IDEConnectorConst.PARAM_USER);
-		String password = request.getParameter(IDEConnectorConst.PARAM_PASSWORD);
-
-		try {
-			cmsObject.loginUser(user, password);
+		else if (IDEConnectorConst.SERVICE_SUBMIT_IMPORT.equals(service)) {
+			handler.submitImport();
 		}
-		catch (CmsException e) {
-			String message = "ERROR logging in to OpenCms: ";
-			LOG.error(message, e);
-			status.setLoggedIn(false);
-			status.setMessage(message + e.getMessage() + ".\n StackTrace available in the OpenCms log file.");
-			objectMapper.writeValue(out, status);
-			return;
+		else if (IDEConnectorConst.SERVICE_IMPORT_STATUS.equals(service)) {
+			handler.getImportStatus();
 		}
-
-		String token = (new CmsUUID()).getStringValue();
-		storeCmsObject(token, cmsObject);
-
-		status.setLoggedIn(true);
-		status.setMessage("User " + user + " logged in successfully.");
-		status.setToken(token);
-
-		objectMapper.writeValue(out, status);
-	}
-
-	private void logout() {
-		cmsObjects.remove(getToken());
-		out.println("success");
-	}
-
-	private void importModules() {
-
-		if (checkLogin()) {
-			List<ModuleImportInfo> importInfos = getJsonAsList(ModuleImportInfo.class);
-
-			int numModules = importInfos.size();
-
-			if (numModules > 1) {
-				out.println("######## STARTING Import of " + numModules + " modules ########");
-			}
-			for (ModuleImportInfo importInfo : importInfos) {
-				importModule(importInfo);
-			}
-			if (numModules > 1) {
-				out.println("######## Import of " + numModules + " modules FINISHED ########");
-			}
+		else if (IDEConnectorConst.SERVICE_RESOURCE_INFOS.equals(service)) {
+			handler.getResourceInfos();
 		}
-	}
-
-
-
-
-	private void importModule(ModuleImportInfo importInfo) {
-
-		String moduleZipPath = importInfo.getModuleZipPath();
-		String moduleZipName = StringUtils.substringAfterLast(moduleZipPath, File.separator);
-		String moduleName = StringUtils.substringBeforeLast(moduleZipName, "_");
-
-		out.println("******** Importing module zip " + moduleZipName + " to siteRoot " + importInfo.getImportSiteRoot() + " START ********");
-		out.flush();
-
-		CmsObject cmsObject = getCmsObject();
-		String siteRootBefore = cmsObject.getRequestContext().getSiteRoot();
-		cmsObject.getRequestContext().setSiteRoot(importInfo.getImportSiteRoot());
-		PrintStream ps = new PrintStream(new WriterOutputStream(out));
-
-		try {
-
-			I_CmsReport report = new CmsPrintStreamReport(ps, cmsObject.getRequestContext().getLocale(), false);
-
-			if (OpenCms.getModuleManager().getModule(moduleName) != null) {
-				OpenCms.getModuleManager().deleteModule(
-						cmsObject,
-						moduleName,
-						true,
-						report);
-				ps.flush();
-				out.flush();
-			}
-
-			CmsImportParameters params = new CmsImportParameters(moduleZipPath, "/", true);
-			OpenCms.getImportExportManager().importData(
-					cmsObject,
-					report,
-					params);
-			ps.flush();
-			out.println("******** Importing module zip " + moduleZipName + " to siteRoot " + importInfo.getImportSiteRoot() + " FINISHED ********");
-			out.flush();
+		else if (IDEConnectorConst.SERVICE_MODULE_MANIFESTS.equals(service)) {
+			handler.getModuleManifests();
 		}
-		catch (CmsException e) {
-			LOG.error("Error importing module " + moduleZipPath, e);
+		else if (IDEConnectorConst.SERVICE_PUBLISH.equals(service)) {
+			handler.publish();
 		}
-		cmsObject.getRequestContext().setSiteRoot(siteRootBefore);
-	}
-
-	private boolean checkLogin() {
-		if (cmsObjects.containsKey(getToken())) {
-			return true;
+		else if (IDEConnectorConst.SERVICE_PUBLISH_STATUS.equals(service)) {
+			handler.getPublishStatus();
+		}
+		else if (IDEConnectorConst.SERVICE_LOGOUT.equals(service)) {
+			handler.logout();
 		}
 		else {
-			try {
-				response.sendError(401, "Not logged in, access denied.");
-			}
-			catch (IOException e) {
-				LOG.error("Exception sending 401 (not logged in)", e);
-			}
 			return false;
 		}
+		return true;
 	}
 
-	private String getToken() {
-		return request.getParameter(IDEConnectorConst.PARAM_TOKEN);
-	}
-
-	private CmsObject getCmsObject() {
-		return cmsObjects.get(getToken());
+	/**
+	 * Executes the sub-requests of a batch one after the other, so IDEs can combine bursts of small calls into one
+	 * round trip. The sub-requests are sent as JSON list of {@link BatchRequest}s, all sub-requests are executed with
+	 * the batch's token unless they provide their own. If a sub-request logs in successfully, the new token is used for
+	 * the following sub-requests.
+	 * <br /><br />
+	 * The response is newline-delimited JSON (NDJSON): one {@link BatchResponse} per sub-request, containing the
+	 * sub-request's status and body, sent as soon as the sub-request has been executed. A failing sub-request doesn't
+	 * abort the batch. Batches can't be nested and sub-requests can't upload files. importModule can't be batched
+	 * either (the import log would have to be buffered until the import has finished), batches use submitImport and
+	 * importStatus instead.
+	 * @param request   the batch's request
+	 * @param response  the batch's response
+	 * @param handler   the handler for the batch's request
+	 * @throws IOException if writing the response fails
+	 */
+	private void executeBatch(HttpServletRequest request, HttpServletResponse response, IDEConnectorServiceHandler handler) throws IOException {
+		List<BatchRequest> subRequests = handler.getBatchRequests();
+		response.setContentType(IDEConnectorConst.CONTENT_TYPE_NDJSON + "; charset=" + StandardCharsets.UTF_8.name());
+		PrintWriter out = response.getWriter();
+		String token = request.getParameter(IDEConnectorConst.PARAM_TOKEN);
+
+		for (int i = 0; i < subRequests.size(); i++) {
+			BatchRequest subRequest = subRequests.get(i);
+			String service = subRequest.getService();
+			BatchSubResponse subResponse = new BatchSubResponse(response);
+			if (IDEConnectorConst.SERVICE_BATCH.equals(service)) {
+				subResponse.sendError(400, "Batches can't be nested");
+			}
+			else if (IDEConnectorConst.SERVICE_IMPORT_MODULE.equals(service)) {
+				subResponse.sendError(400, "importModule can't be batched, use submitImport");
+			}
+			else {
+				try {
+					IDEConnectorServiceHandler subHandler = new IDEConnectorServiceHandler(new BatchSubRequest(request, subRequest, token), subResponse, objectMapper, sessionStore, importJobManager, publishJobManager);
+					if (!executeService(service, subHandler)) {
+						subResponse.sendError(404, "Service not found: " + service);
+					}
+					else if (IDEConnectorConst.SERVICE_LOGIN.equals(service) && subResponse.getStatus() == HttpServletResponse.SC_OK) {
+						LoginStatus loginStatus = objectMapper.readValue(subResponse.getBody(), LoginStatusImpl.class);
+						if (loginStatus.isLoggedIn()) {
+							token = loginStatus.getToken();
+						}
+					}
+				}
+				catch (IOException | RuntimeException e) {
+					LOG.error("Error executing the sub-request " + i + " (" + service + ") of a batch", e);
+					subResponse.sendError(500, "Error executing " + service + ": " + e.getMessage());
+				}
+			}
+			out.println(objectMapper.writeValueAsString(subResponse.toBatchResponse(i, service)));
+			out.flush();
+		}
 	}
 
-	private String getJson() {
-		return request.getParameter(IDEConnectorConst.PARAM_JSON);
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		doGet(req, resp);
 	}
 
-	private <T> List<T> getJsonAsList(Class<T> typeClass) {
-		String json = getJson();
-		JavaType objList = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, typeClass);
-		try {
-			return objectMapper.readValue(json, objList);
-		}
-		catch (IOException e) {
-			LOG.error("Exception converting the JSON request parameter to a List of " + typeClass.getName() + ". Param:\n" + json, e);
-			return new ArrayList<>();
-		}
+	@Override
+	public void init() throws ServletException {
+		LOG.info("Initializing OpenCms IDEConnector servlet");
+		super.init();
 	}
 
-	private void storeCmsObject(String token, CmsObject cmsObject) {
-		cmsObjects.put(token, cmsObject);
+	/**
+	 * Stops the session sweeper and removes all sessions, stops running import jobs and cancels queued import jobs, and
+	 * stops the publish threads and the meta xml worker pool when the servlet is taken out of service.
+	 */
+	@Override
+	public void destroy() {
+		LOG.info("Destroying OpenCms IDEConnector servlet");
+		SessionStore.shutdown();
+		ImportJobManager.shutdown();
+		PublishJobManager.shutdown();
+		PublishCoalescer.shutdown();
+		ParallelMetaXmlGenerator.shutdown();
+		super.destroy();
 	}
 
 }
@@ -0,0 +1,582 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediaworx.opencms.ideconnector.ETagHelper;
+import com.mediaworx.opencms.ideconnector.MetaXmlHelper;
+import com.mediaworx.opencms.ideconnector.MetaXmlStreamer;
+import com.mediaworx.opencms.ideconnector.ModuleParameters;
+import com.mediaworx.opencms.ideconnector.PublishJob;
+import com.mediaworx.opencms.ideconnector.PublishJobManager;
+import com.mediaworx.opencms.ideconnector.data.BatchRequest;
+import com.mediaworx.opencms.ideconnector.data.LoginStatus;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import com.mediaworx.opencms.ideconnector.dataimpl.LoginStatusImpl;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+import com.mediaworx.opencms.ideconnector.report.ProgressEventWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule;
+import org.opencms.util.CmsUUID;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handles a single request to the {@link IDEConnectorService}. The servlet is a singleton serving all requests
+ * concurrently, so everything that belongs to one request (request, response and output writer) is kept in a handler
+ * instance created for that request instead of in servlet fields.
+ * <br /><br />
+ * The CmsObjects of logged in users are shared between requests (they are looked up in the {@link SessionStore} by
+ * the token sent with each request). Since a CmsObject's request context is modified during imports (e.g. the site
+ * root), each request works on its own copy of the user's CmsObject, so concurrent requests using the same token
+ * don't interfere.
+ */
+class IDEConnectorServiceHandler {
+
+	private static final Log LOG = LogFactory.getLog(IDEConnectorServiceHandler.class);
+
+	private static final String OFFLINE_PROJECT = "Offline";
+
+	private final HttpServletRequest request;
+	private final HttpServletResponse response;
+	private final PrintWriter out;
+	private final ObjectMapper objectMapper;
+	private final SessionStore sessionStore;
+	private final ImportJobManager importJobManager;
+	private final PublishJobManager publishJobManager;
+
+	/**
+	 * Creates a new handler for the given request.
+	 * @param request       the request
+	 * @param response      the response
+	 * @param objectMapper  the ObjectMapper used to deserialize or serialize JSON (shared, thread safe)
+	 * @param sessionStore  the store containing the CmsObjects of all logged in users by token (shared, thread safe)
+	 * @param importJobManager  the manager running asynchronous import jobs (shared, thread safe)
+	 * @param publishJobManager the manager running asynchronous publish jobs (shared, thread safe)
+	 * @throws IOException if the response's writer can't be retrieved
+	 */
+	IDEConnectorServiceHandler(HttpServletRequest request, HttpServletResponse response, ObjectMapper objectMapper, SessionStore sessionStore, ImportJobManager importJobManager, PublishJobManager publishJobManager) throws IOException {
+		this.request = request;
+		this.response = response;
+		this.objectMapper = objectMapper;
+		this.sessionStore = sessionStore;
+		this.importJobManager = importJobManager;
+		this.publishJobManager = publishJobManager;
+		out = response.getWriter();
+	}
+
+	/**
+	 * Logs in the user provided in the request parameters and sends the login status (containing the token to be used
+	 * for subsequent requests) as JSON. The session's CmsObject has the Offline project selected, the token may be
+	 * used for the JSP connector as well (see {@link com.mediaworx.opencms.ideconnector.OpenCmsIDEConnector}).
+	 * @throws IOException if writing the response fails
+	 */
+	void login() throws IOException {
+
+		LoginStatus status = new LoginStatusImpl();
+
+		CmsObject cmsObject;
+		try {
+			cmsObject = OpenCms.initCmsObject(OpenCms.getDefaultUsers().getUserGuest());
+		}
+		catch (CmsException e) {
+			String message = "ERROR initializing OpenCms: ";
+			LOG.error(message, e);
+			status.setLoggedIn(false);
+			status.setMessage(message + e.getMessage() + ".\n StackTrace available in the OpenCms log file.");
+			objectMapper.writeValue(out, status);
+			return;
+		}
+
+		String user = request.getParameter(IDEConnectorConst.PARAM_USER);
+		String password = request.getParameter(IDEConnectorConst.PARAM_PASSWORD);
+
+		try {
+			cmsObject.loginUser(user, password);
+			// the Offline project is needed for differential imports and by the JSP connector sharing the session
+			cmsObject.getRequestContext().setCurrentProject(cmsObject.readProject(OFFLINE_PROJECT));
+		}
+		catch (CmsException e) {
+			String message = "ERROR logging in to OpenCms: ";
+			LOG.error(message, e);
+			status.setLoggedIn(false);
+			status.setMessage(message + e.getMessage() + ".\n StackTrace available in the OpenCms log file.");
+			objectMapper.writeValue(out, status);
+			return;
+		}
+
+		String token = (new CmsUUID()).getStringValue();
+		sessionStore.put(token, cmsObject);
+
+		status.setLoggedIn(true);
+		status.setMessage("User " + user + " logged in successfully.");
+		status.setToken(token);
+
+		objectMapper.writeValue(out, status);
+	}
+
+	/**
+	 * Logs out the user identified by the token sent with the request.
+	 */
+	void logout() {
+		sessionStore.remove(getToken());
+		out.println("success");
+	}
+
+	/**
+	 * Imports modules, the import log is streamed to the response. The modules are either provided as JSON list of
+	 * {@link ModuleImportInfo}s pointing to module zips in the server's file system (as request parameter or as request
+	 * body with the content type {@link IDEConnectorConst#CONTENT_TYPE_JSON}), or the module zips are uploaded:
+	 * <ul>
+	 *     <li>as raw request body with the content type {@link IDEConnectorConst#CONTENT_TYPE_ZIP} (one module, the
+	 *     file name may be provided in a <code>Content-Disposition</code> header)</li>
+	 *     <li>as file parts of a <code>multipart/form-data</code> request (one or more modules)</li>
+	 * </ul>
+	 * Uploaded zips are imported to the site root provided in the request parameter
+	 * {@link IDEConnectorConst#PARAM_SITE_ROOT} (default "/") and deleted after the import, the request parameter
+	 * {@link IDEConnectorConst#PARAM_DIFFERENTIAL} requests a differential import (see
+	 * {@link ModuleImportInfo#isDifferential()}), the request parameter {@link IDEConnectorConst#PARAM_FORCE} forces the
+	 * import of unchanged zips (see {@link ModuleImportInfo#isForce()}).
+	 * <br /><br />
+	 * Modules are imported in dependency order, the optional request parameter
+	 * {@link IDEConnectorConst#PARAM_PARALLELISM} controls how many independent modules may be imported concurrently
+	 * (default 1, capped by the module parameter {@link ModuleParameters#PARAM_MAX_IMPORT_PARALLELISM}).
+	 * <br /><br />
+	 * If the request parameter {@link IDEConnectorConst#PARAM_EVENTS} is <code>true</code>, structured progress events
+	 * are streamed as NDJSON (content type {@link IDEConnectorConst#CONTENT_TYPE_NDJSON}) instead of the plain text log.
+	 * @see ModuleImportScheduler
+	 * @see ProgressEventWriter
+	 */
+	void importModules() {
+
+		CmsObject cmsObject = getCmsObject();
+		if (cmsObject != null) {
+			ModuleImportRequest importRequest = readImportRequest();
+			if (importRequest == null) {
+				return;
+			}
+			ProgressEventWriter events = null;
+			if ("true".equals(request.getParameter(IDEConnectorConst.PARAM_EVENTS))) {
+				response.setContentType(IDEConnectorConst.CONTENT_TYPE_NDJSON + "; charset=" + StandardCharsets.UTF_8.name());
+				events = new ProgressEventWriter(out, objectMapper);
+			}
+			try {
+				new ModuleImportScheduler(cmsObject, out, getImportParallelism(), events).importModules(importRequest.getImportInfos(), importRequest.getUploadedModules());
+			}
+			finally {
+				importRequest.deleteUploads();
+				if (events != null) {
+					events.flush();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits an asynchronous import job and sends the job's status as JSON, the response is sent immediately. The
+	 * modules are provided the same way as for {@link #importModules()}. The import log and the import results can be
+	 * polled by {@link #getImportStatus()}. If too many jobs are queued already, 503 is sent.
+	 * @throws IOException if writing the response fails
+	 * @see ImportJobManager
+	 */
+	void submitImport() throws IOException {
+
+		CmsObject cmsObject = getCmsObject();
+		if (cmsObject != null) {
+			ModuleImportRequest importRequest = readImportRequest();
+			if (importRequest == null) {
+				return;
+			}
+			ImportJob job;
+			try {
+				job = importJobManager.submit(cmsObject, importRequest, getImportParallelism());
+			}
+			catch (RejectedExecutionException e) {
+				LOG.error("Import job rejected, too many queued import jobs, " + importJobManager);
+				sendError(503, "Too many queued import jobs, try again later.");
+				return;
+			}
+			objectMapper.writeValue(out, job.getStatus(0));
+		}
+	}
+
+	/**
+	 * Sends the status of the import job with the id provided in the request parameter
+	 * {@link IDEConnectorConst#PARAM_JOB_ID} as JSON. The status contains the job's log starting at the offset provided
+	 * in the request parameter {@link IDEConnectorConst#PARAM_LOG_OFFSET} (default 0). Jobs can only be accessed by the
+	 * user who submitted them, for unknown or expired jobs 404 is sent. The status is sent with an ETag, if the status
+	 * hasn't changed since the client's last poll (request header <code>If-None-Match</code>), 304 is sent.
+	 * @throws IOException if writing the response fails
+	 */
+	void getImportStatus() throws IOException {
+
+		CmsObject cmsObject = sessionStore.get(getToken());
+		if (cmsObject == null) {
+			sendError(401, "Not logged in, access denied.");
+			return;
+		}
+		ImportJob job = importJobManager.get(request.getParameter(IDEConnectorConst.PARAM_JOB_ID));
+		if (job == null || !job.getUserName().equals(cmsObject.getRequestContext().getCurrentUser().getName())) {
+			sendError(404, "Import job not found: " + request.getParameter(IDEConnectorConst.PARAM_JOB_ID));
+			return;
+		}
+		writeWithETag(objectMapper.writeValueAsString(job.getStatus(getLogOffset())));
+	}
+
+	/**
+	 * Streams the resource infos (meta xml) for the resources whose root paths are provided as JSON list of Strings (as
+	 * request parameter or as request body with the content type {@link IDEConnectorConst#CONTENT_TYPE_JSON}), exactly
+	 * like the JSP connector's action "resourceInfos" (see {@link MetaXmlStreamer}): the request parameters
+	 * {@link IDEConnectorConst#PARAM_SUBTREE}, {@link IDEConnectorConst#PARAM_SINCE},
+	 * {@link IDEConnectorConst#PARAM_PARALLELISM}, {@link IDEConnectorConst#PARAM_USE_DATE_VARIABLES},
+	 * {@link IDEConnectorConst#PARAM_USE_ID_VARIABLES} and {@link IDEConnectorConst#PARAM_USE_LEGACY_XML_SERIALIZER}
+	 * correspond to the connector's parameters, the response has the same ETag and sync cursor headers.
+	 * @throws IOException if writing the response fails
+	 */
+	void getResourceInfos() throws IOException {
+
+		CmsObject cmsObject = getCmsObject();
+		if (cmsObject != null) {
+			List<String> paths = getJsonAsList(String.class);
+			boolean subtree = "true".equals(request.getParameter(IDEConnectorConst.PARAM_SUBTREE));
+			createMetaXmlStreamer(cmsObject).streamResourceInfos(paths.toArray(new String[paths.size()]), subtree, getSince(), request, response, out);
+		}
+	}
+
+	/**
+	 * Streams the manifest stubs for the modules whose names are provided as JSON list of Strings (as request parameter
+	 * or as request body with the content type {@link IDEConnectorConst#CONTENT_TYPE_JSON}), exactly like the JSP
+	 * connector's action "moduleManifests" (see {@link MetaXmlStreamer}). The parameters are handled like for
+	 * {@link #getResourceInfos()}.
+	 * @throws IOException if writing the response fails
+	 */
+	void getModuleManifests() throws IOException {
+
+		CmsObject cmsObject = getCmsObject();
+		if (cmsObject != null) {
+			List<String> moduleNames = getJsonAsList(String.class);
+			createMetaXmlStreamer(cmsObject).streamModuleManifests(moduleNames.toArray(new String[moduleNames.size()]), request, response, out);
+		}
+	}
+
+	/**
+	 * Submits an asynchronous publish job for the resources whose root paths are provided as JSON list of Strings (as
+	 * request parameter or as request body with the content type {@link IDEConnectorConst#CONTENT_TYPE_JSON}) and
+	 * sends the job's status as JSON, the response is sent immediately. Sub resources of folders are published if the
+	 * request parameter {@link IDEConnectorConst#PARAM_PUBLISH_SUB_RESOURCES} is <code>true</code>. The publish report
+	 * can be polled by {@link #getPublishStatus()}.
+	 * @throws IOException if writing the response fails
+	 * @see PublishJobManager
+	 */
+	void publish() throws IOException {
+
+		CmsObject cmsObject = getCmsObject();
+		if (cmsObject != null) {
+			List<String> resourcePaths = getJsonAsList(String.class);
+			boolean publishSubResources = "true".equals(request.getParameter(IDEConnectorConst.PARAM_PUBLISH_SUB_RESOURCES));
+			PublishJob job;
+			try {
+				job = publishJobManager.submit(cmsObject, resourcePaths.toArray(new String[resourcePaths.size()]), publishSubResources);
+			}
+			catch (CmsException e) {
+				LOG.error("Error submitting the publish job", e);
+				sendError(500, "Error submitting the publish job: " + e.getMessage());
+				return;
+			}
+			objectMapper.writeValue(out, job.getStatus(0));
+		}
+	}
+
+	/**
+	 * Sends the status of the publish job with the id provided in the request parameter
+	 * {@link IDEConnectorConst#PARAM_JOB_ID} as JSON, including the publish report starting at the offset provided in
+	 * the request parameter {@link IDEConnectorConst#PARAM_LOG_OFFSET} (default 0). Access control, 404 and the ETag
+	 * are handled like for {@link #getImportStatus()}.
+	 * @throws IOException if writing the response fails
+	 */
+	void getPublishStatus() throws IOException {
+
+		CmsObject cmsObject = sessionStore.get(getToken());
+		if (cmsObject == null) {
+			sendError(401, "Not logged in, access denied.");
+			return;
+		}
+		PublishJob job = publishJobManager.get(request.getParameter(IDEConnectorConst.PARAM_JOB_ID));
+		if (job == null || !job.getUserName().equals(cmsObject.getRequestContext().getCurrentUser().getName())) {
+			sendError(404, "Publish job not found: " + request.getParameter(IDEConnectorConst.PARAM_JOB_ID));
+			return;
+		}
+		writeWithETag(objectMapper.writeValueAsString(job.getStatus(getLogOffset())));
+	}
+
+	/**
+	 * Returns the sub-requests of a batch, sent as JSON list of {@link BatchRequest}s (as request parameter or as
+	 * request body with the content type {@link IDEConnectorConst#CONTENT_TYPE_JSON}).
+	 * @return  the sub-requests, an empty list if the JSON can't be parsed
+	 */
+	List<BatchRequest> getBatchRequests() {
+		return getJsonAsList(BatchRequest.class);
+	}
+
+	/**
+	 * Reads the modules to be imported from the request: either the JSON list of {@link ModuleImportInfo}s or the
+	 * uploaded module zips (see {@link #importModules()}).
+	 * @return  the import request or <code>null</code> if the uploads can't be received (then the error is already sent)
+	 */
+	private ModuleImportRequest readImportRequest() {
+		List<ModuleZipUpload> uploads = new ArrayList<>();
+		Map<String, CmsModule> uploadedModules = new HashMap<>();
+		List<ModuleImportInfo> importInfos;
+		if (isZipUpload()) {
+			try {
+				receiveZipUploads(uploads);
+			}
+			catch (IOException | ServletException e) {
+				LOG.error("Error receiving the uploaded module zips", e);
+				for (ModuleZipUpload upload : uploads) {
+					upload.delete();
+				}
+				sendError(400, "Error receiving the uploaded module zips: " + e.getMessage());
+				return null;
+			}
+			importInfos = new ArrayList<>(uploads.size());
+			for (ModuleZipUpload upload : uploads) {
+				ModuleImportInfo importInfo = new ModuleImportInfo();
+				importInfo.setModuleZipPath(upload.getZipFile().getPath());
+				importInfo.setImportSiteRoot(request.getParameter(IDEConnectorConst.PARAM_SITE_ROOT));
+				importInfo.setDifferential("true".equals(request.getParameter(IDEConnectorConst.PARAM_DIFFERENTIAL)));
+				importInfo.setForce("true".equals(request.getParameter(IDEConnectorConst.PARAM_FORCE)));
+				importInfos.add(importInfo);
+				if (upload.getModule() != null) {
+					uploadedModules.put(importInfo.getModuleZipPath(), upload.getModule());
+				}
+			}
+		}
+		else {
+			importInfos = getJsonAsList(ModuleImportInfo.class);
+		}
+		return new ModuleImportRequest(importInfos, uploadedModules, uploads);
+	}
+
+	/**
+	 * @return <code>true</code> if module zips are uploaded with the request (raw or multipart)
+	 */
+	private boolean isZipUpload() {
+		String contentType = request.getContentType();
+		if (contentType == null) {
+			return false;
+		}
+		contentType = contentType.toLowerCase();
+		return contentType.startsWith(IDEConnectorConst.CONTENT_TYPE_ZIP) || contentType.startsWith("multipart/form-data");
+	}
+
+	/**
+	 * Receives the module zips uploaded with the request, each zip is spooled to a temporary file.
+	 * @param uploads   list the received uploads are added to (so they can be deleted even if receiving fails)
+	 * @throws IOException if receiving an upload fails
+	 * @throws ServletException if the multipart request can't be parsed
+	 */
+	private void receiveZipUploads(List<ModuleZipUpload> uploads) throws IOException, ServletException {
+		if (request.getContentType().toLowerCase().startsWith(IDEConnectorConst.CONTENT_TYPE_ZIP)) {
+			String fileName = ModuleZipUpload.getFileName(request.getHeader("Content-Disposition"));
+			uploads.add(ModuleZipUpload.receive(request.getInputStream(), fileName));
+			return;
+		}
+		for (Part part : request.getParts()) {
+			String fileName = ModuleZipUpload.getFileName(part.getHeader("Content-Disposition"));
+			if (fileName == null) {
+				// no file, but a regular form field
+				continue;
+			}
+			try {
+				uploads.add(ModuleZipUpload.receive(part.getInputStream(), fileName));
+			}
+			finally {
+				part.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of modules that may be imported concurrently as requested by the request parameter
+	 * {@link IDEConnectorConst#PARAM_PARALLELISM}, capped by the module parameter
+	 * {@link ModuleParameters#PARAM_MAX_IMPORT_PARALLELISM}.
+	 * @return  the import parallelism, <code>1</code> if the parameter is missing or invalid
+	 */
+	private int getImportParallelism() {
+		int maxParallelism = ModuleParameters.getIntParameter(ModuleParameters.PARAM_MAX_IMPORT_PARALLELISM, ModuleParameters.DEFAULT_MAX_IMPORT_PARALLELISM);
+		return Math.max(1, Math.min(getRequestedParallelism(), maxParallelism));
+	}
+
+	/**
+	 * @return  the parallelism requested by the request parameter {@link IDEConnectorConst#PARAM_PARALLELISM},
+	 *          <code>1</code> if the parameter is missing or invalid
+	 */
+	private int getRequestedParallelism() {
+		String parallelism = request.getParameter(IDEConnectorConst.PARAM_PARALLELISM);
+		if (parallelism == null || parallelism.length() == 0) {
+			return 1;
+		}
+		try {
+			return Math.max(1, Integer.parseInt(parallelism));
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for parameter " + IDEConnectorConst.PARAM_PARALLELISM + ", working sequentially: " + parallelism);
+			return 1;
+		}
+	}
+
+	/**
+	 * Returns a copy of the CmsObject of the user identified by the token sent with the request, so the request
+	 * context can be modified without affecting concurrent requests using the same token. If the user isn't logged
+	 * in or the session has expired, 401 is sent.
+	 * @return  the copy of the user's CmsObject or <code>null</code> if the user isn't logged in or the copy can't be
+	 *          created (then the error is already sent)
+	 */
+	private CmsObject getCmsObject() {
+		CmsObject cmsObject = sessionStore.get(getToken());
+		if (cmsObject == null) {
+			sendError(401, "Not logged in, access denied.");
+			return null;
+		}
+		try {
+			return OpenCms.initCmsObject(cmsObject);
+		}
+		catch (CmsException e) {
+			LOG.error("Error initializing the CmsObject for the request", e);
+			sendError(500, "Error initializing the CmsObject for the request: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return  the log offset provided in the request parameter {@link IDEConnectorConst#PARAM_LOG_OFFSET}, <code>0</code>
+	 *          if the parameter is missing or invalid
+	 */
+	private long getLogOffset() {
+		String logOffset = request.getParameter(IDEConnectorConst.PARAM_LOG_OFFSET);
+		if (logOffset == null || logOffset.length() == 0) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(logOffset);
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for parameter " + IDEConnectorConst.PARAM_LOG_OFFSET + ", returning the whole log: " + logOffset);
+			return 0;
+		}
+	}
+
+	/**
+	 * Sends the given JSON with its ETag. If the request header <code>If-None-Match</code> contains the ETag, 304 is
+	 * sent instead.
+	 * @param json  the JSON to be sent
+	 */
+	private void writeWithETag(String json) {
+		String etag = ETagHelper.createETag(json);
+		response.setHeader(IDEConnectorConst.HEADER_ETAG, etag);
+		if (ETagHelper.isNotModified(request.getHeader(IDEConnectorConst.HEADER_IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		out.write(json);
+	}
+
+	/**
+	 * @param cmsObject the request's CmsObject
+	 * @return  a streamer for manifest stubs and resource infos using the placeholders, the serializer and the
+	 *          parallelism requested by the request parameters
+	 */
+	private MetaXmlStreamer createMetaXmlStreamer(CmsObject cmsObject) {
+		MetaXmlHelper xmlHelper = new MetaXmlHelper(cmsObject);
+		xmlHelper.setUseDateVariables("true".equals(request.getParameter(IDEConnectorConst.PARAM_USE_DATE_VARIABLES)));
+		xmlHelper.setUseIdVariables("true".equals(request.getParameter(IDEConnectorConst.PARAM_USE_ID_VARIABLES)));
+		xmlHelper.setUseStreamingSerializer(!"true".equals(request.getParameter(IDEConnectorConst.PARAM_USE_LEGACY_XML_SERIALIZER)));
+		return new MetaXmlStreamer(cmsObject, xmlHelper, getRequestedParallelism());
+	}
+
+	/**
+	 * @return  the "since" cursor provided in the request parameter {@link IDEConnectorConst#PARAM_SINCE} or
+	 *          {@link MetaXmlStreamer#NO_SINCE} if the parameter is missing or invalid
+	 */
+	private long getSince() {
+		String since = request.getParameter(IDEConnectorConst.PARAM_SINCE);
+		if (since == null || since.length() == 0) {
+			return MetaXmlStreamer.NO_SINCE;
+		}
+		try {
+			return Long.parseLong(since);
+		}
+		catch (NumberFormatException e) {
+			LOG.error("Invalid value for parameter " + IDEConnectorConst.PARAM_SINCE + ", all resources are returned: " + since);
+			return MetaXmlStreamer.NO_SINCE;
+		}
+	}
+
+	private void sendError(int status, String message) {
+		try {
+			response.sendError(status, message);
+		}
+		catch (IOException e) {
+			LOG.error("Exception sending " + status + " (" + message + ")", e);
+		}
+	}
+
+	private String getToken() {
+		return request.getParameter(IDEConnectorConst.PARAM_TOKEN);
+	}
+
+	/**
+	 * @return <code>true</code> if the request's payload is sent as JSON request body instead of a request parameter
+	 */
+	private boolean isJsonBody() {
+		String contentType = request.getContentType();
+		return contentType != null && contentType.toLowerCase().startsWith(IDEConnectorConst.CONTENT_TYPE_JSON);
+	}
+
+	private String getJson() {
+		return request.getParameter(IDEConnectorConst.PARAM_JSON);
+	}
+
+	/**
+	 * Returns the list of beans sent with the request, either as request body with the content type
+	 * {@link IDEConnectorConst#CONTENT_TYPE_JSON} (parsed incrementally while the body is read) or as request parameter
+	 * {@link IDEConnectorConst#PARAM_JSON}.
+	 * @param typeClass the beans' type
+	 * @return  the beans, an empty list if the JSON can't be parsed
+	 */
+	private <T> List<T> getJsonAsList(Class<T> typeClass) {
+		JavaType objList = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, typeClass);
+		if (isJsonBody()) {
+			try {
+				return objectMapper.readValue(request.getInputStream(), objList);
+			}
+			catch (IOException e) {
+				LOG.error("Exception converting the JSON request body to a List of " + typeClass.getName(), e);
+				return new ArrayList<>();
+			}
+		}
+		String json = getJson();
+		try {
+			return objectMapper.readValue(json, objList);
+		}
+		catch (IOException e) {
+			LOG.error("Exception converting the JSON request parameter to a List of " + typeClass.getName() + ". Param:\n" + json, e);
+			return new ArrayList<>();
+		}
+	}
+}
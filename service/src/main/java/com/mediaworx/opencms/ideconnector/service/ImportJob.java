@@ -0,0 +1,131 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.data.ImportJobStatus;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportResult;
+import com.mediaworx.opencms.ideconnector.dataimpl.ImportJobStatusImpl;
+import com.mediaworx.opencms.ideconnector.report.JobLog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * An asynchronous module import, run by the {@link ImportJobManager}. The import log is kept in a {@link JobLog}, so
+ * clients can poll the job's status and tail the log while the job is running and for a while after it has finished.
+ */
+class ImportJob implements Runnable {
+
+	private static final Log LOG = LogFactory.getLog(ImportJob.class);
+
+	private final String id;
+	private final String userName;
+	private final CmsObject cmsObject;
+	private final ModuleImportRequest importRequest;
+	private final int parallelism;
+
+	private final JobLog log = new JobLog();
+
+	private volatile String state = ImportJobStatus.STATE_QUEUED;
+	private final long dateSubmitted;
+	private volatile long dateStarted;
+	private volatile long dateFinished;
+	private volatile List<ModuleImportResult> moduleResults;
+	private volatile String message;
+
+	/**
+	 * Creates a new job.
+	 * @param id            the job's id
+	 * @param cmsObject     the CmsObject used for the import (a copy owned by the job)
+	 * @param importRequest the modules to be imported, uploads are deleted when the job is done
+	 * @param parallelism   the maximum number of modules imported concurrently
+	 */
+	ImportJob(String id, CmsObject cmsObject, ModuleImportRequest importRequest, int parallelism) {
+		this.id = id;
+		this.userName = cmsObject.getRequestContext().getCurrentUser().getName();
+		this.cmsObject = cmsObject;
+		this.importRequest = importRequest;
+		this.parallelism = parallelism;
+		dateSubmitted = System.currentTimeMillis();
+	}
+
+	/**
+	 * Runs the import, exceptions are logged, so the job never throws exceptions.
+	 */
+	@Override
+	public void run() {
+		dateStarted = System.currentTimeMillis();
+		state = ImportJobStatus.STATE_RUNNING;
+		PrintWriter out = new PrintWriter(log);
+		try {
+			moduleResults = new ModuleImportScheduler(cmsObject, out, parallelism).importModules(importRequest.getImportInfos(), importRequest.getUploadedModules());
+			state = ImportJobStatus.STATE_FINISHED;
+		}
+		catch (RuntimeException e) {
+			LOG.error("Error running import job " + id, e);
+			message = e.toString();
+			out.println("######## Import job FAILED: " + e + " ########");
+			state = ImportJobStatus.STATE_FAILED;
+		}
+		finally {
+			out.flush();
+			importRequest.deleteUploads();
+			dateFinished = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Marks the job as failed because it was never run (e.g. the server is shut down).
+	 */
+	void cancel() {
+		importRequest.deleteUploads();
+		message = "The import job was cancelled before it was started";
+		dateFinished = System.currentTimeMillis();
+		state = ImportJobStatus.STATE_FAILED;
+	}
+
+	String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the name of the user who submitted the job, only this user may access the job
+	 */
+	String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * @param now       the current time
+	 * @param retention the time finished jobs are kept (in milliseconds)
+	 * @return  <code>true</code> if the job has finished longer than the retention time ago
+	 */
+	boolean isExpired(long now, long retention) {
+		return dateFinished > 0 && now - dateFinished > retention;
+	}
+
+	/**
+	 * Returns the job's status including the import log starting at the given offset.
+	 * @param logOffset the offset of the first log character to be returned
+	 * @return  the job's status
+	 */
+	ImportJobStatus getStatus(long logOffset) {
+		ImportJobStatusImpl status = new ImportJobStatusImpl();
+		status.setJobId(id);
+		status.setState(state);
+		status.setDateSubmitted(dateSubmitted);
+		status.setDateStarted(dateStarted);
+		status.setDateFinished(dateFinished);
+		if (dateStarted > 0) {
+			status.setDurationMillis((dateFinished > 0 ? dateFinished : System.currentTimeMillis()) - dateStarted);
+		}
+		status.setModuleResults(moduleResults);
+		status.setMessage(message);
+		JobLog.Tail tail = log.getTail(logOffset);
+		status.setLogOffset(tail.getOffset());
+		status.setLog(tail.getLog());
+		status.setNextLogOffset(tail.getNextOffset());
+		return status;
+	}
+}
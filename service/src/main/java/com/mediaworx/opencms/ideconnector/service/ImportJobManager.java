@@ -0,0 +1,203 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.ModuleParameters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+import org.opencms.util.CmsUUID;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs asynchronous import jobs submitted to the {@link IDEConnectorService}, so imports don't depend on the HTTP
+ * connection of the client that started them.
+ * <br /><br />
+ * Jobs run on a bounded executor: at most {@link ModuleParameters#PARAM_MAX_IMPORT_JOBS} jobs run concurrently, at
+ * most {@link ModuleParameters#PARAM_MAX_QUEUED_IMPORT_JOBS} jobs wait for a free thread, further jobs are rejected.
+ * Finished jobs (status, module results and log) are kept for {@link ModuleParameters#PARAM_IMPORT_JOB_RETENTION}
+ * minutes and are removed by a background sweeper running once a minute.
+ * <br /><br />
+ * Jobs importing the same module (and synchronous imports of that module) don't run the module's import
+ * concurrently, the {@link ModuleImportScheduler} serializes them by module name.
+ */
+public class ImportJobManager {
+
+	private static final Log LOG = LogFactory.getLog(ImportJobManager.class);
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+	private static final long SWEEP_INTERVAL_MINUTES = 1;
+
+	private static ImportJobManager instance;
+
+	private final long retentionMillis;
+	private final ConcurrentHashMap<String, ImportJob> jobs = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor executor;
+	private final ScheduledExecutorService sweeper;
+
+	private ImportJobManager(int maxJobs, int maxQueuedJobs, long retentionMillis) {
+		this.retentionMillis = retentionMillis;
+		executor = new ThreadPoolExecutor(maxJobs, maxJobs, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(maxQueuedJobs), new ImportJobThreadFactory());
+		sweeper = Executors.newSingleThreadScheduledExecutor(new SweeperThreadFactory());
+		sweeper.scheduleWithFixedDelay(new Sweeper(), SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Returns the shared job manager, on first access the manager is created with the limits configured in the module
+	 * parameters.
+	 * @return the shared job manager
+	 */
+	public static synchronized ImportJobManager getInstance() {
+		if (instance == null) {
+			int maxJobs = ModuleParameters.getIntParameter(ModuleParameters.PARAM_MAX_IMPORT_JOBS, ModuleParameters.DEFAULT_MAX_IMPORT_JOBS);
+			int maxQueuedJobs = ModuleParameters.getIntParameter(ModuleParameters.PARAM_MAX_QUEUED_IMPORT_JOBS, ModuleParameters.DEFAULT_MAX_QUEUED_IMPORT_JOBS);
+			long retention = ModuleParameters.getIntParameter(ModuleParameters.PARAM_IMPORT_JOB_RETENTION, ModuleParameters.DEFAULT_IMPORT_JOB_RETENTION);
+			instance = new ImportJobManager(Math.max(1, maxJobs), Math.max(1, maxQueuedJobs), Math.max(0, retention) * MILLIS_PER_MINUTE);
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops the executor and the sweeper of the shared job manager. Running jobs are interrupted, queued jobs are
+	 * cancelled. Called when the {@link IDEConnectorService} is taken out of service.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			LOG.info("Shutting down " + instance);
+			instance.sweeper.shutdownNow();
+			List<Runnable> queuedJobs = instance.executor.shutdownNow();
+			for (Runnable queuedJob : queuedJobs) {
+				((ImportJob)queuedJob).cancel();
+			}
+			instance.jobs.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Submits a new import job.
+	 * @param cmsObject     the CmsObject used for the import (a copy owned by the job)
+	 * @param importRequest the modules to be imported, uploads are deleted when the job is done
+	 * @param parallelism   the maximum number of modules imported concurrently
+	 * @return  the submitted job
+	 * @throws RejectedExecutionException if the maximum number of queued jobs is reached (then the uploads are deleted)
+	 */
+	ImportJob submit(CmsObject cmsObject, ModuleImportRequest importRequest, int parallelism) {
+		ImportJob job = new ImportJob(new CmsUUID().getStringValue(), cmsObject, importRequest, parallelism);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(job);
+		}
+		catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			importRequest.deleteUploads();
+			throw e;
+		}
+		return job;
+	}
+
+	/**
+	 * @param jobId the job's id
+	 * @return  the job with the given id or <code>null</code> if there's no such job (or it has expired)
+	 */
+	ImportJob get(String jobId) {
+		return jobId != null ? jobs.get(jobId) : null;
+	}
+
+	/**
+	 * Removes all finished jobs that have been kept for the retention time.
+	 * @return  the number of removed jobs
+	 */
+	public int removeExpired() {
+		long now = System.currentTimeMillis();
+		int numRemoved = 0;
+		Iterator<ImportJob> it = jobs.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isExpired(now, retentionMillis)) {
+				it.remove();
+				numRemoved++;
+			}
+		}
+		return numRemoved;
+	}
+
+	/**
+	 * @return the number of jobs (queued, running and finished)
+	 */
+	public int size() {
+		return jobs.size();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{jobs=" + jobs.size() + ", running=" + executor.getActiveCount()
+				+ ", queued=" + executor.getQueue().size() + "}";
+	}
+
+	/**
+	 * Periodically removes expired jobs.
+	 */
+	private class Sweeper implements Runnable {
+
+		Sweeper() {
+		}
+
+		@Override
+		public void run() {
+			try {
+				int numRemoved = removeExpired();
+				if (numRemoved > 0 && LOG.isDebugEnabled()) {
+					LOG.debug("Removed " + numRemoved + " expired import jobs, " + ImportJobManager.this);
+				}
+			}
+			catch (RuntimeException e) {
+				// must not be thrown, otherwise the sweeper stops
+				LOG.error("Error removing expired import jobs", e);
+			}
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for the import jobs.
+	 */
+	private static class ImportJobThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		ImportJobThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-ImportJob-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Creates the daemon thread for the sweeper.
+	 */
+	private static class SweeperThreadFactory implements ThreadFactory {
+
+		SweeperThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-ImportJobSweeper");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,537 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.opencms.file.CmsFile;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProperty;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.file.types.I_CmsResourceType;
+import org.opencms.importexport.CmsImportExportManager;
+import org.opencms.importexport.CmsImportVersion7;
+import org.opencms.lock.CmsLock;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule;
+import org.opencms.util.CmsDateUtil;
+import org.opencms.util.CmsUUID;
+import org.opencms.xml.CmsXmlException;
+import org.opencms.xml.CmsXmlUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Imports a module zip differentially: instead of deleting the installed module and importing all of its resources,
+ * the resources listed in the zip's manifest are compared to the current VFS state and only the differences are
+ * applied.
+ * <ul>
+ *     <li>resources missing in the VFS are created</li>
+ *     <li>resources found at another path (same structure id) are moved</li>
+ *     <li>resources whose type, ids, flags, dates, properties or content (compared by content hash) differ are
+ *     updated</li>
+ *     <li>resources below the module resources that are not contained in the manifest are deleted, except the
+ *     module's excluded resources (they are never contained in the manifest)</li>
+ *     <li>the module's metadata is updated in place</li>
+ * </ul>
+ * Resources outside of the module resources (e.g. the parent folders of the module folder) are created if they are
+ * missing, but never changed. Relations and access control entries are not compared.
+ * <br /><br />
+ * Can only be used for modules that are installed already, new modules must be imported regularly.
+ */
+class ModuleDiffImporter {
+
+	private static final Log LOG = LogFactory.getLog(ModuleDiffImporter.class);
+
+	private static final String HASH_ALGORITHM = "SHA-1";
+
+	private final CmsObject cmsObject;
+	private final CmsModule module;
+	private final String moduleZipPath;
+	private final PrintWriter out;
+	private final MessageDigest digest;
+	private final Map<String, CmsUUID> userIds = new HashMap<>();
+	private final List<String> moduleResources = new ArrayList<>();
+	private final List<String> excludedResources = new ArrayList<>();
+
+	private int numCreated = 0;
+	private int numMoved = 0;
+	private int numUpdated = 0;
+	private int numDeleted = 0;
+	private int numUnchanged = 0;
+
+	/**
+	 * Creates a new differential importer.
+	 * @param cmsObject     the CmsObject used for the import (with the import site root set)
+	 * @param module        the module read from the zip's manifest
+	 * @param moduleZipPath path to the module zip
+	 * @param out           the writer the import log is written to
+	 */
+	ModuleDiffImporter(CmsObject cmsObject, CmsModule module, String moduleZipPath, PrintWriter out) {
+		this.cmsObject = cmsObject;
+		this.module = module;
+		this.moduleZipPath = moduleZipPath;
+		this.out = out;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+		Set<String> resources = new LinkedHashSet<>(module.getResources());
+		Set<String> excludeResources = new LinkedHashSet<>(module.getExcludeResources());
+		CmsModule installedModule = OpenCms.getModuleManager().getModule(module.getName());
+		if (installedModule != null) {
+			// resources removed from the module are deleted as well
+			resources.addAll(installedModule.getResources());
+			// resources excluded by the installed module aren't contained in the manifest either, don't delete them
+			excludeResources.addAll(installedModule.getExcludeResources());
+		}
+		moduleResources.addAll(resources);
+		excludedResources.addAll(excludeResources);
+	}
+
+	/**
+	 * Applies the differences between the module zip and the VFS.
+	 * @throws CmsException if reading or writing a resource or updating the module fails
+	 * @throws IOException if the module zip can't be read
+	 */
+	void importDiff() throws CmsException, IOException {
+		List<String> lockedRoots = lockModuleResources();
+		try (ZipFile zipFile = new ZipFile(moduleZipPath)) {
+			List<ManifestEntry> entries = readManifestEntries(zipFile);
+			Set<String> manifestPaths = new HashSet<>(entries.size());
+			for (ManifestEntry entry : entries) {
+				manifestPaths.add(entry.path);
+				importEntry(entry, zipFile);
+			}
+			deleteObsoleteResources(manifestPaths);
+		}
+		finally {
+			unlockModuleResources(lockedRoots);
+		}
+		OpenCms.getModuleManager().updateModule(cmsObject, module);
+		out.println("Module " + module.getName() + " updated: " + numCreated + " created, " + numMoved + " moved, "
+				+ numUpdated + " updated, " + numDeleted + " deleted, " + numUnchanged + " unchanged");
+		out.flush();
+	}
+
+	/**
+	 * Creates, moves or updates the resource described by the given manifest entry if it differs from the VFS.
+	 */
+	private void importEntry(ManifestEntry entry, ZipFile zipFile) throws CmsException, IOException {
+		CmsResource existing = readResource(entry.path);
+		if (existing == null && cmsObject.existsResource(entry.structureId, CmsResourceFilter.ALL)) {
+			CmsResource moved = cmsObject.readResource(entry.structureId, CmsResourceFilter.ALL);
+			if (isModuleResource(cmsObject.getSitePath(moved))) {
+				cmsObject.moveResource(cmsObject.getSitePath(moved), entry.path);
+				out.println("  moved " + cmsObject.getSitePath(moved) + " -> " + entry.path);
+				numMoved++;
+				existing = readResource(entry.path);
+			}
+		}
+		if (existing != null && !isModuleResource(entry.path)) {
+			// parent folders of the module resources are never changed
+			numUnchanged++;
+			return;
+		}
+
+		byte[] content = entry.source != null ? readZipEntry(zipFile, entry.source) : null;
+
+		boolean undeleted = false;
+		if (existing != null) {
+			if (!existing.getStructureId().equals(entry.structureId)) {
+				// a different resource with the same path, replace it
+				cmsObject.deleteResource(entry.path, CmsResource.DELETE_PRESERVE_SIBLINGS);
+				existing = null;
+			}
+			else if (existing.getState().isDeleted()) {
+				cmsObject.undeleteResource(entry.path, false);
+				undeleted = true;
+			}
+		}
+
+		List<CmsProperty> properties = existing != null ? getChangedProperties(entry, existing) : entry.properties;
+		if (existing != null && !undeleted && properties.isEmpty() && isUnchanged(entry, existing, content)) {
+			numUnchanged++;
+			return;
+		}
+
+		String resourcePath = entry.type.isFolder() ? entry.path + "/" : entry.path;
+		CmsUUID resourceId = entry.resourceId;
+		if (resourceId == null) {
+			// folders don't have a resource id in the manifest
+			resourceId = existing != null ? existing.getResourceId() : new CmsUUID();
+		}
+		CmsResource resource = createResource(entry, resourcePath, resourceId, content);
+		cmsObject.importResource(resourcePath, resource, content, null);
+		if (!properties.isEmpty()) {
+			cmsObject.writePropertyObjects(entry.path, properties);
+		}
+		if (existing != null) {
+			out.println("  updated " + entry.path);
+			numUpdated++;
+		}
+		else {
+			out.println("  created " + entry.path);
+			numCreated++;
+		}
+	}
+
+	/**
+	 * Compares the attributes and the content of the existing resource with the manifest entry. Properties are
+	 * compared separately. Dates are compared at second granularity, since the manifest's dates have one-second
+	 * precision.
+	 */
+	private boolean isUnchanged(ManifestEntry entry, CmsResource existing, byte[] content) throws CmsException {
+		if (existing.getTypeId() != entry.type.getTypeId()
+				|| (entry.resourceId != null && !existing.getResourceId().equals(entry.resourceId))
+				|| existing.getFlags() != entry.flags
+				|| !isSameSecond(existing.getDateLastModified(), entry.dateLastModified)
+				|| !isSameSecond(existing.getDateReleased(), entry.dateReleased)
+				|| !isSameSecond(existing.getDateExpired(), entry.dateExpired)) {
+			return false;
+		}
+		if (content == null || existing.isFolder()) {
+			return true;
+		}
+		if (existing.getLength() != content.length) {
+			// no need to read the content to know that it differs
+			return false;
+		}
+		CmsFile file = cmsObject.readFile(existing);
+		return Arrays.equals(hash(content), hash(file.getContents()));
+	}
+
+	/**
+	 * Returns the properties to be written so the existing resource's properties match the manifest entry. Values
+	 * contained in the VFS but not in the manifest are deleted.
+	 * @return  the properties to be written, empty if the properties are unchanged
+	 */
+	private List<CmsProperty> getChangedProperties(ManifestEntry entry, CmsResource existing) throws CmsException {
+		Map<String, CmsProperty> existingProperties = new HashMap<>();
+		for (CmsProperty property : cmsObject.readPropertyObjects(existing, false)) {
+			existingProperties.put(property.getName(), property);
+		}
+		List<CmsProperty> changedProperties = new ArrayList<>();
+		for (CmsProperty property : entry.properties) {
+			CmsProperty existingProperty = existingProperties.remove(property.getName());
+			if (existingProperty == null
+					|| !equal(property.getStructureValue(), existingProperty.getStructureValue())
+					|| !equal(property.getResourceValue(), existingProperty.getResourceValue())) {
+				String structureValue = property.getStructureValue();
+				String resourceValue = property.getResourceValue();
+				if (existingProperty != null && structureValue == null && existingProperty.getStructureValue() != null) {
+					structureValue = CmsProperty.DELETE_VALUE;
+				}
+				if (existingProperty != null && resourceValue == null && existingProperty.getResourceValue() != null) {
+					resourceValue = CmsProperty.DELETE_VALUE;
+				}
+				changedProperties.add(new CmsProperty(property.getName(), structureValue, resourceValue, true));
+			}
+		}
+		for (CmsProperty obsoleteProperty : existingProperties.values()) {
+			changedProperties.add(new CmsProperty(
+					obsoleteProperty.getName(),
+					obsoleteProperty.getStructureValue() != null ? CmsProperty.DELETE_VALUE : null,
+					obsoleteProperty.getResourceValue() != null ? CmsProperty.DELETE_VALUE : null));
+		}
+		return changedProperties;
+	}
+
+	/**
+	 * Deletes all resources below the module resources that are not contained in the manifest. Resources excluded by
+	 * the installed or the imported module are never exported to the manifest, so they are kept.
+	 */
+	private void deleteObsoleteResources(Set<String> manifestPaths) throws CmsException {
+		TreeSet<String> obsoletePaths = new TreeSet<>();
+		for (String moduleResource : moduleResources) {
+			CmsResource root = readResource(moduleResource);
+			if (root == null) {
+				continue;
+			}
+			List<CmsResource> resources = new ArrayList<>();
+			resources.add(root);
+			if (root.isFolder()) {
+				resources.addAll(cmsObject.readResources(moduleResource, CmsResourceFilter.ALL, true));
+			}
+			for (CmsResource resource : resources) {
+				String path = cmsObject.getSitePath(resource);
+				if (!resource.getState().isDeleted() && !manifestPaths.contains(trimTrailingSlash(path))
+						&& !isExcludedResource(path)) {
+					obsoletePaths.add(path);
+				}
+			}
+		}
+		String deletedFolder = null;
+		for (String path : obsoletePaths) {
+			// paths are sorted, so the contents of a deleted folder follow the folder and are deleted with it
+			if (deletedFolder != null && path.startsWith(deletedFolder)) {
+				continue;
+			}
+			cmsObject.deleteResource(path, CmsResource.DELETE_PRESERVE_SIBLINGS);
+			out.println("  deleted " + path);
+			numDeleted++;
+			if (path.endsWith("/")) {
+				deletedFolder = path;
+			}
+		}
+	}
+
+	/**
+	 * Locks the existing module resources that aren't locked by the current user yet.
+	 * @return  the paths of the locked resources
+	 */
+	private List<String> lockModuleResources() throws CmsException {
+		List<String> lockedRoots = new ArrayList<>();
+		for (String moduleResource : moduleResources) {
+			CmsResource resource = readResource(moduleResource);
+			if (resource == null) {
+				continue;
+			}
+			CmsLock lock = cmsObject.getLock(resource);
+			if (lock.isUnlocked()) {
+				cmsObject.lockResource(resource);
+				lockedRoots.add(moduleResource);
+			}
+			else if (!lock.isOwnedBy(cmsObject.getRequestContext().getCurrentUser())) {
+				cmsObject.lockResource(resource);
+			}
+		}
+		return lockedRoots;
+	}
+
+	private void unlockModuleResources(List<String> lockedRoots) {
+		for (String moduleResource : lockedRoots) {
+			try {
+				if (readResource(moduleResource) != null) {
+					cmsObject.unlockResource(moduleResource);
+				}
+			}
+			catch (CmsException e) {
+				LOG.warn("Error unlocking the module resource " + moduleResource + " after the differential import", e);
+			}
+		}
+	}
+
+	private List<ManifestEntry> readManifestEntries(ZipFile zipFile) throws IOException, CmsException {
+		Document manifest;
+		try {
+			manifest = CmsXmlUtils.unmarshalHelper(readZipEntry(zipFile, CmsImportExportManager.EXPORT_MANIFEST), null);
+		}
+		catch (CmsXmlException e) {
+			throw new IOException("The manifest of " + moduleZipPath + " can't be parsed", e);
+		}
+		Element filesElement = manifest.getRootElement().element(CmsImportVersion7.N_FILES);
+		List<ManifestEntry> entries = new ArrayList<>();
+		if (filesElement == null) {
+			return entries;
+		}
+		for (Object fileNode : filesElement.elements(CmsImportVersion7.N_FILE)) {
+			entries.add(new ManifestEntry((Element) fileNode));
+		}
+		return entries;
+	}
+
+	private CmsResource createResource(ManifestEntry entry, String resourcePath, CmsUUID resourceId, byte[] content) {
+		CmsUUID currentUserId = cmsObject.getRequestContext().getCurrentUser().getId();
+		return new CmsResource(
+				entry.structureId,
+				resourceId,
+				cmsObject.getRequestContext().addSiteRoot(resourcePath),
+				entry.type,
+				entry.flags,
+				cmsObject.getRequestContext().getCurrentProject().getUuid(),
+				CmsResource.STATE_NEW,
+				entry.dateCreated,
+				getUserId(entry.userCreated, currentUserId),
+				entry.dateLastModified,
+				getUserId(entry.userLastModified, currentUserId),
+				entry.dateReleased,
+				entry.dateExpired,
+				1,
+				content != null ? content.length : -1,
+				entry.dateLastModified,
+				0);
+	}
+
+	private CmsUUID getUserId(String userName, CmsUUID defaultId) {
+		if (userName == null) {
+			return defaultId;
+		}
+		CmsUUID userId = userIds.get(userName);
+		if (userId == null) {
+			try {
+				userId = cmsObject.readUser(userName).getId();
+			}
+			catch (CmsException e) {
+				// user doesn't exist on this OpenCms instance
+				userId = defaultId;
+			}
+			userIds.put(userName, userId);
+		}
+		return userId;
+	}
+
+	private CmsResource readResource(String path) throws CmsException {
+		if (!cmsObject.existsResource(path, CmsResourceFilter.ALL)) {
+			return null;
+		}
+		return cmsObject.readResource(path, CmsResourceFilter.ALL);
+	}
+
+	private boolean isModuleResource(String path) {
+		return isBelow(path, moduleResources);
+	}
+
+	/**
+	 * @return <code>true</code> if the resource with the given path is excluded from the module or is a folder
+	 *          containing excluded resources (which would be deleted with the folder)
+	 */
+	private boolean isExcludedResource(String path) {
+		if (isBelow(path, excludedResources)) {
+			return true;
+		}
+		for (String excludedResource : excludedResources) {
+			if (isBelow(excludedResource, Collections.singletonList(path))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private byte[] hash(byte[] content) {
+		digest.reset();
+		return digest.digest(content);
+	}
+
+	private static byte[] readZipEntry(ZipFile zipFile, String name) throws IOException {
+		ZipEntry zipEntry = zipFile.getEntry(name);
+		if (zipEntry == null) {
+			throw new IOException("The module zip doesn't contain " + name);
+		}
+		try (InputStream in = zipFile.getInputStream(zipEntry)) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the given path is one of the given resources or below one of them
+	 */
+	private static boolean isBelow(String path, List<String> resources) {
+		String folderPath = path.endsWith("/") ? path : path + "/";
+		for (String resource : resources) {
+			String resourceFolderPath = resource.endsWith("/") ? resource : resource + "/";
+			if (folderPath.startsWith(resourceFolderPath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSameSecond(long date1, long date2) {
+		return date1 / 1000 == date2 / 1000;
+	}
+
+	private static String trimTrailingSlash(String path) {
+		return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+	}
+
+	private static boolean equal(String value1, String value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+	/**
+	 * A file node of the manifest.
+	 */
+	private static class ManifestEntry {
+
+		private final String source;
+		private final String path;
+		private final I_CmsResourceType type;
+		private final CmsUUID structureId;
+		/** <code>null</code> for folders */
+		private final CmsUUID resourceId;
+		private final long dateLastModified;
+		private final String userLastModified;
+		private final long dateCreated;
+		private final String userCreated;
+		private final long dateReleased;
+		private final long dateExpired;
+		private final int flags;
+		private final List<CmsProperty> properties = new ArrayList<>();
+
+		ManifestEntry(Element fileElement) throws CmsException {
+			source = fileElement.elementText(CmsImportVersion7.N_SOURCE);
+			path = trimTrailingSlash("/" + fileElement.elementText(CmsImportVersion7.N_DESTINATION));
+			type = OpenCms.getResourceManager().getResourceType(fileElement.elementText(CmsImportVersion7.N_TYPE));
+			structureId = new CmsUUID(fileElement.elementText(CmsImportVersion7.N_UUIDSTRUCTURE));
+			String resourceIdText = fileElement.elementText(CmsImportVersion7.N_UUIDRESOURCE);
+			resourceId = resourceIdText != null ? new CmsUUID(resourceIdText) : null;
+			dateLastModified = parseDate(fileElement.elementText(CmsImportVersion7.N_DATELASTMODIFIED), System.currentTimeMillis());
+			userLastModified = fileElement.elementText(CmsImportVersion7.N_USERLASTMODIFIED);
+			dateCreated = parseDate(fileElement.elementText(CmsImportVersion7.N_DATECREATED), dateLastModified);
+			userCreated = fileElement.elementText(CmsImportVersion7.N_USERCREATED);
+			dateReleased = parseDate(fileElement.elementText(CmsImportVersion7.N_DATERELEASED), CmsResource.DATE_RELEASED_DEFAULT);
+			dateExpired = parseDate(fileElement.elementText(CmsImportVersion7.N_DATEEXPIRED), CmsResource.DATE_EXPIRED_DEFAULT);
+			String flagsText = fileElement.elementText(CmsImportVersion7.N_FLAGS);
+			flags = flagsText != null ? Integer.parseInt(flagsText.trim()) : 0;
+
+			Element propertiesElement = fileElement.element(CmsImportVersion7.N_PROPERTIES);
+			if (propertiesElement != null) {
+				Map<String, CmsProperty> propertiesByName = new HashMap<>();
+				for (Object propertyNode : propertiesElement.elements(CmsImportVersion7.N_PROPERTY)) {
+					Element propertyElement = (Element) propertyNode;
+					String name = propertyElement.elementText(CmsImportVersion7.N_NAME);
+					String value = propertyElement.elementText(CmsImportVersion7.N_VALUE);
+					CmsProperty property = propertiesByName.get(name);
+					if (property == null) {
+						property = new CmsProperty(name, null, null, true);
+						propertiesByName.put(name, property);
+						properties.add(property);
+					}
+					if (CmsImportVersion7.PROPERTY_ATTRIB_TYPE_SHARED.equals(propertyElement.attributeValue(CmsImportVersion7.A_TYPE))) {
+						property.setResourceValue(value);
+					}
+					else {
+						property.setStructureValue(value);
+					}
+				}
+			}
+		}
+
+		private static long parseDate(String date, long defaultDate) {
+			if (date == null || date.trim().length() == 0) {
+				return defaultDate;
+			}
+			try {
+				return CmsDateUtil.parseHeaderDate(date.trim());
+			}
+			catch (ParseException e) {
+				LOG.warn("Invalid date in module manifest: " + date);
+				return defaultDate;
+			}
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsEvent;
+import org.opencms.main.I_CmsEventListener;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent ledger of the module zips imported by the {@link IDEConnectorService}, so an import of a zip that is
+ * byte-identical to the zip imported last for the same module and site root can be skipped.
+ * <br /><br />
+ * For each module and site root the ledger contains the content hash of the zip imported last and the module's
+ * install date after that import. The ledger is stored in the file <code>WEB-INF/ideconnector/import-ledger.properties</code>
+ * so it survives restarts.
+ * <br /><br />
+ * Entries are dropped when the module is changed by other means:
+ * <ul>
+ *     <li>the module was deleted or (re)installed by the module management (the install date doesn't match)</li>
+ *     <li>resources below the module resources were modified in the VFS (the ledger is registered as OpenCms event
+ *     listener)</li>
+ *     <li>the import of the module failed</li>
+ * </ul>
+ */
+public class ModuleImportLedger implements I_CmsEventListener {
+
+	private static final Log LOG = LogFactory.getLog(ModuleImportLedger.class);
+
+	private static final String LEDGER_FILE = "ideconnector/import-ledger.properties";
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final char KEY_SEPARATOR = '@';
+	private static final char VALUE_SEPARATOR = ',';
+
+	private static ModuleImportLedger instance;
+
+	private final File ledgerFile;
+	private final Properties entries = new Properties();
+
+	private ModuleImportLedger(File ledgerFile) {
+		this.ledgerFile = ledgerFile;
+		if (ledgerFile.isFile()) {
+			try (InputStream in = new FileInputStream(ledgerFile)) {
+				entries.load(in);
+			}
+			catch (IOException e) {
+				LOG.error("The module import ledger " + ledgerFile + " can't be read, starting with an empty ledger", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the shared ledger, on first access the ledger is loaded and registered as OpenCms event listener.
+	 * @return the shared ledger
+	 */
+	public static synchronized ModuleImportLedger getInstance() {
+		if (instance == null) {
+			instance = new ModuleImportLedger(new File(OpenCms.getSystemInfo().getAbsoluteRfsPathRelativeToWebInf(LEDGER_FILE)));
+			OpenCms.addCmsEventListener(instance, new int[] {
+					EVENT_RESOURCE_MODIFIED,
+					EVENT_RESOURCES_MODIFIED,
+					EVENT_RESOURCE_AND_PROPERTIES_MODIFIED,
+					EVENT_RESOURCES_AND_PROPERTIES_MODIFIED,
+					EVENT_PROPERTY_MODIFIED,
+					EVENT_RESOURCE_CREATED,
+					EVENT_RESOURCE_COPIED,
+					EVENT_RESOURCE_DELETED,
+					EVENT_RESOURCE_MOVED
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * Computes the content hash of the given module zip.
+	 * @param zipFile   the module zip
+	 * @return  the hex encoded hash
+	 * @throws IOException if the zip can't be read
+	 */
+	public static String hash(File zipFile) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[8192];
+		try (InputStream in = new FileInputStream(zipFile)) {
+			int numBytes;
+			while ((numBytes = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, numBytes);
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Checks if a zip with the given hash was imported last for the given module and site root and the module wasn't
+	 * changed by other means since.
+	 * @param moduleName    the module's name
+	 * @param siteRoot      the import site root
+	 * @param hash          the hash of the zip to be imported
+	 * @return  <code>true</code> if the import can be skipped
+	 */
+	public synchronized boolean isUnchanged(String moduleName, String siteRoot, String hash) {
+		String entry = entries.getProperty(getKey(moduleName, siteRoot));
+		if (entry == null) {
+			return false;
+		}
+		CmsModule module = OpenCms.getModuleManager().getModule(moduleName);
+		if (module == null || !entry.equals(hash + VALUE_SEPARATOR + module.getDateInstalled())) {
+			remove(moduleName);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Records the successful import of a module zip.
+	 * @param moduleName    the module's name
+	 * @param siteRoot      the import site root
+	 * @param hash          the hash of the imported zip
+	 */
+	public synchronized void record(String moduleName, String siteRoot, String hash) {
+		CmsModule module = OpenCms.getModuleManager().getModule(moduleName);
+		if (module == null) {
+			return;
+		}
+		// the module is installed to one site root only
+		removeEntries(moduleName);
+		entries.setProperty(getKey(moduleName, siteRoot), hash + VALUE_SEPARATOR + module.getDateInstalled());
+		store();
+	}
+
+	/**
+	 * Drops the entries of the given module, so the next import of the module isn't skipped.
+	 * @param moduleName    the module's name
+	 */
+	public synchronized void remove(String moduleName) {
+		if (removeEntries(moduleName)) {
+			store();
+		}
+	}
+
+	/**
+	 * @return the number of modules in the ledger
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Drops the entries of the modules containing modified resources. If the affected resources are unknown, all
+	 * entries are dropped.
+	 * @param event the OpenCms event
+	 */
+	@Override
+	public void cmsEvent(CmsEvent event) {
+		List<String> rootPaths = getRootPaths(event.getData());
+		synchronized (this) {
+			if (entries.isEmpty()) {
+				return;
+			}
+			boolean modified = false;
+			Iterator<Object> it = entries.keySet().iterator();
+			while (it.hasNext()) {
+				String moduleName = getModuleName((String)it.next());
+				if (rootPaths == null || containsModuleResource(moduleName, rootPaths)) {
+					it.remove();
+					modified = true;
+				}
+			}
+			if (modified) {
+				store();
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{size=" + entries.size() + ", file=" + ledgerFile + "}";
+	}
+
+	private boolean removeEntries(String moduleName) {
+		boolean removed = false;
+		Iterator<Object> it = entries.keySet().iterator();
+		while (it.hasNext()) {
+			if (moduleName.equals(getModuleName((String)it.next()))) {
+				it.remove();
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	private void store() {
+		File folder = ledgerFile.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			LOG.error("The folder for the module import ledger " + folder + " can't be created");
+			return;
+		}
+		try (OutputStream out = new FileOutputStream(ledgerFile)) {
+			entries.store(out, "Module zips imported by the IDE connector (module@siteRoot=hash,dateInstalled)");
+		}
+		catch (IOException e) {
+			LOG.error("The module import ledger " + ledgerFile + " can't be written", e);
+		}
+	}
+
+	/**
+	 * Checks if one of the given paths is below the resources of the given module.
+	 */
+	private static boolean containsModuleResource(String moduleName, List<String> rootPaths) {
+		CmsModule module = OpenCms.getModuleManager().getModule(moduleName);
+		if (module == null) {
+			return true;
+		}
+		for (String rootPath : rootPaths) {
+			String siteRoot = OpenCms.getSiteManager().getSiteRoot(rootPath);
+			String sitePath = siteRoot != null ? rootPath.substring(siteRoot.length()) : rootPath;
+			for (String moduleResource : module.getResources()) {
+				if (rootPath.startsWith(moduleResource) || sitePath.startsWith(moduleResource)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the root paths of the resources contained in the given event data.
+	 * @return  the root paths or <code>null</code> if the event doesn't contain the affected resources
+	 */
+	private static List<String> getRootPaths(Map<String, Object> data) {
+		if (data == null) {
+			return null;
+		}
+		Object resource = data.get(KEY_RESOURCE);
+		Object resources = data.get(KEY_RESOURCES);
+		List<String> rootPaths = new ArrayList<>();
+		if (resource instanceof CmsResource) {
+			rootPaths.add(((CmsResource)resource).getRootPath());
+			return rootPaths;
+		}
+		if (resources instanceof List) {
+			for (Object o : (List)resources) {
+				if (!(o instanceof CmsResource)) {
+					return null;
+				}
+				rootPaths.add(((CmsResource)o).getRootPath());
+			}
+			return rootPaths;
+		}
+		return null;
+	}
+
+	private static String getKey(String moduleName, String siteRoot) {
+		return moduleName + KEY_SEPARATOR + siteRoot;
+	}
+
+	private static String getModuleName(String key) {
+		return key.substring(0, key.indexOf(KEY_SEPARATOR));
+	}
+}
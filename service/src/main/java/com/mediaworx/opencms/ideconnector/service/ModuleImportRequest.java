@@ -0,0 +1,47 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import org.opencms.module.CmsModule;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The modules to be imported by one import request, either pointing to module zips in the server's file system or to
+ * uploaded module zips. Uploads must be deleted when the import is done (see {@link #deleteUploads()}).
+ */
+class ModuleImportRequest {
+
+	private final List<ModuleImportInfo> importInfos;
+	private final Map<String, CmsModule> uploadedModules;
+	private final List<ModuleZipUpload> uploads;
+
+	/**
+	 * Creates a new import request.
+	 * @param importInfos       the modules to be imported
+	 * @param uploadedModules   the modules read from the manifests of uploaded zips while receiving them, by zip path
+	 * @param uploads           the uploaded module zips
+	 */
+	ModuleImportRequest(List<ModuleImportInfo> importInfos, Map<String, CmsModule> uploadedModules, List<ModuleZipUpload> uploads) {
+		this.importInfos = importInfos;
+		this.uploadedModules = uploadedModules;
+		this.uploads = uploads;
+	}
+
+	List<ModuleImportInfo> getImportInfos() {
+		return importInfos;
+	}
+
+	Map<String, CmsModule> getUploadedModules() {
+		return uploadedModules;
+	}
+
+	/**
+	 * Deletes the temporary files of the uploaded module zips.
+	 */
+	void deleteUploads() {
+		for (ModuleZipUpload upload : uploads) {
+			upload.delete();
+		}
+	}
+}
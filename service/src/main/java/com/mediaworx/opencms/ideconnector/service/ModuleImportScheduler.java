@@ -0,0 +1,612 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.data.ModuleImportInfo;
+import com.mediaworx.opencms.ideconnector.data.ModuleImportResult;
+import com.mediaworx.opencms.ideconnector.data.ProgressEvent;
+import com.mediaworx.opencms.ideconnector.dataimpl.ModuleImportResultImpl;
+import com.mediaworx.opencms.ideconnector.dataimpl.ProgressEventImpl;
+import com.mediaworx.opencms.ideconnector.report.ProgressEventReport;
+import com.mediaworx.opencms.ideconnector.report.ProgressEventWriter;
+import org.apache.commons.io.output.WriterOutputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.configuration.CmsConfigurationException;
+import org.opencms.file.CmsObject;
+import org.opencms.importexport.CmsImportParameters;
+import org.opencms.main.CmsException;
+import org.opencms.main.OpenCms;
+import org.opencms.module.CmsModule;
+import org.opencms.module.CmsModuleDependency;
+import org.opencms.module.CmsModuleImportExportHandler;
+import org.opencms.report.CmsPrintStreamReport;
+import org.opencms.report.I_CmsReport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Imports multiple modules, respecting the dependencies between them.
+ * <br /><br />
+ * The dependencies of each module are read from the manifest in the module zip. Modules depending on other modules of
+ * the same import are imported after those modules, modules that don't depend on each other are imported concurrently
+ * by up to <code>parallelism</code> threads (with <code>parallelism</code> 1 modules are imported one after the other
+ * in dependency order). If the import of a module fails, the modules depending on it are skipped. Modules with cyclic
+ * dependencies are imported one after the other in request order after all other modules.
+ * <br /><br />
+ * Module zips identical to the zip imported last for the same module and site root are skipped (unless the import is
+ * forced), see {@link ModuleImportLedger}.
+ * <br /><br />
+ * Modules requesting a differential import (see {@link ModuleImportInfo#isDifferential()}) are not deleted and
+ * re-imported if they are installed already, instead only the differences are applied by the
+ * {@link ModuleDiffImporter}.
+ * <br /><br />
+ * Imports of the same module are serialized across all schedulers (synchronous imports and import jobs), an import
+ * waits until a running import of the same module has finished, so it sees that import's result (e.g. the ledger
+ * entry making it skip an identical zip).
+ * <br /><br />
+ * Each module is imported with its own copy of the request's CmsObject. If modules are imported concurrently, each
+ * line of the import log is prefixed with the module's name, so the interleaved logs of the modules can be told
+ * apart.
+ * <br /><br />
+ * If a {@link ProgressEventWriter} is provided, structured progress events are written instead of the plain text log
+ * (module started/finished events with results and timings, report lines converted by the
+ * {@link ProgressEventReport}).
+ */
+class ModuleImportScheduler {
+
+	private static final Log LOG = LogFactory.getLog(ModuleImportScheduler.class);
+
+	/** Locks serializing the imports of each module by module name, shared by all schedulers */
+	private static final ConcurrentHashMap<String, Lock> MODULE_LOCKS = new ConcurrentHashMap<>();
+
+	private final CmsObject cmsObject;
+	private final PrintWriter out;
+	private final int parallelism;
+	private final ProgressEventWriter events;
+
+	/**
+	 * Creates a new scheduler.
+	 * @param cmsObject     the CmsObject of the request, each module import gets its own copy
+	 * @param out           the writer the import log is streamed to
+	 * @param parallelism   the maximum number of modules imported concurrently
+	 */
+	ModuleImportScheduler(CmsObject cmsObject, PrintWriter out, int parallelism) {
+		this(cmsObject, out, parallelism, null);
+	}
+
+	/**
+	 * Creates a new scheduler.
+	 * @param cmsObject     the CmsObject of the request, each module import gets its own copy
+	 * @param out           the writer the import log is streamed to (ignored if events are written)
+	 * @param parallelism   the maximum number of modules imported concurrently
+	 * @param events        the writer structured progress events are written to, <code>null</code> for the plain text
+	 *                      log
+	 */
+	ModuleImportScheduler(CmsObject cmsObject, PrintWriter out, int parallelism, ProgressEventWriter events) {
+		this.cmsObject = cmsObject;
+		this.out = events != null ? new PrintWriter(events.createLineWriter(null)) : out;
+		this.parallelism = Math.max(1, parallelism);
+		this.events = events;
+	}
+
+	/**
+	 * Imports the given modules, the import log is streamed to the writer.
+	 * @param importInfos   the modules to be imported
+	 * @return  the result of each module's import, in request order
+	 */
+	List<ModuleImportResult> importModules(List<ModuleImportInfo> importInfos) {
+		return importModules(importInfos, Collections.<String, CmsModule>emptyMap());
+	}
+
+	/**
+	 * Imports the given modules, the import log is streamed to the writer.
+	 * @param importInfos   the modules to be imported
+	 * @param knownModules  modules whose manifests were already read (e.g. while receiving an upload) by zip path, the
+	 *                      manifests of all other modules are read from the zips
+	 * @return  the result of each module's import, in request order
+	 */
+	List<ModuleImportResult> importModules(List<ModuleImportInfo> importInfos, Map<String, CmsModule> knownModules) {
+		List<ModuleImport> imports = createImports(importInfos, knownModules);
+		int numModules = imports.size();
+		long start = System.currentTimeMillis();
+
+		if (events != null) {
+			ProgressEventImpl event = ProgressEventWriter.createEvent(ProgressEvent.TYPE_IMPORT_STARTED, null, null);
+			event.setTotal(numModules);
+			events.write(event);
+		}
+		if (numModules > 1) {
+			out.println("######## STARTING Import of " + numModules + " modules" + (parallelism > 1 ? " (parallelism " + parallelism + ")" : "") + " ########");
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, numModules)), new ImportThreadFactory());
+		try {
+			importInDependencyOrder(imports, executor);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.error("Interrupted while waiting for module imports", e);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		List<ModuleImport> cyclicImports = new ArrayList<>();
+		for (ModuleImport moduleImport : imports) {
+			if (!moduleImport.isDone()) {
+				cyclicImports.add(moduleImport);
+			}
+		}
+		if (cyclicImports.size() > 0 && !Thread.currentThread().isInterrupted()) {
+			out.println("######## Cyclic dependencies between the modules " + getModuleNames(cyclicImports) + ", importing them in request order ########");
+			for (ModuleImport moduleImport : cyclicImports) {
+				moduleImport.call();
+			}
+		}
+
+		if (numModules > 1) {
+			out.println("######## Import of " + numModules + " modules FINISHED ########");
+		}
+		out.flush();
+
+		if (events != null) {
+			ProgressEventImpl event = ProgressEventWriter.createEvent(ProgressEvent.TYPE_IMPORT_FINISHED, null, null);
+			event.setTotal(numModules);
+			event.setDurationMillis(System.currentTimeMillis() - start);
+			events.write(event);
+			events.flush();
+		}
+
+		List<ModuleImportResult> results = new ArrayList<>(numModules);
+		for (ModuleImport moduleImport : imports) {
+			results.add(moduleImport.getResult());
+		}
+		return results;
+	}
+
+	/**
+	 * Creates the imports for the given modules and links each import to the imports of the modules it depends on.
+	 */
+	private List<ModuleImport> createImports(List<ModuleImportInfo> importInfos, Map<String, CmsModule> knownModules) {
+		List<ModuleImport> imports = new ArrayList<>(importInfos.size());
+		Map<String, ModuleImport> importsByModuleName = new HashMap<>();
+		for (ModuleImportInfo importInfo : importInfos) {
+			ModuleImport moduleImport = new ModuleImport(importInfo, knownModules.get(importInfo.getModuleZipPath()));
+			imports.add(moduleImport);
+			importsByModuleName.put(moduleImport.moduleName, moduleImport);
+		}
+		for (ModuleImport moduleImport : imports) {
+			for (String dependency : moduleImport.dependencies) {
+				ModuleImport dependencyImport = importsByModuleName.get(dependency);
+				if (dependencyImport != null && dependencyImport != moduleImport) {
+					dependencyImport.dependentImports.add(moduleImport);
+					moduleImport.numOpenDependencies++;
+				}
+			}
+		}
+		return imports;
+	}
+
+	/**
+	 * Submits all imports whose dependencies are imported, until no import is left that can be started. Imports that
+	 * are part of a dependency cycle are never started.
+	 */
+	private void importInDependencyOrder(List<ModuleImport> imports, ExecutorService executor) throws InterruptedException {
+		CompletionService<ModuleImport> completionService = new ExecutorCompletionService<>(executor);
+		Deque<ModuleImport> readyImports = new ArrayDeque<>();
+		for (ModuleImport moduleImport : imports) {
+			if (moduleImport.numOpenDependencies == 0) {
+				readyImports.add(moduleImport);
+			}
+		}
+		int numRunning = 0;
+		while (!readyImports.isEmpty() || numRunning > 0) {
+			while (!readyImports.isEmpty()) {
+				completionService.submit(readyImports.poll());
+				numRunning++;
+			}
+			ModuleImport finishedImport;
+			try {
+				finishedImport = completionService.take().get();
+			}
+			catch (ExecutionException e) {
+				// ModuleImport.call doesn't throw exceptions, so this should not happen
+				LOG.error("Unexpected error importing a module", e);
+				return;
+			}
+			numRunning--;
+			for (ModuleImport dependentImport : finishedImport.dependentImports) {
+				if (!finishedImport.successful) {
+					skip(dependentImport, finishedImport.moduleName);
+				}
+				else if (!dependentImport.isDone() && --dependentImport.numOpenDependencies == 0) {
+					readyImports.add(dependentImport);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skips the given import and all imports depending on it, because the import of a module they depend on failed.
+	 */
+	private void skip(ModuleImport moduleImport, String failedModuleName) {
+		if (moduleImport.isDone()) {
+			return;
+		}
+		moduleImport.skipped = true;
+		moduleImport.message = "The import of the required module " + failedModuleName + " failed";
+		out.println("******** SKIPPING import of module zip " + moduleImport.moduleZipName + " because the import of the required module " + failedModuleName + " failed ********");
+		out.flush();
+		moduleImport.writeFinishedEvent();
+		for (ModuleImport dependentImport : moduleImport.dependentImports) {
+			skip(dependentImport, moduleImport.moduleName);
+		}
+	}
+
+	/**
+	 * @param moduleName    the module's name
+	 * @return  the lock that must be held while the module is imported
+	 */
+	private static Lock getModuleLock(String moduleName) {
+		Lock lock = MODULE_LOCKS.get(moduleName);
+		if (lock == null) {
+			Lock newLock = new ReentrantLock();
+			lock = MODULE_LOCKS.putIfAbsent(moduleName, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	private static String getModuleNames(List<ModuleImport> imports) {
+		List<String> moduleNames = new ArrayList<>(imports.size());
+		for (ModuleImport moduleImport : imports) {
+			moduleNames.add(moduleImport.moduleName);
+		}
+		return StringUtils.join(moduleNames, ", ");
+	}
+
+	/**
+	 * The import of a single module: deletes the module if it is installed already and imports the module zip, or
+	 * applies the differences to the installed module.
+	 */
+	private class ModuleImport implements Callable<ModuleImport> {
+
+		private final ModuleImportInfo importInfo;
+		private final String moduleZipName;
+		private final String moduleName;
+		private final CmsModule module;
+		private final List<String> dependencies;
+		private final List<ModuleImport> dependentImports = new ArrayList<>();
+		private int numOpenDependencies = 0;
+		private volatile boolean finished = false;
+		private volatile boolean successful = false;
+		private boolean skipped = false;
+		private volatile boolean unchanged = false;
+		private volatile String message;
+		private volatile long durationMillis;
+
+		ModuleImport(ModuleImportInfo importInfo, CmsModule knownModule) {
+			this.importInfo = importInfo;
+			String moduleZipPath = importInfo.getModuleZipPath();
+			moduleZipName = StringUtils.substringAfterLast(moduleZipPath, File.separator);
+
+			String name = StringUtils.substringBeforeLast(moduleZipName, "_");
+			List<String> dependencyNames = Collections.emptyList();
+			CmsModule manifestModule = knownModule;
+			try {
+				if (manifestModule == null) {
+					manifestModule = CmsModuleImportExportHandler.readModuleFromImport(moduleZipPath);
+				}
+				name = manifestModule.getName();
+				dependencyNames = new ArrayList<>(manifestModule.getDependencies().size());
+				for (CmsModuleDependency dependency : manifestModule.getDependencies()) {
+					dependencyNames.add(dependency.getName());
+				}
+			}
+			catch (CmsConfigurationException e) {
+				LOG.error("The manifest of the module zip " + moduleZipPath + " can't be read, dependencies are ignored", e);
+			}
+			moduleName = name;
+			module = manifestModule;
+			dependencies = dependencyNames;
+		}
+
+		boolean isDone() {
+			return finished || skipped;
+		}
+
+		/**
+		 * Imports the module, exceptions are logged, so the import never throws exceptions.
+		 * @return  this import
+		 */
+		@Override
+		public ModuleImport call() {
+			PrintWriter moduleOut = out;
+			TaggedLineWriter taggedWriter = null;
+			if (events != null) {
+				moduleOut = new PrintWriter(events.createLineWriter(moduleName));
+				events.write(ProgressEvent.TYPE_MODULE_STARTED, moduleName, moduleZipName);
+			}
+			else if (parallelism > 1) {
+				taggedWriter = new TaggedLineWriter(out, "[" + moduleName + "] ");
+				moduleOut = new PrintWriter(taggedWriter);
+			}
+			long start = System.currentTimeMillis();
+			Lock moduleLock = getModuleLock(moduleName);
+			boolean locked = false;
+			try {
+				locked = moduleLock.tryLock();
+				if (!locked) {
+					moduleOut.println("******** Waiting for the running import of module " + moduleName + " ********");
+					moduleOut.flush();
+					moduleLock.lockInterruptibly();
+					locked = true;
+				}
+				successful = importModule(moduleOut);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				message = "Interrupted while waiting for the running import of module " + moduleName;
+				moduleOut.println("******** Importing module zip " + moduleZipName + " FAILED: " + message + " ********");
+			}
+			catch (RuntimeException e) {
+				LOG.error("Error importing module " + importInfo.getModuleZipPath(), e);
+				message = e.toString();
+			}
+			finally {
+				if (locked) {
+					moduleLock.unlock();
+				}
+				durationMillis = System.currentTimeMillis() - start;
+				moduleOut.flush();
+				if (taggedWriter != null) {
+					taggedWriter.flushPartialLine();
+				}
+				finished = true;
+				writeFinishedEvent();
+			}
+			return this;
+		}
+
+		/**
+		 * Writes the event reporting the module's result, if events are requested.
+		 */
+		void writeFinishedEvent() {
+			if (events == null) {
+				return;
+			}
+			ModuleImportResult result = getResult();
+			ProgressEventImpl event = ProgressEventWriter.createEvent(ProgressEvent.TYPE_MODULE_FINISHED, moduleName, result.getMessage());
+			event.setResult(result.getResult());
+			event.setDurationMillis(result.getDurationMillis());
+			events.write(event);
+			events.flush();
+		}
+
+		private boolean importModule(PrintWriter moduleOut) {
+			String moduleZipPath = importInfo.getModuleZipPath();
+			ModuleImportLedger ledger = ModuleImportLedger.getInstance();
+
+			String zipHash = null;
+			try {
+				zipHash = ModuleImportLedger.hash(new File(moduleZipPath));
+			}
+			catch (IOException e) {
+				LOG.error("The hash of the module zip " + moduleZipPath + " can't be computed, the zip is imported", e);
+			}
+			if (zipHash != null && !importInfo.isForce() && ledger.isUnchanged(moduleName, importInfo.getImportSiteRoot(), zipHash)) {
+				moduleOut.println("******** Module zip " + moduleZipName + " unchanged, skipped (same zip as imported last to siteRoot " + importInfo.getImportSiteRoot() + ") ********");
+				moduleOut.flush();
+				unchanged = true;
+				return true;
+			}
+
+			moduleOut.println("******** Importing module zip " + moduleZipName + " to siteRoot " + importInfo.getImportSiteRoot() + " START ********");
+			moduleOut.flush();
+
+			CmsObject moduleCmsObject;
+			try {
+				moduleCmsObject = OpenCms.initCmsObject(cmsObject);
+			}
+			catch (CmsException e) {
+				LOG.error("Error initializing the CmsObject for the import of " + moduleZipPath, e);
+				message = e.getMessage();
+				moduleOut.println("******** Importing module zip " + moduleZipName + " FAILED: " + e.getMessage() + " ********");
+				return false;
+			}
+			moduleCmsObject.getRequestContext().setSiteRoot(importInfo.getImportSiteRoot());
+			PrintStream ps = new PrintStream(new WriterOutputStream(moduleOut, Charset.defaultCharset(), 1024, true));
+
+			try {
+
+				boolean installed = OpenCms.getModuleManager().getModule(moduleName) != null;
+				if (importInfo.isDifferential() && installed && module != null) {
+					moduleOut.println("Applying the differences to the installed module " + moduleName);
+					new ModuleDiffImporter(moduleCmsObject, module, moduleZipPath, moduleOut).importDiff();
+					recordImport(ledger, zipHash);
+					moduleOut.println("******** Importing module zip " + moduleZipName + " to siteRoot " + importInfo.getImportSiteRoot() + " FINISHED ********");
+					moduleOut.flush();
+					return true;
+				}
+				if (importInfo.isDifferential()) {
+					moduleOut.println("Module " + moduleName + " is not installed, importing the whole module");
+				}
+
+				I_CmsReport report;
+				if (events != null) {
+					report = new ProgressEventReport(events, moduleName, moduleCmsObject.getRequestContext().getLocale());
+				}
+				else {
+					report = new CmsPrintStreamReport(ps, moduleCmsObject.getRequestContext().getLocale(), false);
+				}
+
+				if (installed) {
+					OpenCms.getModuleManager().deleteModule(
+							moduleCmsObject,
+							moduleName,
+							true,
+							report);
+					ps.flush();
+					moduleOut.flush();
+				}
+
+				CmsImportParameters params = new CmsImportParameters(moduleZipPath, "/", true);
+				OpenCms.getImportExportManager().importData(
+						moduleCmsObject,
+						report,
+						params);
+				ps.flush();
+				recordImport(ledger, zipHash);
+				moduleOut.println("******** Importing module zip " + moduleZipName + " to siteRoot " + importInfo.getImportSiteRoot() + " FINISHED ********");
+				moduleOut.flush();
+				return true;
+			}
+			catch (CmsException | IOException e) {
+				LOG.error("Error importing module " + moduleZipPath, e);
+				ledger.remove(moduleName);
+				ps.flush();
+				message = e.getMessage();
+				moduleOut.println("******** Importing module zip " + moduleZipName + " FAILED: " + e.getMessage() + " ********");
+				moduleOut.flush();
+				return false;
+			}
+		}
+
+		/**
+		 * @return the result of the import, {@link ModuleImportResult#RESULT_PENDING} if the import hasn't finished
+		 */
+		ModuleImportResult getResult() {
+			ModuleImportResultImpl result = new ModuleImportResultImpl();
+			result.setModuleName(moduleName);
+			result.setModuleZipName(moduleZipName);
+			if (skipped) {
+				result.setResult(ModuleImportResult.RESULT_SKIPPED);
+			}
+			else if (!finished) {
+				result.setResult(ModuleImportResult.RESULT_PENDING);
+			}
+			else if (!successful) {
+				result.setResult(ModuleImportResult.RESULT_FAILED);
+			}
+			else if (unchanged) {
+				result.setResult(ModuleImportResult.RESULT_UNCHANGED);
+			}
+			else {
+				result.setResult(ModuleImportResult.RESULT_IMPORTED);
+			}
+			result.setMessage(message);
+			result.setDurationMillis(durationMillis);
+			return result;
+		}
+
+		/**
+		 * Records the successful import in the ledger, so the next import of the same zip can be skipped.
+		 */
+		private void recordImport(ModuleImportLedger ledger, String zipHash) {
+			if (zipHash != null) {
+				ledger.record(moduleName, importInfo.getImportSiteRoot(), zipHash);
+			}
+			else {
+				ledger.remove(moduleName);
+			}
+		}
+	}
+
+	/**
+	 * Writer prefixing each line with a tag and writing complete lines only, so the logs of modules imported
+	 * concurrently can be interleaved line by line without mixing up the lines themselves.
+	 */
+	private static class TaggedLineWriter extends Writer {
+
+		private final PrintWriter out;
+		private final String tag;
+		private final StringBuilder line = new StringBuilder();
+
+		TaggedLineWriter(PrintWriter out, String tag) {
+			this.out = out;
+			this.tag = tag;
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			for (int i = offset; i < offset + length; i++) {
+				char c = chars[i];
+				if (c == '\n') {
+					writeLine();
+				}
+				else if (c != '\r') {
+					line.append(c);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushPartialLine();
+		}
+
+		/**
+		 * Writes the current incomplete line (if any).
+		 */
+		void flushPartialLine() {
+			if (line.length() > 0) {
+				writeLine();
+			}
+			out.flush();
+		}
+
+		private void writeLine() {
+			// one println call, so the line can't be split by lines written concurrently
+			out.println(tag + line);
+			line.setLength(0);
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for the module imports.
+	 */
+	private static class ImportThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		ImportThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-ModuleImport-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.configuration.CmsConfigurationException;
+import org.opencms.importexport.CmsImportExportManager;
+import org.opencms.module.CmsModule;
+import org.opencms.module.CmsModuleImportExportHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A module zip uploaded to the {@link IDEConnectorService}, either as raw request body or as part of a multipart
+ * request.
+ * <br /><br />
+ * The upload is spooled to a temporary file while it is received, so the zip is never held in memory. While the
+ * bytes are written to the file they are parsed as zip stream as well, so the module's manifest is read as soon as it
+ * has arrived, without reading the zip file again after the upload is complete.
+ */
+class ModuleZipUpload {
+
+	private static final Log LOG = LogFactory.getLog(ModuleZipUpload.class);
+
+	private static final String DEFAULT_FILE_NAME = "module.zip";
+
+	private final File directory;
+	private final File zipFile;
+	private CmsModule module;
+
+	private ModuleZipUpload(File directory, File zipFile) {
+		this.directory = directory;
+		this.zipFile = zipFile;
+	}
+
+	/**
+	 * Receives a module zip from the given stream. The stream is read to the end, but not closed.
+	 * @param in        the stream providing the zip (request body or multipart part)
+	 * @param fileName  the zip's original file name, used for the temporary file (may be <code>null</code>)
+	 * @return  the received upload
+	 * @throws IOException if the upload can't be received or spooled to disk
+	 */
+	static ModuleZipUpload receive(InputStream in, String fileName) throws IOException {
+		File directory = Files.createTempDirectory("ideconnector-upload").toFile();
+		ModuleZipUpload upload = new ModuleZipUpload(directory, new File(directory, sanitizeFileName(fileName)));
+		try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(upload.zipFile))) {
+			TeeInputStream tee = new TeeInputStream(in, fileOut, false);
+			upload.module = readModuleFromZipStream(tee);
+			// the manifest was found (or the zip can't be parsed), the rest of the upload is spooled without parsing
+			IOUtils.copy(tee, NullOutputStream.NULL_OUTPUT_STREAM);
+		}
+		catch (IOException e) {
+			upload.delete();
+			throw e;
+		}
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Received module zip " + upload.zipFile.getName() + " (" + upload.zipFile.length() + " bytes)"
+					+ (upload.module != null ? ", module " + upload.module.getName() : ", manifest not found while receiving"));
+		}
+		return upload;
+	}
+
+	/**
+	 * Returns the file name contained in the given <code>Content-Disposition</code> header.
+	 * @param contentDisposition    the header's value (may be <code>null</code>)
+	 * @return  the file name or <code>null</code> if the header doesn't contain a file name
+	 */
+	static String getFileName(String contentDisposition) {
+		if (contentDisposition == null) {
+			return null;
+		}
+		for (String part : contentDisposition.split(";")) {
+			String trimmedPart = part.trim();
+			if (trimmedPart.startsWith("filename=")) {
+				return StringUtils.strip(trimmedPart.substring("filename=".length()).trim(), "\"");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the temporary zip file
+	 */
+	File getZipFile() {
+		return zipFile;
+	}
+
+	/**
+	 * @return the module read from the manifest while receiving the zip or <code>null</code> if the manifest couldn't
+	 *         be read from the stream (then it has to be read from the zip file)
+	 */
+	CmsModule getModule() {
+		return module;
+	}
+
+	/**
+	 * Deletes the temporary zip file.
+	 */
+	void delete() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	/**
+	 * Parses the given stream as zip until the manifest is found. The stream is not closed.
+	 */
+	private static CmsModule readModuleFromZipStream(InputStream in) throws IOException {
+		ZipInputStream zipIn = new ZipInputStream(new CloseShieldInputStream(in));
+		try {
+			ZipEntry entry;
+			while ((entry = zipIn.getNextEntry()) != null) {
+				if (CmsImportExportManager.EXPORT_MANIFEST.equals(entry.getName())) {
+					return CmsModuleImportExportHandler.readModuleFromManifest(IOUtils.toByteArray(zipIn));
+				}
+			}
+		}
+		catch (ZipException e) {
+			LOG.warn("The uploaded module zip can't be parsed while receiving it", e);
+		}
+		catch (CmsConfigurationException e) {
+			LOG.warn("The manifest of the uploaded module zip can't be read", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Strips any directories from the given file name, so it can't point outside of the upload directory.
+	 */
+	private static String sanitizeFileName(String fileName) {
+		if (fileName == null) {
+			return DEFAULT_FILE_NAME;
+		}
+		String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1).trim();
+		if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+			return DEFAULT_FILE_NAME;
+		}
+		return name;
+	}
+}
@@ -0,0 +1,257 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.mediaworx.opencms.ideconnector.ModuleParameters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opencms.file.CmsObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread safe store for the CmsObjects of users logged in to the {@link IDEConnectorService}, looked up by the token
+ * returned on login.
+ * <br /><br />
+ * IDE clients don't always log out, so sessions expire: a session is removed if it wasn't used for the idle timeout
+ * or if it is older than the maximum age, no matter how often it is used. The number of sessions is bounded as well,
+ * if the limit is reached the least recently used session is evicted. Expired sessions are removed on access and by
+ * a background sweeper running once a minute. The limits are configured by module parameters (see
+ * {@link ModuleParameters}).
+ */
+public class SessionStore {
+
+	private static final Log LOG = LogFactory.getLog(SessionStore.class);
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+	private static final long SWEEP_INTERVAL_MINUTES = 1;
+
+	private static SessionStore instance;
+
+	private final long idleTimeoutMillis;
+	private final long maxAgeMillis;
+	private final int maxSessions;
+	private final LinkedHashMap<String, Session> sessions;
+	private final ScheduledExecutorService sweeper;
+
+	private long idleEvictions;
+	private long maxAgeEvictions;
+	private long capacityEvictions;
+
+	private SessionStore(long idleTimeoutMillis, long maxAgeMillis, final int maxSessions) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.maxAgeMillis = maxAgeMillis;
+		this.maxSessions = maxSessions;
+		sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+				if (size() > SessionStore.this.maxSessions) {
+					capacityEvictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+		sweeper = Executors.newSingleThreadScheduledExecutor(new SweeperThreadFactory());
+		sweeper.scheduleWithFixedDelay(new Sweeper(), SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Returns the shared session store, on first access the store is created with the limits configured in the module
+	 * parameters and the sweeper is started.
+	 * @return the shared session store
+	 */
+	public static synchronized SessionStore getInstance() {
+		if (instance == null) {
+			long idleTimeout = ModuleParameters.getIntParameter(ModuleParameters.PARAM_SESSION_IDLE_TIMEOUT, ModuleParameters.DEFAULT_SESSION_IDLE_TIMEOUT);
+			long maxAge = ModuleParameters.getIntParameter(ModuleParameters.PARAM_SESSION_MAX_AGE, ModuleParameters.DEFAULT_SESSION_MAX_AGE);
+			int maxSessions = ModuleParameters.getIntParameter(ModuleParameters.PARAM_MAX_SESSIONS, ModuleParameters.DEFAULT_MAX_SESSIONS);
+			instance = new SessionStore(idleTimeout * MILLIS_PER_MINUTE, maxAge * MILLIS_PER_MINUTE, Math.max(1, maxSessions));
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops the sweeper of the shared session store and removes all sessions. Called when the
+	 * {@link IDEConnectorService} is taken out of service. A new store is created on the next access.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			LOG.info("Shutting down " + instance);
+			instance.sweeper.shutdownNow();
+			instance.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Stores the CmsObject for a new session.
+	 * @param token     the session's token
+	 * @param cmsObject the CmsObject of the logged in user
+	 */
+	public synchronized void put(String token, CmsObject cmsObject) {
+		sessions.put(token, new Session(cmsObject, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Returns the CmsObject of the session with the given token and marks the session as used.
+	 * @param token the session's token
+	 * @return  the session's CmsObject or <code>null</code> if there's no such session or if the session has expired
+	 */
+	public synchronized CmsObject get(String token) {
+		if (token == null) {
+			return null;
+		}
+		Session session = sessions.get(token);
+		if (session == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (isExpired(session, now)) {
+			sessions.remove(token);
+			return null;
+		}
+		session.lastAccessed = now;
+		return session.cmsObject;
+	}
+
+	/**
+	 * Removes the session with the given token (on logout).
+	 * @param token the session's token
+	 * @return  <code>true</code> if there was a session with the given token
+	 */
+	public synchronized boolean remove(String token) {
+		return token != null && sessions.remove(token) != null;
+	}
+
+	/**
+	 * Removes all sessions that have expired because they were idle for too long or because they reached the maximum
+	 * age.
+	 * @return  the number of removed sessions
+	 */
+	public synchronized int removeExpired() {
+		long now = System.currentTimeMillis();
+		int numRemoved = 0;
+		Iterator<Session> it = sessions.values().iterator();
+		while (it.hasNext()) {
+			if (isExpired(it.next(), now)) {
+				it.remove();
+				numRemoved++;
+			}
+		}
+		return numRemoved;
+	}
+
+	/**
+	 * Removes all sessions.
+	 */
+	public synchronized void clear() {
+		sessions.clear();
+	}
+
+	/**
+	 * @return the current number of sessions (including expired sessions not removed yet)
+	 */
+	public synchronized int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * @return the number of sessions removed because they were idle for too long
+	 */
+	public synchronized long getIdleEvictions() {
+		return idleEvictions;
+	}
+
+	/**
+	 * @return the number of sessions removed because they reached the maximum age
+	 */
+	public synchronized long getMaxAgeEvictions() {
+		return maxAgeEvictions;
+	}
+
+	/**
+	 * @return the number of least recently used sessions evicted because the maximum number of sessions was reached
+	 */
+	public synchronized long getCapacityEvictions() {
+		return capacityEvictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{size=" + sessions.size() + ", maxSessions=" + maxSessions
+				+ ", idleEvictions=" + idleEvictions + ", maxAgeEvictions=" + maxAgeEvictions
+				+ ", capacityEvictions=" + capacityEvictions + "}";
+	}
+
+	/**
+	 * Checks if the given session has expired and counts the eviction if so.
+	 */
+	private boolean isExpired(Session session, long now) {
+		if (maxAgeMillis > 0 && now - session.created > maxAgeMillis) {
+			maxAgeEvictions++;
+			return true;
+		}
+		if (idleTimeoutMillis > 0 && now - session.lastAccessed > idleTimeoutMillis) {
+			idleEvictions++;
+			return true;
+		}
+		return false;
+	}
+
+	private static class Session {
+
+		private final CmsObject cmsObject;
+		private final long created;
+		private long lastAccessed;
+
+		Session(CmsObject cmsObject, long created) {
+			this.cmsObject = cmsObject;
+			this.created = created;
+			lastAccessed = created;
+		}
+	}
+
+	/**
+	 * Periodically removes expired sessions.
+	 */
+	private class Sweeper implements Runnable {
+
+		Sweeper() {
+		}
+
+		@Override
+		public void run() {
+			try {
+				int numRemoved = removeExpired();
+				if (numRemoved > 0 && LOG.isDebugEnabled()) {
+					LOG.debug("Removed " + numRemoved + " expired IDE connector sessions, " + SessionStore.this);
+				}
+			}
+			catch (RuntimeException e) {
+				// must not be thrown, otherwise the sweeper stops
+				LOG.error("Error removing expired IDE connector sessions", e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the daemon thread for the sweeper.
+	 */
+	private static class SweeperThreadFactory implements ThreadFactory {
+
+		SweeperThreadFactory() {
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IDEConnector-SessionSweeper");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package com.mediaworx.opencms.ideconnector.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediaworx.opencms.ideconnector.PublishJobManager;
+import com.mediaworx.opencms.ideconnector.dataimpl.ImportJobStatusImpl;
+import com.mediaworx.opencms.ideconnector.def.IDEConnectorConst;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencms.file.CmsObject;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stress test for the {@link IDEConnectorService}: one servlet instance handles many concurrent requests (like the
+ * servlet container does), each response must contain the output of its own request only.
+ */
+public class IDEConnectorServiceTest {
+
+	private static final int NUM_THREADS = 16;
+	private static final int NUM_REQUESTS = 400;
+	private static final int NUM_JOBS = 20;
+	private static final int LOG_LINES = 200;
+
+	private static final String SERVLET_PATH = "/ideConnector";
+	private static final String TOKEN = "token";
+	private static final String USER = "Admin";
+
+	private ObjectMapper objectMapper;
+	private IDEConnectorService service;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		objectMapper = new ObjectMapper();
+		SessionStore sessionStore = mock(SessionStore.class);
+		ImportJobManager importJobManager = mock(ImportJobManager.class);
+
+		CmsObject cmsObject = mock(CmsObject.class, RETURNS_DEEP_STUBS);
+		when(cmsObject.getRequestContext().getCurrentUser().getName()).thenReturn(USER);
+		when(sessionStore.get(TOKEN)).thenReturn(cmsObject);
+
+		for (int i = 0; i < NUM_JOBS; i++) {
+			ImportJob job = mock(ImportJob.class);
+			when(job.getUserName()).thenReturn(USER);
+			when(job.getStatus(anyLong())).thenReturn(createStatus(getJobId(i)));
+			when(importJobManager.get(getJobId(i))).thenReturn(job);
+		}
+
+		service = new IDEConnectorService(sessionStore, importJobManager, mock(PublishJobManager.class));
+		service.init(mock(ServletConfig.class));
+
+		executor = Executors.newFixedThreadPool(NUM_THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentRequestsDontMixOutputs() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> results = new ArrayList<>(NUM_REQUESTS);
+		for (int i = 0; i < NUM_REQUESTS; i++) {
+			final String jobId = getJobId(i % NUM_JOBS);
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					StringWriter body = new StringWriter();
+					HttpServletRequest request = createRequest(jobId);
+					HttpServletResponse response = createResponse(body);
+					start.await();
+
+					service.doPost(request, response);
+
+					JsonNode status = objectMapper.readTree(body.toString());
+					assertEquals(jobId, status.get("jobId").asText());
+					assertEquals(createLog(jobId), status.get("log").asText());
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Void> result : results) {
+			// rethrows assertion errors of the requests
+			result.get(60, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testConcurrentErrorsDontMixResponses() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> results = new ArrayList<>(NUM_REQUESTS);
+		for (int i = 0; i < NUM_REQUESTS; i++) {
+			final String jobId = "unknown-" + i;
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					StringWriter body = new StringWriter();
+					HttpServletRequest request = createRequest(jobId);
+					HttpServletResponse response = createResponse(body);
+					start.await();
+
+					service.doPost(request, response);
+
+					verify(response).sendError(404, "Import job not found: " + jobId);
+					assertTrue(body.toString().isEmpty());
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Void> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+	}
+
+	private static HttpServletRequest createRequest(String jobId) {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getServletPath()).thenReturn(SERVLET_PATH);
+		when(request.getRequestURI()).thenReturn(SERVLET_PATH + "/" + IDEConnectorConst.SERVICE_IMPORT_STATUS);
+		when(request.getParameter(IDEConnectorConst.PARAM_TOKEN)).thenReturn(TOKEN);
+		when(request.getParameter(IDEConnectorConst.PARAM_JOB_ID)).thenReturn(jobId);
+		return request;
+	}
+
+	private static HttpServletResponse createResponse(StringWriter body) throws Exception {
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		when(response.getWriter()).thenReturn(new PrintWriter(body, true));
+		return response;
+	}
+
+	private static ImportJobStatusImpl createStatus(String jobId) {
+		ImportJobStatusImpl status = new ImportJobStatusImpl();
+		status.setJobId(jobId);
+		status.setState("RUNNING");
+		status.setLog(createLog(jobId));
+		return status;
+	}
+
+	/**
+	 * @param jobId the job's id
+	 * @return  a log long enough that writing it takes a while, so concurrent responses would interleave
+	 */
+	private static String createLog(String jobId) {
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < LOG_LINES; i++) {
+			log.append("Log line ").append(i).append(" of job ").append(jobId).append('\n');
+		}
+		return log.toString();
+	}
+
+	private static String getJobId(int i) {
+		return "job-" + i;
+	}
+}